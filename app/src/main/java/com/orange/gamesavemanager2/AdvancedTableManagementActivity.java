@@ -423,87 +423,50 @@ public class AdvancedTableManagementActivity extends AppCompatActivity implement
                 copyFile(sourceUri, tempPlainFile);
                 appendLog("临时文件: " + tempPlainFile.getAbsolutePath() + "\n");
                 
-                // 打开明文数据库
-                android.database.sqlite.SQLiteDatabase plainDb = 
-                    android.database.sqlite.SQLiteDatabase.openDatabase(
-                        tempPlainFile.getAbsolutePath(),
-                        null,
-                        android.database.sqlite.SQLiteDatabase.OPEN_READONLY
-                    );
-                
-                // 创建加密数据库
+                // 由 SQLCipher 在原生层复制全部表、索引、触发器和视图并加密
+                appendLog("正在转换为加密数据库...\n");
                 File encryptedFile = getDatabasePath(newDbName);
-                net.sqlcipher.database.SQLiteDatabase encryptedDb = 
-                    net.sqlcipher.database.SQLiteDatabase.openOrCreateDatabase(
-                        encryptedFile,
-                        password,
-                        null
-                    );
-                
-                appendLog("正在复制表结构和数据...\n");
-                
-                // 获取所有表
-                android.database.Cursor tablesCursor = plainDb.rawQuery(
-                    "SELECT name, sql FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%' AND name NOT LIKE 'android_%'",
-                    null
-                );
+                boolean success = game.core.DBCipherManager.importFromPlaintext(tempPlainFile, encryptedFile, password);
+                tempPlainFile.delete();
+                if (!success) {
+                    throw new Exception("sqlcipher_export 执行失败，请查看日志");
+                }
                 
                 int tableCount = 0;
                 int totalRows = 0;
-                
-                encryptedDb.beginTransaction();
+                net.sqlcipher.database.SQLiteDatabase encryptedDb = 
+                    net.sqlcipher.database.SQLiteDatabase.openDatabase(
+                        encryptedFile.getAbsolutePath(),
+                        password,
+                        null,
+                        net.sqlcipher.database.SQLiteDatabase.OPEN_READONLY
+                    );
                 try {
-                    while (tablesCursor.moveToNext()) {
-                        String tableName = tablesCursor.getString(0);
-                        String createSql = tablesCursor.getString(1);
-                        
-                        appendLog("  复制表: " + tableName + "\n");
-                        
-                        // 创建表
-                        encryptedDb.execSQL(createSql);
-                        
-                        // 复制数据
-                        android.database.Cursor dataCursor = plainDb.rawQuery("SELECT * FROM " + tableName, null);
-                        int rowCount = 0;
-                        
-                        while (dataCursor.moveToNext()) {
-                            android.content.ContentValues values = new android.content.ContentValues();
-                            
-                            for (int i = 0; i < dataCursor.getColumnCount(); i++) {
-                                String columnName = dataCursor.getColumnName(i);
-                                int type = dataCursor.getType(i);
-                                
-                                if (type == android.database.Cursor.FIELD_TYPE_NULL) {
-                                    values.putNull(columnName);
-                                } else if (type == android.database.Cursor.FIELD_TYPE_INTEGER) {
-                                    values.put(columnName, dataCursor.getLong(i));
-                                } else if (type == android.database.Cursor.FIELD_TYPE_FLOAT) {
-                                    values.put(columnName, dataCursor.getDouble(i));
-                                } else {
-                                    values.put(columnName, dataCursor.getString(i));
-                                }
+                    android.database.Cursor tablesCursor = encryptedDb.rawQuery(
+                        "SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%' AND name NOT LIKE 'android_%'",
+                        null
+                    );
+                    try {
+                        while (tablesCursor.moveToNext()) {
+                            String tableName = tablesCursor.getString(0);
+                            android.database.Cursor countCursor = encryptedDb.rawQuery("SELECT COUNT(*) FROM \"" + tableName.replace("\"", "\"\"") + "\"", null);
+                            int rowCount;
+                            try {
+                                rowCount = countCursor.moveToFirst() ? countCursor.getInt(0) : 0;
+                            } finally {
+                                countCursor.close();
                             }
-                            
-                            encryptedDb.insert(tableName, null, values);
-                            rowCount++;
+                            appendLog("  表: " + tableName + "（" + rowCount + " 行）\n");
+                            tableCount++;
+                            totalRows += rowCount;
                         }
-                        dataCursor.close();
-                        
-                        appendLog("    复制了 " + rowCount + " 行\n");
-                        tableCount++;
-                        totalRows += rowCount;
+                    } finally {
+                        tablesCursor.close();
                     }
-                    
-                    encryptedDb.setTransactionSuccessful();
                 } finally {
-                    encryptedDb.endTransaction();
-                    tablesCursor.close();
+                    encryptedDb.close();
                 }
                 
-                plainDb.close();
-                encryptedDb.close();
-                tempPlainFile.delete();
-                
                 appendLog("\n✓ 导入完成!\n");
                 appendLog("表数量: " + tableCount + "\n");
                 appendLog("总行数: " + totalRows + "\n\n");
@@ -8,8 +8,6 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import org.json.JSONObject;
-
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -17,8 +15,9 @@ import java.util.List;
 
 import game.core.DBCipherManager;
 import game.core.DatabaseConfig;
+import game.core.JsonExportHandle;
+import game.core.ProgressTracker;
 import game.core.SqlUtilManager;
-import net.sqlcipher.database.SQLiteDatabase;
 
 /**
  * 数据导出演示Activity - 展示数据库导出为JSON和明文DB功能
@@ -32,6 +31,8 @@ public class DataExportActivity extends AppCompatActivity {
     private SqlUtilManager sqlUtilManager;
     private String currentDbName;
     private String currentPassword;
+    // 导出进度由 ProgressTracker 限频，最多每个间隔输出一行
+    private static final long PROGRESS_INTERVAL_MS = 500;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -111,28 +112,38 @@ public class DataExportActivity extends AppCompatActivity {
                 
                 appendLog("=== 数据库完整导出 ===\n\n");
                 
-                // 导出整个数据库为JSON
-                JSONObject databaseJson = sqlUtilManager.exportDatabaseToJson();
-                
-                if (databaseJson != null && databaseJson.length() > 0) {
-                    appendLog("导出成功!\n");
-                    appendLog("数据库包含 " + databaseJson.length() + " 个表\n\n");
-                    
-                    // 格式化显示JSON
-                    String formattedJson = databaseJson.toString(2);
+                // 导出整个数据库为JSON（数据量超出内存预算时写入临时文件，按需读取）
+                ProgressTracker tracker = new ProgressTracker(this::showExportProgress)
+                        .setMinIntervalMillis(PROGRESS_INTERVAL_MS);
+                try (JsonExportHandle handle = sqlUtilManager.exportDatabaseToJsonHandle(tracker)) {
+                    List<String> tableNames = handle != null ? handle.getTableNames() : null;
                     
-                    // 如果JSON太长，只显示前2000字符
-                    if (formattedJson.length() > 2000) {
-                        appendLog("JSON数据 (前2000字符):\n");
-                        appendLog(formattedJson.substring(0, 2000));
-                        appendLog("\n\n... (数据已截断，总长度: " + formattedJson.length() + " 字符)\n");
+                    if (tableNames != null && !tableNames.isEmpty()) {
+                        appendLog("导出成功!\n");
+                        appendLog("数据库包含 " + tableNames.size() + " 个表\n");
+                        if (handle.isSpilled()) {
+                            appendLog("数据较大，已写入临时文件 (" + formatFileSize(handle.length()) + ")\n");
+                        }
+                        appendLog("\n");
+                        
+                        // 只读取前2000字符用于显示，不把整个导出内容格式化成字符串
+                        String preview = handle.readPrefix(2001);
+                        if (preview.length() > 2000) {
+                            appendLog("JSON数据 (前2000字符):\n");
+                            appendLog(preview.substring(0, 2000));
+                            if (handle.isSpilled()) {
+                                appendLog("\n\n... (数据已截断，总大小: " + formatFileSize(handle.length()) + ")\n");
+                            } else {
+                                appendLog("\n\n... (数据已截断)\n");
+                            }
+                        } else {
+                            appendLog("完整JSON数据:\n");
+                            appendLog(preview);
+                        }
                     } else {
-                        appendLog("完整JSON数据:\n");
-                        appendLog(formattedJson);
+                        appendLog("数据库中暂无数据\n");
+                        appendLog("\n提示: 请先在'数据库操作演示'中创建表并插入数据\n");
                     }
-                } else {
-                    appendLog("数据库中暂无数据\n");
-                    appendLog("\n提示: 请先在'数据库操作演示'中创建表并插入数据\n");
                 }
                 
                 AppLogger.i("DataExport", "export_complete");
@@ -188,124 +199,21 @@ public class DataExportActivity extends AppCompatActivity {
                 
                 appendLog("导出目标: " + plainDbFile.getAbsolutePath() + "\n\n");
                 
-                // 方法：手动读取数据并写入明文数据库
-                appendLog("正在准备导出...\n");
-                
-                // 打开加密数据库（源）
-                appendLog("正在打开加密数据库...\n");
-                net.sqlcipher.database.SQLiteDatabase sourceDb = 
-                    net.sqlcipher.database.SQLiteDatabase.openDatabase(
-                        encryptedDbFile.getAbsolutePath(),
-                        currentPassword,
-                        null,
-                        net.sqlcipher.database.SQLiteDatabase.OPEN_READONLY
-                    );
-                
-                // 创建明文数据库（目标）
-                appendLog("正在创建明文数据库...\n");
-                android.database.sqlite.SQLiteDatabase targetDb = 
-                    android.database.sqlite.SQLiteDatabase.openOrCreateDatabase(
-                        plainDbFile,
-                        null
-                    );
-                
-                int tableCount = 0;
-                int totalRows = 0;
+                // 由 SQLCipher 在原生层按页复制（保留索引、触发器和视图）
+                appendLog("正在导出...\n");
+                long startTime = System.currentTimeMillis();
+                boolean success = dbManager.exportToPlaintext(plainDbFile);
+                if (!success) {
+                    throw new Exception("sqlcipher_export 执行失败，请查看日志");
+                }
+                long elapsed = System.currentTimeMillis() - startTime;
                 
-                try {
-                    // 开始事务
-                    targetDb.beginTransaction();
-                    
-                    // 获取所有表
-                    appendLog("正在读取表结构...\n");
-                    android.database.Cursor tablesCursor = sourceDb.rawQuery(
-                        "SELECT name, sql FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%'",
-                        null
-                    );
-                    
-                    while (tablesCursor.moveToNext()) {
-                        String tableName = tablesCursor.getString(0);
-                        String createSql = tablesCursor.getString(1);
-                        
-                        appendLog("  - 表: " + tableName + "\n");
-                        
-                        // 创建表
-                        targetDb.execSQL(createSql);
-                        
-                        // 复制数据
-                        android.database.Cursor dataCursor = sourceDb.rawQuery(
-                            "SELECT * FROM " + tableName,
-                            null
-                        );
-                        
-                        int rowCount = 0;
-                        while (dataCursor.moveToNext()) {
-                            StringBuilder columns = new StringBuilder();
-                            StringBuilder values = new StringBuilder();
-                            
-                            for (int i = 0; i < dataCursor.getColumnCount(); i++) {
-                                if (i > 0) {
-                                    columns.append(", ");
-                                    values.append(", ");
-                                }
-                                columns.append(dataCursor.getColumnName(i));
-                                
-                                int type = dataCursor.getType(i);
-                                if (type == android.database.Cursor.FIELD_TYPE_NULL) {
-                                    values.append("NULL");
-                                } else if (type == android.database.Cursor.FIELD_TYPE_INTEGER) {
-                                    values.append(dataCursor.getLong(i));
-                                } else if (type == android.database.Cursor.FIELD_TYPE_FLOAT) {
-                                    values.append(dataCursor.getDouble(i));
-                                } else {
-                                    values.append("'").append(
-                                        dataCursor.getString(i).replace("'", "''")
-                                    ).append("'");
-                                }
-                            }
-                            
-                            String insertSql = String.format("INSERT INTO %s (%s) VALUES (%s)",
-                                tableName, columns.toString(), values.toString());
-                            targetDb.execSQL(insertSql);
-                            rowCount++;
-                        }
-                        dataCursor.close();
-                        
-                        appendLog("    复制了 " + rowCount + " 行数据\n");
-                        tableCount++;
-                        totalRows += rowCount;
-                    }
-                    tablesCursor.close();
-                    
-                    // 复制索引
-                    appendLog("正在复制索引...\n");
-                    android.database.Cursor indexCursor = sourceDb.rawQuery(
-                        "SELECT sql FROM sqlite_master WHERE type='index' AND sql IS NOT NULL",
-                        null
-                    );
-                    int indexCount = 0;
-                    while (indexCursor.moveToNext()) {
-                        try {
-                            targetDb.execSQL(indexCursor.getString(0));
-                            indexCount++;
-                        } catch (Exception e) {
-                            // 某些索引可能自动创建，忽略错误
-                        }
-                    }
-                    indexCursor.close();
-                    
-                    targetDb.setTransactionSuccessful();
-                    appendLog("\n成功复制 " + tableCount + " 个表，共 " + totalRows + " 行数据\n");
-                    appendLog("复制了 " + indexCount + " 个索引\n");
-                    
-                } finally {
-                    if (targetDb.inTransaction()) {
-                        targetDb.endTransaction();
-                    }
-                    targetDb.close();
-                    sourceDb.close();
-                    appendLog("已关闭所有数据库连接\n");
+                List<String> tableNames = dbManager.getTableManager().getAllTableNames();
+                int tableCount = tableNames.size();
+                for (String tableName : tableNames) {
+                    appendLog("  - 表: " + tableName + "\n");
                 }
+                appendLog("\n成功导出 " + tableCount + " 个表，耗时 " + elapsed + " ms\n");
                 
                 if (tableCount == 0) {
                     appendLog("\n⚠ 警告: 数据库中没有用户表!\n\n");
@@ -326,7 +234,7 @@ public class DataExportActivity extends AppCompatActivity {
                     appendLog("注意: 此文件没有加密保护，请妥善保管！\n");
                 }
                 
-                AppLogger.i("DataExport", "导出明文数据库: " + tableCount + " 个表, " + totalRows + " 行数据");
+                AppLogger.i("DataExport", "导出明文数据库: " + tableCount + " 个表, 耗时 " + elapsed + " ms");
                 
                 final int finalTableCount = tableCount;
                 runOnUiThread(() -> {
@@ -372,6 +280,27 @@ public class DataExportActivity extends AppCompatActivity {
         }).start();
     }
     
+    /**
+     * 输出导出进度（在导出线程上由 ProgressTracker 限频调用）
+     */
+    private void showExportProgress(ProgressTracker.Progress progress) {
+        if (progress.isFinished() || progress.getRowsDone() == 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("导出中: ");
+        if (progress.getStage() != null) {
+            line.append(progress.getStage()).append(' ');
+        }
+        line.append(progress.getRowsDone()).append(" 行");
+        if (progress.getPercent() >= 0) {
+            line.append(" (").append(progress.getPercent()).append("%)");
+        }
+        if (progress.getBytesDone() > 0) {
+            line.append(", ").append(formatFileSize(progress.getBytesDone()));
+        }
+        appendLog(line.append('\n').toString());
+    }
+
     private void clearLog() {
         runOnUiThread(() -> {
             if (tvContent != null) {
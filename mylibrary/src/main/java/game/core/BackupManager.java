@@ -0,0 +1,460 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+* 在线热备份 - 在数据库正常读写的同时生成一致的加密备份文件
+*
+* 备份在独立连接上进行：开启一个读事务作为快照（WAL模式下不阻塞前台写入），ATTACH 加密的临时目标库，
+* 先复制表结构，再按 rowid 区间分批复制数据，最后创建索引、触发器、视图并复制 user_version。
+* 每批之间检查取消标记并让出CPU；全部成功后才把临时文件重命名为备份文件，失败或取消时不会留下不完整的备份
+*
+* 注意：非WAL模式下读事务会阻塞其他连接的写入直到备份结束；虚拟表不会被备份
+*/
+public class BackupManager {
+	private static final String TAG = "BackupManager";
+	private static final String FILE_SUFFIX = ".db";
+	private static final String TEMP_SUFFIX = ".tmp";
+	// sqlite_master 中的建表语句前缀，用于在对象名前加上 backup. 限定
+	private static final Pattern CREATE_PREFIX = Pattern.compile(
+	"^(\\s*CREATE\\s+(?:UNIQUE\\s+)?(?:TABLE|INDEX|VIEW|TRIGGER)\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?)",
+	Pattern.CASE_INSENSITIVE);
+	private static final Pattern WITHOUT_ROWID = Pattern.compile("WITHOUT\\s+ROWID\\s*$", Pattern.CASE_INSENSITIVE);
+	
+	/**
+	* 备份进度监听器（在执行备份的线程上回调）
+	*/
+	public interface BackupProgressListener {
+		/**
+		* @param tableName 正在复制的表
+		* @param copiedRows 已复制的总行数
+		* @param totalRows 快照中的总行数
+		*/
+		void onProgress(String tableName, long copiedRows, long totalRows);
+		
+		/**
+		* 是否请求取消（每批复制后检查，效果与 cancel() 相同）
+		*/
+		default boolean isCancelled() {
+			return false;
+		}
+	}
+	
+	private final DBCipherManager dbManager;
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final AtomicBoolean cancelled = new AtomicBoolean(false);
+	private volatile int batchSize = 2000;
+	private volatile long yieldMillis = 0;
+	private volatile int maxBackups = 5;
+	private volatile String targetPassword;
+	
+	public BackupManager(DBCipherManager dbManager) {
+		this.dbManager = dbManager;
+	}
+	
+	// ==================== 配置 ====================
+	
+	/**
+	* 每批复制的行数（默认2000），越小越频繁地检查取消和让出CPU
+	*/
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize必须大于0");
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	* 每批之间休眠的毫秒数（默认0，只让出CPU）
+	*/
+	public void setYieldMillis(long yieldMillis) {
+		this.yieldMillis = Math.max(0, yieldMillis);
+	}
+	
+	/**
+	* backup(File, ...) 在目录中保留的最多备份数量（默认5，0表示不清理）
+	*/
+	public void setMaxBackups(int maxBackups) {
+		this.maxBackups = Math.max(0, maxBackups);
+	}
+	
+	/**
+	* 备份文件的密码（默认为null，使用当前数据库密码）
+	*/
+	public void setTargetPassword(String targetPassword) {
+		this.targetPassword = targetPassword;
+	}
+	
+	// ==================== 备份 ====================
+	
+	/**
+	* 在目录中创建一个带时间戳的备份（数据库名_yyyyMMdd_HHmmss_SSS.db），成功后按 maxBackups 清理旧备份
+	* @return 备份文件，失败或取消返回null
+	*/
+	public File backup(File directory, BackupProgressListener listener) {
+		if (directory == null || (!directory.exists() && !directory.mkdirs())) {
+			log(DBCipherManager.LogLevel.ERROR, "无法创建备份目录: " + directory, null);
+			return null;
+		}
+		String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
+		File target = new File(directory, dbManager.getDatabaseName() + "_" + timestamp + FILE_SUFFIX);
+		if (!backupTo(target, listener)) {
+			return null;
+		}
+		rotate(directory);
+		return target;
+	}
+	
+	/**
+	* 备份到指定文件（已存在的文件会被覆盖）
+	* @return true备份成功，false失败或被取消
+	*/
+	public boolean backupTo(File target, BackupProgressListener listener) {
+		if (!running.compareAndSet(false, true)) {
+			log(DBCipherManager.LogLevel.WARN, "已有备份正在进行", null);
+			return false;
+		}
+		cancelled.set(false);
+		
+		File temp = new File(target.getPath() + TEMP_SUFFIX);
+		deleteDatabaseFiles(temp);
+		SQLiteDatabase db = dbManager.openSeparateConnection(SQLiteDatabase.OPEN_READWRITE);
+		if (db == null) {
+			running.set(false);
+			return false;
+		}
+		
+		char[] password = targetPassword != null ? targetPassword.toCharArray() : dbManager.getPasswordCopy();
+		boolean attached = false;
+		boolean inTransaction = false;
+		boolean success = false;
+		long startTime = System.currentTimeMillis();
+		try {
+			if (!isWalMode(db)) {
+				log(DBCipherManager.LogLevel.WARN, "数据库未启用WAL模式，备份期间其他连接的写入将被阻塞", null);
+			}
+			db.execSQL("ATTACH DATABASE ? AS backup KEY ?", new Object[]{temp.getPath(), new String(password)});
+			attached = true;
+			// 目标是临时文件，失败时整体丢弃，不需要回滚日志
+			db.rawExecSQL("PRAGMA backup.journal_mode = OFF");
+			db.rawExecSQL("PRAGMA backup.synchronous = OFF");
+			
+			// 延迟事务：第一次读取 main 时建立快照，之后的所有读取都来自同一快照
+			db.execSQL("BEGIN DEFERRED");
+			inTransaction = true;
+			if (!copySnapshot(db, listener)) {
+				log(DBCipherManager.LogLevel.INFO, "备份已取消", null);
+				return false;
+			}
+			db.execSQL("COMMIT");
+			inTransaction = false;
+			db.execSQL("DETACH DATABASE backup");
+			attached = false;
+			
+			deleteDatabaseFiles(target);
+			if (!temp.renameTo(target)) {
+				log(DBCipherManager.LogLevel.ERROR, "重命名备份文件失败: " + temp.getPath(), null);
+				return false;
+			}
+			success = true;
+			log(DBCipherManager.LogLevel.INFO, "备份完成: " + target.getPath() + "，耗时 "
+			+ (System.currentTimeMillis() - startTime) + " ms", null);
+			return true;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "备份失败", e);
+			return false;
+		} finally {
+			Arrays.fill(password, '\0');
+			if (inTransaction) {
+				try {
+					db.execSQL("ROLLBACK");
+				} catch (Exception e) {
+					log(DBCipherManager.LogLevel.WARN, "回滚备份事务失败", e);
+				}
+			}
+			if (attached) {
+				try {
+					db.execSQL("DETACH DATABASE backup");
+				} catch (Exception e) {
+					log(DBCipherManager.LogLevel.WARN, "分离备份库失败", e);
+				}
+			}
+			db.close();
+			if (!success) {
+				deleteDatabaseFiles(temp);
+			}
+			running.set(false);
+		}
+	}
+	
+	/**
+	* 请求取消正在进行的备份（在当前批次结束后生效）
+	*/
+	public void cancel() {
+		cancelled.set(true);
+	}
+	
+	public boolean isRunning() {
+		return running.get();
+	}
+	
+	/**
+	* 列出目录中属于当前数据库的备份文件（最新的在前）
+	*/
+	public List<File> listBackups(File directory) {
+		List<File> backups = new ArrayList<>();
+		File[] files = directory != null ? directory.listFiles() : null;
+		if (files == null) {
+			return backups;
+		}
+		String prefix = dbManager.getDatabaseName() + "_";
+		for (File file : files) {
+			String name = file.getName();
+			if (file.isFile() && name.startsWith(prefix) && name.endsWith(FILE_SUFFIX)) {
+				backups.add(file);
+			}
+		}
+		// 文件名中的时间戳定长，按名称倒序即按时间倒序
+		Collections.sort(backups, (a, b) -> b.getName().compareTo(a.getName()));
+		return backups;
+	}
+	
+	private void rotate(File directory) {
+		int keep = maxBackups;
+		if (keep <= 0) {
+			return;
+		}
+		List<File> backups = listBackups(directory);
+		for (int i = keep; i < backups.size(); i++) {
+			File old = backups.get(i);
+			if (old.delete()) {
+				log(DBCipherManager.LogLevel.DEBUG, "删除旧备份: " + old.getName(), null);
+			} else {
+				log(DBCipherManager.LogLevel.WARN, "删除旧备份失败: " + old.getPath(), null);
+			}
+		}
+	}
+	
+	// ==================== 复制 ====================
+	
+	/**
+	* 在当前读事务中复制整个数据库到 backup 库
+	* @return false表示被取消
+	*/
+	private boolean copySnapshot(SQLiteDatabase db, BackupProgressListener listener) {
+		List<String[]> tables = new ArrayList<>();
+		List<String> deferredSql = new ArrayList<>();
+		Cursor cursor = db.rawQuery("SELECT type, name, sql FROM main.sqlite_master"
+		+ " WHERE sql IS NOT NULL AND name NOT LIKE 'sqlite_%' ORDER BY rowid", null);
+		try {
+			while (cursor.moveToNext()) {
+				String type = cursor.getString(0);
+				String name = cursor.getString(1);
+				String sql = cursor.getString(2);
+				if ("table".equals(type)) {
+					if (sql.trim().regionMatches(true, 0, "CREATE VIRTUAL", 0, 14)) {
+						log(DBCipherManager.LogLevel.WARN, "跳过虚拟表: " + name, null);
+						continue;
+					}
+					tables.add(new String[]{name, sql});
+				} else {
+					// 索引、触发器、视图在数据复制完成后创建，避免逐行维护索引和触发器重复执行
+					deferredSql.add(sql);
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+		
+		long totalRows = 0;
+		for (String[] table : tables) {
+			totalRows += queryLong(db, "SELECT COUNT(*) FROM main." + quote(table[0]));
+		}
+		
+		for (String[] table : tables) {
+			db.execSQL(qualify(table[1]));
+		}
+		
+		long[] copied = {0};
+		for (String[] table : tables) {
+			if (!copyTable(db, table[0], table[1], copied, totalRows, listener)) {
+				return false;
+			}
+		}
+		
+		if (queryLong(db, "SELECT COUNT(*) FROM main.sqlite_master WHERE name = 'sqlite_sequence'") > 0) {
+			db.execSQL("DELETE FROM backup.sqlite_sequence");
+			db.execSQL("INSERT INTO backup.sqlite_sequence SELECT * FROM main.sqlite_sequence");
+		}
+		for (String sql : deferredSql) {
+			if (cancelled.get()) {
+				return false;
+			}
+			db.execSQL(qualify(sql));
+		}
+		db.execSQL("PRAGMA backup.user_version = " + queryLong(db, "PRAGMA main.user_version"));
+		return !cancelled.get();
+	}
+	
+	private boolean copyTable(SQLiteDatabase db, String tableName, String createSql,
+	long[] copied, long totalRows, BackupProgressListener listener) {
+		String source = "main." + quote(tableName);
+		String target = "backup." + quote(tableName);
+		List<String> columns = new ArrayList<>();
+		boolean hasRowid = !WITHOUT_ROWID.matcher(createSql.trim()).find();
+		Cursor cursor = db.rawQuery("PRAGMA main.table_info(" + quote(tableName) + ")", null);
+		try {
+			while (cursor.moveToNext()) {
+				String column = cursor.getString(1);
+				// 同名的真实列会遮蔽 rowid 别名
+				if ("rowid".equalsIgnoreCase(column) || "oid".equalsIgnoreCase(column) || "_rowid_".equalsIgnoreCase(column)) {
+					hasRowid = false;
+				}
+				columns.add(quote(column));
+			}
+		} finally {
+			cursor.close();
+		}
+		String columnList = String.join(", ", columns);
+		
+		if (!hasRowid) {
+			if (cancelled.get()) {
+				return false;
+			}
+			long rows = queryLong(db, "SELECT COUNT(*) FROM " + source);
+			db.execSQL("INSERT INTO " + target + " (" + columnList + ") SELECT " + columnList + " FROM " + source);
+			copied[0] += rows;
+			reportProgress(listener, tableName, copied[0], totalRows);
+			return pause();
+		}
+		
+		// 按 rowid 区间分批复制并保留原 rowid
+		String insertSql = "INSERT INTO " + target + " (rowid, " + columnList + ") SELECT rowid, "
+		+ columnList + " FROM " + source + " WHERE rowid > ? AND rowid <= ?";
+		long lastRowid = Long.MIN_VALUE;
+		while (true) {
+			if (cancelled.get()) {
+				return false;
+			}
+			long upperRowid;
+			long rows;
+			cursor = db.rawQuery("SELECT MAX(rowid), COUNT(*) FROM (SELECT rowid FROM " + source
+			+ " WHERE rowid > " + lastRowid + " ORDER BY rowid LIMIT " + batchSize + ")", null);
+			try {
+				cursor.moveToFirst();
+				rows = cursor.getLong(1);
+				upperRowid = cursor.getLong(0);
+			} finally {
+				cursor.close();
+			}
+			if (rows == 0) {
+				return true;
+			}
+			db.execSQL(insertSql, new Object[]{lastRowid, upperRowid});
+			lastRowid = upperRowid;
+			copied[0] += rows;
+			reportProgress(listener, tableName, copied[0], totalRows);
+			if (!pause()) {
+				return false;
+			}
+		}
+	}
+	
+	/**
+	* 批次之间让出CPU
+	* @return false表示线程被中断（视为取消）
+	*/
+	private boolean pause() {
+		long millis = yieldMillis;
+		if (millis <= 0) {
+			Thread.yield();
+			return true;
+		}
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancelled.set(true);
+			return false;
+		}
+	}
+	
+	private void reportProgress(BackupProgressListener listener, String tableName, long copiedRows, long totalRows) {
+		if (listener == null) {
+			return;
+		}
+		try {
+			listener.onProgress(tableName, copiedRows, totalRows);
+			if (listener.isCancelled()) {
+				cancelled.set(true);
+			}
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.WARN, "备份进度回调异常", e);
+		}
+	}
+	
+	// ==================== 工具方法 ====================
+	
+	/**
+	* 在建表/索引/触发器/视图语句的对象名前加上 backup. 限定
+	*/
+	private static String qualify(String createSql) {
+		Matcher matcher = CREATE_PREFIX.matcher(createSql);
+		if (!matcher.find()) {
+			throw new IllegalStateException("无法识别的结构语句: " + createSql);
+		}
+		return matcher.group(1) + "backup." + createSql.substring(matcher.end());
+	}
+	
+	private static String quote(String identifier) {
+		return "\"" + identifier.replace("\"", "\"\"") + "\"";
+	}
+	
+	private static long queryLong(SQLiteDatabase db, String sql) {
+		Cursor cursor = db.rawQuery(sql, null);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private boolean isWalMode(SQLiteDatabase db) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA journal_mode", null);
+			return cursor != null && cursor.moveToFirst() && "wal".equalsIgnoreCase(cursor.getString(0));
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.WARN, "读取日志模式失败", e);
+			return false;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
+	private void deleteDatabaseFiles(File file) {
+		for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+			File f = new File(file.getPath() + suffix);
+			if (f.exists() && !f.delete()) {
+				log(DBCipherManager.LogLevel.WARN, "删除文件失败: " + f.getPath(), null);
+			}
+		}
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
@@ -0,0 +1,255 @@
+package game.core;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+* 二进制导出格式读取器（格式说明见 BinaryDumpWriter）
+* 按表、按行流式读取；每个表的行读完时校验该表块的CRC32，不一致时抛出 IOException
+*
+* 非线程安全
+*/
+public class BinaryDumpReader implements Closeable {
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final CRC32 crc = new CRC32();
+	// 缓冲区中尚未计入校验和的起始位置，-1表示当前不在表块内
+	private int crcMark = -1;
+	
+	private final int version;
+	private final String databaseName;
+	private final long exportTime;
+	
+	private boolean inTable = false;
+	private String tableName;
+	private String[] columns;
+	private long rowCount;
+	private long remainingRows;
+	
+	public BinaryDumpReader(ReadableByteChannel channel) throws IOException {
+		this(channel, 64 * 1024);
+	}
+	
+	public BinaryDumpReader(ReadableByteChannel channel, int bufferSize) throws IOException {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+		buffer.flip(); // 初始为空的读模式
+		
+		fill(BinaryDumpWriter.MAGIC.length + 1);
+		for (byte expected : BinaryDumpWriter.MAGIC) {
+			if (buffer.get() != expected) {
+				throw new IOException("不是有效的二进制导出文件");
+			}
+		}
+		version = buffer.get() & 0xFF;
+		if (version > BinaryDumpWriter.VERSION) {
+			throw new IOException("不支持的二进制导出版本: " + version);
+		}
+		databaseName = readString();
+		exportTime = readVarLong();
+	}
+	
+	public int getVersion() {
+		return version;
+	}
+	
+	public String getDatabaseName() {
+		return databaseName;
+	}
+	
+	public long getExportTime() {
+		return exportTime;
+	}
+	
+	/**
+	* 移动到下一个表（当前表未读完的行会被读取并校验后跳过）
+	* @return false表示已到文件尾
+	*/
+	public boolean nextTable() throws IOException {
+		if (inTable) {
+			while (nextRow() != null) {
+				// 跳过剩余行
+			}
+		}
+		
+		fill(1);
+		crc.reset();
+		crcMark = buffer.position();
+		int tag = buffer.get() & 0xFF;
+		if (tag == BinaryDumpWriter.BLOCK_END) {
+			crcMark = -1;
+			return false;
+		}
+		if (tag != BinaryDumpWriter.BLOCK_TABLE) {
+			throw new IOException("无效的块标记: " + tag);
+		}
+		
+		tableName = readString();
+		int columnCount = checkedLength(readVarLong());
+		columns = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columns[i] = readString();
+		}
+		rowCount = readVarLong();
+		remainingRows = rowCount;
+		inTable = true;
+		return true;
+	}
+	
+	public String getTableName() {
+		return tableName;
+	}
+	
+	/**
+	* 当前表的列名（空字符串表示表的第一列）
+	*/
+	public String[] getColumns() {
+		return columns;
+	}
+	
+	public long getRowCount() {
+		return rowCount;
+	}
+	
+	/**
+	* 读取当前表的下一行
+	* @return 行值（Long/Double/String/byte[]/null），当前表已读完返回null
+	* @throws IOException 读取失败或表块校验和不符
+	*/
+	public Object[] nextRow() throws IOException {
+		if (!inTable) {
+			return null;
+		}
+		if (remainingRows == 0) {
+			finishTable();
+			return null;
+		}
+		remainingRows--;
+		
+		Object[] values = new Object[columns.length];
+		for (int i = 0; i < values.length; i++) {
+			fill(1);
+			int type = buffer.get();
+			switch (type) {
+				case BinaryDumpWriter.TYPE_NULL:
+				values[i] = null;
+				break;
+				case BinaryDumpWriter.TYPE_INTEGER:
+				long zigzag = readVarLong();
+				values[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+				break;
+				case BinaryDumpWriter.TYPE_REAL:
+				fill(8);
+				values[i] = buffer.getDouble();
+				break;
+				case BinaryDumpWriter.TYPE_TEXT:
+				values[i] = readString();
+				break;
+				case BinaryDumpWriter.TYPE_BLOB:
+				values[i] = readBytes(checkedLength(readVarLong()));
+				break;
+				default:
+				throw new IOException("无效的类型标记: " + type);
+			}
+		}
+		return values;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	private void finishTable() throws IOException {
+		updateCrc();
+		crcMark = -1;
+		long expected = crc.getValue();
+		fill(4);
+		long actual = buffer.getInt() & 0xFFFFFFFFL;
+		inTable = false;
+		if (actual != expected) {
+			throw new IOException("表 '" + tableName + "' 数据块校验和不符");
+		}
+	}
+	
+	private String readString() throws IOException {
+		return new String(readBytes(checkedLength(readVarLong())), StandardCharsets.UTF_8);
+	}
+	
+	private byte[] readBytes(int length) throws IOException {
+		byte[] bytes = new byte[length];
+		if (length <= buffer.capacity()) {
+			fill(length);
+			buffer.get(bytes);
+			return bytes;
+		}
+		
+		// 超过缓冲区的大块数据：先取缓冲区剩余部分，其余直接从通道读取
+		int buffered = buffer.remaining();
+		buffer.get(bytes, 0, buffered);
+		updateCrc();
+		ByteBuffer wrapped = ByteBuffer.wrap(bytes, buffered, length - buffered);
+		while (wrapped.hasRemaining()) {
+			if (channel.read(wrapped) < 0) {
+				throw new EOFException("文件意外结束");
+			}
+		}
+		if (crcMark >= 0) {
+			crc.update(bytes, buffered, length - buffered);
+		}
+		return bytes;
+	}
+	
+	private long readVarLong() throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			fill(1);
+			byte b = buffer.get();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("无效的varint编码");
+	}
+	
+	private int checkedLength(long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("无效的长度: " + length);
+		}
+		return (int) length;
+	}
+	
+	/**
+	* 确保缓冲区中至少有 bytes 个未读字节
+	*/
+	private void fill(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		updateCrc();
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				throw new EOFException("文件意外结束");
+			}
+		}
+		buffer.flip();
+		if (crcMark >= 0) {
+			crcMark = 0;
+		}
+	}
+	
+	private void updateCrc() {
+		if (crcMark >= 0 && buffer.position() > crcMark) {
+			crc.update(buffer.array(), crcMark, buffer.position() - crcMark);
+			crcMark = buffer.position();
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+* 二进制导出格式写入器
+*
+* 文件结构：
+* <pre>
+* 文件头  : 魔数 "SQCD" | 版本(1字节) | 数据库名(字符串) | 导出时间(varint)
+* 表块    : 0x01 | 表名(字符串) | 列数(varint) | 列名(字符串)... | 行数(varint)
+*           | 行... | CRC32(4字节，覆盖从0x01到最后一行的所有字节)
+* 行      : 每列一个 类型标记(1字节) + 数据
+* 文件尾  : 0x00
+* </pre>
+* 字符串为 varint长度 + UTF-8字节；INTEGER 为 zigzag varint，REAL 为8字节IEEE754，BLOB 为 varint长度 + 原始字节。
+* 列名为空字符串表示"表的第一列"（由JSON单值行转换而来）
+*
+* 非线程安全
+*/
+public class BinaryDumpWriter implements Closeable {
+	static final byte[] MAGIC = {'S', 'Q', 'C', 'D'};
+	static final int VERSION = 1;
+	
+	static final int BLOCK_END = 0x00;
+	static final int BLOCK_TABLE = 0x01;
+	
+	static final int TYPE_NULL = 0;
+	static final int TYPE_INTEGER = 1;
+	static final int TYPE_REAL = 2;
+	static final int TYPE_TEXT = 3;
+	static final int TYPE_BLOB = 4;
+	
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final CRC32 crc = new CRC32();
+	// 缓冲区中尚未计入校验和的起始位置，-1表示当前不在表块内
+	private int crcMark = -1;
+	private int columnCount = -1;
+	private long remainingRows = 0;
+	
+	public BinaryDumpWriter(WritableByteChannel channel) {
+		this(channel, 64 * 1024);
+	}
+	
+	public BinaryDumpWriter(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+	}
+	
+	/**
+	* 写入文件头
+	*/
+	public void writeHeader(String databaseName, long exportTime) throws IOException {
+		ensureCapacity(MAGIC.length + 1);
+		buffer.put(MAGIC);
+		buffer.put((byte) VERSION);
+		writeString(databaseName != null ? databaseName : "");
+		writeVarLong(exportTime);
+	}
+	
+	/**
+	* 开始一个表块
+	* @param rowCount 该表将写入的行数（必须与实际写入的行数一致）
+	*/
+	public void beginTable(String tableName, String[] columns, long rowCount) throws IOException {
+		if (columnCount >= 0) {
+			throw new IllegalStateException("上一个表尚未结束");
+		}
+		ensureCapacity(1);
+		crc.reset();
+		crcMark = buffer.position();
+		buffer.put((byte) BLOCK_TABLE);
+		writeString(tableName);
+		writeVarLong(columns.length);
+		for (String column : columns) {
+			writeString(column);
+		}
+		writeVarLong(rowCount);
+		columnCount = columns.length;
+		remainingRows = rowCount;
+	}
+	
+	/**
+	* 写入游标当前行（按 SQLite 存储类型写入，不做任何文本转换）
+	*/
+	public void writeRow(Cursor cursor) throws IOException {
+		beginRow();
+		for (int i = 0; i < columnCount; i++) {
+			switch (cursor.getType(i)) {
+				case Cursor.FIELD_TYPE_NULL:
+				writeNull();
+				break;
+				case Cursor.FIELD_TYPE_INTEGER:
+				writeLong(cursor.getLong(i));
+				break;
+				case Cursor.FIELD_TYPE_FLOAT:
+				writeDouble(cursor.getDouble(i));
+				break;
+				case Cursor.FIELD_TYPE_BLOB:
+				writeBlob(cursor.getBlob(i));
+				break;
+				default:
+				writeText(cursor.getString(i));
+				break;
+			}
+		}
+	}
+	
+	/**
+	* 写入一行值（支持 null/整数/浮点数/Boolean/String/byte[]，其他类型按字符串写入）
+	*/
+	public void writeRow(Object[] values) throws IOException {
+		beginRow();
+		if (values.length != columnCount) {
+			throw new IllegalArgumentException("值数量与列数不一致: " + values.length + " != " + columnCount);
+		}
+		for (Object value : values) {
+			if (value == null) {
+				writeNull();
+			} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				writeLong(((Number) value).longValue());
+			} else if (value instanceof Double || value instanceof Float) {
+				writeDouble(((Number) value).doubleValue());
+			} else if (value instanceof Boolean) {
+				writeLong((Boolean) value ? 1 : 0);
+			} else if (value instanceof byte[]) {
+				writeBlob((byte[]) value);
+			} else {
+				writeText(value.toString());
+			}
+		}
+	}
+	
+	/**
+	* 结束当前表块并写入校验和
+	*/
+	public void endTable() throws IOException {
+		if (columnCount < 0) {
+			throw new IllegalStateException("没有正在写入的表");
+		}
+		if (remainingRows != 0) {
+			throw new IllegalStateException("实际写入行数与声明的行数不一致");
+		}
+		updateCrc();
+		crcMark = -1;
+		ensureCapacity(4);
+		buffer.putInt((int) crc.getValue());
+		columnCount = -1;
+	}
+	
+	/**
+	* 写入文件尾并刷新缓冲区
+	*/
+	public void finish() throws IOException {
+		if (columnCount >= 0) {
+			throw new IllegalStateException("表尚未结束");
+		}
+		ensureCapacity(1);
+		buffer.put((byte) BLOCK_END);
+		flush();
+	}
+	
+	public void flush() throws IOException {
+		updateCrc();
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		if (crcMark >= 0) {
+			crcMark = 0;
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private void beginRow() {
+		if (columnCount < 0) {
+			throw new IllegalStateException("没有正在写入的表");
+		}
+		if (remainingRows-- <= 0) {
+			throw new IllegalStateException("写入行数超过声明的行数");
+		}
+	}
+	
+	private void writeNull() throws IOException {
+		ensureCapacity(1);
+		buffer.put((byte) TYPE_NULL);
+	}
+	
+	private void writeLong(long value) throws IOException {
+		ensureCapacity(1);
+		buffer.put((byte) TYPE_INTEGER);
+		// zigzag编码，使小负数同样占用较少字节
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+	
+	private void writeDouble(double value) throws IOException {
+		ensureCapacity(9);
+		buffer.put((byte) TYPE_REAL);
+		buffer.putDouble(value);
+	}
+	
+	private void writeText(String value) throws IOException {
+		ensureCapacity(1);
+		buffer.put((byte) TYPE_TEXT);
+		writeString(value);
+	}
+	
+	private void writeBlob(byte[] value) throws IOException {
+		ensureCapacity(1);
+		buffer.put((byte) TYPE_BLOB);
+		writeBytes(value);
+	}
+	
+	private void writeString(String value) throws IOException {
+		writeBytes(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private void writeBytes(byte[] bytes) throws IOException {
+		writeVarLong(bytes.length);
+		if (bytes.length <= buffer.capacity()) {
+			ensureCapacity(bytes.length);
+			buffer.put(bytes);
+			return;
+		}
+		// 超过缓冲区的大块数据直接写入通道
+		flush();
+		if (crcMark >= 0) {
+			crc.update(bytes, 0, bytes.length);
+		}
+		ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+		while (wrapped.hasRemaining()) {
+			channel.write(wrapped);
+		}
+	}
+	
+	/**
+	* 无符号varint（每字节7位，高位为续位标记）
+	*/
+	private void writeVarLong(long value) throws IOException {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+	
+	private void ensureCapacity(int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+	
+	private void updateCrc() {
+		if (crcMark >= 0 && buffer.position() > crcMark) {
+			crc.update(buffer.array(), crcMark, buffer.position() - crcMark);
+			crcMark = buffer.position();
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+* 按窗口读取单个 BLOB 的输入流
+* 每次用 substr() 只取出一个窗口大小的字节，整个值不会进入 Java 堆，也不受 CursorWindow 单行大小限制。
+* 绑定到某个连接时（导出的读快照内）各窗口来自同一快照；通过 DBCipherManager 读取时在 open 中取得
+* 当前线程的连接并持有到 close()，各窗口不再重复打开数据库，但每个窗口单独查询，读取期间该行被修改会读到前后不一致的数据
+*
+* TEXT 值按 UTF-8 字节读取；NULL 视为空流
+*
+* 非线程安全：通过 DBCipherManager 打开的流必须在打开它的线程上读取和关闭
+*/
+final class BlobInputStream extends InputStream {
+	static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+	
+	// 非null时 close() 需要释放打开时取得的线程连接
+	private DBCipherManager dbManager;
+	private final SQLiteDatabase db;
+	private final String selectSql;
+	private final String[] args = new String[3];
+	private final long length;
+	private final int windowSize;
+	private byte[] window = new byte[0];
+	private int windowPosition = 0;
+	private long offset = 0;
+	
+	/**
+	* 通过 DBCipherManager 的线程连接读取（连接持有到 close()）
+	*/
+	static BlobInputStream open(DBCipherManager dbManager, String tableName, String columnName, long rowid, int windowSize) {
+		SQLiteDatabase db = dbManager.getConnection();
+		BlobInputStream in = null;
+		try {
+			in = open(dbManager, db, tableName, columnName, rowid, windowSize);
+			return in;
+		} finally {
+			if (in == null) {
+				dbManager.releaseConnection();
+			}
+		}
+	}
+	
+	/**
+	* 在指定连接上读取（调用方保证流使用期间连接有效）
+	*/
+	static BlobInputStream open(SQLiteDatabase db, String tableName, String columnName, long rowid, int windowSize) {
+		return open(null, db, tableName, columnName, rowid, windowSize);
+	}
+	
+	/**
+	* @return 输入流，行不存在返回null
+	*/
+	private static BlobInputStream open(DBCipherManager dbManager, SQLiteDatabase db, String tableName, String columnName,
+	long rowid, int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("窗口大小必须大于0");
+		}
+		String table = quote(tableName);
+		String column = quote(columnName);
+		// BLOB 直接取 length()，SQLite 不需要读出内容
+		Cursor cursor = db.rawQuery("SELECT typeof(" + column + "), CASE typeof(" + column + ") WHEN 'blob' THEN length(" + column
+		+ ") ELSE length(CAST(" + column + " AS BLOB)) END FROM " + table + " WHERE rowid = ?", new String[]{String.valueOf(rowid)});
+		try {
+			if (!cursor.moveToFirst()) {
+				return null;
+			}
+			// BLOB 按字节截取；其他类型先转为 BLOB，否则 substr 会按字符计数
+			String source = "blob".equals(cursor.getString(0)) ? column : "CAST(" + column + " AS BLOB)";
+			String selectSql = "SELECT substr(" + source + ", ?, ?) FROM " + table + " WHERE rowid = ?";
+			return new BlobInputStream(dbManager, db, selectSql, rowid, cursor.isNull(1) ? 0 : cursor.getLong(1), windowSize);
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private BlobInputStream(DBCipherManager dbManager, SQLiteDatabase db, String selectSql, long rowid, long length, int windowSize) {
+		this.dbManager = dbManager;
+		this.db = db;
+		this.selectSql = selectSql;
+		this.args[2] = String.valueOf(rowid);
+		this.length = length;
+		this.windowSize = windowSize;
+	}
+	
+	/**
+	* 值的总字节数
+	*/
+	long length() {
+		return length;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (!fillWindow()) {
+			return -1;
+		}
+		return window[windowPosition++] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fillWindow()) {
+			return -1;
+		}
+		int count = Math.min(len, window.length - windowPosition);
+		System.arraycopy(window, windowPosition, b, off, count);
+		windowPosition += count;
+		return count;
+	}
+	
+	@Override
+	public long skip(long n) {
+		long buffered = Math.min(n, window.length - windowPosition);
+		windowPosition += (int) buffered;
+		long skipped = Math.min(n - buffered, length - offset);
+		offset += skipped;
+		return buffered + skipped;
+	}
+	
+	@Override
+	public int available() {
+		return window.length - windowPosition;
+	}
+	
+	/**
+	* 当前窗口读完时读取下一个窗口
+	* @return false表示已到末尾
+	*/
+	private boolean fillWindow() throws IOException {
+		if (windowPosition < window.length) {
+			return true;
+		}
+		if (offset >= length) {
+			return false;
+		}
+		int size = (int) Math.min(windowSize, length - offset);
+		// substr 的起始位置从1开始
+		args[0] = String.valueOf(offset + 1);
+		args[1] = String.valueOf(size);
+		if (!db.isOpen()) {
+			throw new IOException("数据库连接已关闭");
+		}
+		byte[] next;
+		try {
+			next = queryWindow();
+		} catch (Exception e) {
+			throw new IOException("读取BLOB数据失败", e);
+		}
+		if (next == null || next.length == 0) {
+			throw new IOException("BLOB在读取过程中被修改或删除");
+		}
+		window = next;
+		windowPosition = 0;
+		offset += next.length;
+		return true;
+	}
+	
+	/**
+	* 释放打开时取得的线程连接（在指定连接上打开的流不关闭该连接）
+	*/
+	@Override
+	public void close() {
+		window = new byte[0];
+		windowPosition = 0;
+		offset = length;
+		if (dbManager != null) {
+			DBCipherManager owner = dbManager;
+			dbManager = null;
+			owner.releaseConnection();
+		}
+	}
+	
+	private byte[] queryWindow() {
+		Cursor cursor = db.rawQuery(selectSql, args);
+		try {
+			return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getBlob(0) : null;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	static String quote(String identifier) {
+		return "\"" + identifier.replace("\"", "\"\"") + "\"";
+	}
+}
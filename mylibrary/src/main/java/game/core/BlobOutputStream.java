@@ -0,0 +1,150 @@
+package game.core;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+* 分块写入单个 BLOB 的输出流
+* 打开时把目标列置为空 BLOB，之后每攒满一块用 UPDATE ... SET col = CAST(col || ? AS BLOB) 追加到末尾，
+* Java 堆中只保留一块数据。每块是一条独立语句：需要整体原子写入时在 DBCipherManager 的事务中使用。
+* 每次追加都在原生层读出并重写整个值，写入总量为 O(n²/块大小)：已知总长度时按 chunkSizeFor 选择块大小，
+* 使追加次数保持在 TARGET_APPENDS 左右
+*
+* 打开时取得当前线程的数据库连接并持有到 close()，各块不再重复打开数据库；
+* 非线程安全，必须在打开它的线程上写入和关闭
+*/
+final class BlobOutputStream extends OutputStream {
+	static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+	static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+	static final int TARGET_APPENDS = 16;
+	
+	private final DBCipherManager dbManager;
+	private final SQLiteDatabase db;
+	private final String appendSql;
+	private final long rowid;
+	private final byte[] chunk;
+	private int chunkLength = 0;
+	private long written = 0;
+	private boolean closed = false;
+	
+	/**
+	* @return 输出流，行不存在返回null
+	*/
+	static BlobOutputStream open(DBCipherManager dbManager, String tableName, String columnName, long rowid, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("块大小必须大于0");
+		}
+		String table = BlobInputStream.quote(tableName);
+		String column = BlobInputStream.quote(columnName);
+		SQLiteDatabase db = dbManager.getConnection();
+		BlobOutputStream out = null;
+		try {
+			db.execSQL("UPDATE " + table + " SET " + column + " = X'' WHERE rowid = ?", new Object[]{rowid});
+			if (SqlUtilManager.queryLong(db, "SELECT changes()", null) > 0) {
+				out = new BlobOutputStream(dbManager, db, "UPDATE " + table + " SET " + column + " = CAST(" + column
+				+ " || ? AS BLOB) WHERE rowid = ?", rowid, chunkSize);
+			}
+			return out;
+		} finally {
+			if (out == null) {
+				dbManager.releaseConnection();
+			}
+		}
+	}
+	
+	/**
+	* 按预计总长度选择块大小：追加次数约为 TARGET_APPENDS，块大小在 DEFAULT_CHUNK_SIZE 和 MAX_CHUNK_SIZE 之间
+	*/
+	static int chunkSizeFor(long expectedLength) {
+		long size = (expectedLength + TARGET_APPENDS - 1) / TARGET_APPENDS;
+		return (int) Math.max(DEFAULT_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size));
+	}
+	
+	private BlobOutputStream(DBCipherManager dbManager, SQLiteDatabase db, String appendSql, long rowid, int chunkSize) {
+		this.dbManager = dbManager;
+		this.db = db;
+		this.appendSql = appendSql;
+		this.rowid = rowid;
+		this.chunk = new byte[chunkSize];
+	}
+	
+	/**
+	* 已写入数据库的字节数
+	*/
+	long getWrittenBytes() {
+		return written;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (chunkLength == chunk.length) {
+			appendChunk();
+		}
+		chunk[chunkLength++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (chunkLength == chunk.length) {
+				appendChunk();
+			}
+			int count = Math.min(len, chunk.length - chunkLength);
+			System.arraycopy(b, off, chunk, chunkLength, count);
+			chunkLength += count;
+			off += count;
+			len -= count;
+		}
+	}
+	
+	/**
+	* 把未满一块的数据也追加到数据库
+	*/
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		appendChunk();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			appendChunk();
+		} finally {
+			closed = true;
+			dbManager.releaseConnection();
+		}
+	}
+	
+	private void appendChunk() throws IOException {
+		if (chunkLength == 0) {
+			return;
+		}
+		byte[] data = chunkLength == chunk.length ? chunk : Arrays.copyOf(chunk, chunkLength);
+		boolean updated;
+		try {
+			db.execSQL(appendSql, new Object[]{data, rowid});
+			updated = SqlUtilManager.queryLong(db, "SELECT changes()", null) > 0;
+		} catch (Exception e) {
+			throw new IOException("写入BLOB数据失败", e);
+		}
+		if (!updated) {
+			throw new IOException("写入BLOB数据失败，行可能已被删除");
+		}
+		written += chunkLength;
+		chunkLength = 0;
+	}
+	
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("流已关闭");
+		}
+	}
+}
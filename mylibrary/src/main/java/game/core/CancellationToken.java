@@ -0,0 +1,32 @@
+package game.core;
+
+import java.io.InterruptedIOException;
+
+/**
+* 取消令牌
+* 由调用方持有并在任意线程上调用 cancel()，长时间运行的操作在批次之间检查并尽快停止；
+* 已经提交的批次不会回滚，操作按各自的失败返回值返回
+*/
+public class CancellationToken {
+	private volatile boolean cancelled = false;
+	
+	/**
+	* 请求取消（可重复调用）
+	*/
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	* 已取消时抛出 InterruptedIOException，便于在读写循环中直接中止
+	*/
+	public void throwIfCancelled() throws InterruptedIOException {
+		if (cancelled) {
+			throw new InterruptedIOException("操作已取消");
+		}
+	}
+}
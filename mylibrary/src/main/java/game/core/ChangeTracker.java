@@ -0,0 +1,564 @@
+package game.core;
+
+import android.util.Base64;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* 变更跟踪 - 为表启用后由触发器把每次插入/修改/删除的 rowid 记入变更日志，
+* 增量导出只输出自某个令牌以来变化过的行（现存的行按整行导出，已不存在的行导出为删除），
+* 适合把存档的增量同步到云端或另一份副本
+*
+* 令牌是变更日志的自增序号：exportChangesSince 返回本次导出覆盖到的令牌，下次从该令牌继续。
+* 启用跟踪之前已有的数据不会出现在增量中，需先做一次全量导出作为基线。
+* 行以 rowid 标识，建议只对有 INTEGER PRIMARY KEY 的表启用（其他表的 rowid 可能在 VACUUM 后改变）
+*/
+public class ChangeTracker {
+	private static final String TAG = "ChangeTracker";
+	public static final String CHANGE_LOG_TABLE = "__change_log";
+	public static final String TRACKED_TABLE = "__change_tracked";
+	private static final String FORMAT = "changes";
+	// 版本2：BLOB 值写为 {"$blob":"<Base64>"}，版本1中 BLOB 为普通 Base64 字符串
+	private static final int FORMAT_VERSION = 2;
+	private static final String BLOB_TAG = "$blob";
+	
+	private final DBCipherManager dbManager;
+	
+	public ChangeTracker(DBCipherManager dbManager) {
+		this.dbManager = dbManager;
+	}
+	
+	// ==================== 启用与停用 ====================
+	
+	/**
+	* 为表启用变更跟踪（创建触发器）
+	* @return 是否启用成功
+	*/
+	public boolean enable(String tableName) {
+		return dbManager.executeWithConnection(db -> {
+			try {
+				db.beginTransaction();
+				String createSql = queryString(db, "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?",
+				new String[]{tableName});
+				if (createSql == null) {
+					log(DBCipherManager.LogLevel.ERROR, "表不存在: " + tableName, null);
+					return false;
+				}
+				if (createSql.toUpperCase().replaceAll("\\s+", " ").trim().endsWith("WITHOUT ROWID")) {
+					log(DBCipherManager.LogLevel.ERROR, "WITHOUT ROWID 表不支持变更跟踪: " + tableName, null);
+					return false;
+				}
+				if (!hasIntegerPrimaryKey(db, tableName)) {
+					log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 没有 INTEGER PRIMARY KEY，VACUUM 后 rowid 可能改变，增量同步前应先全量同步", null);
+				}
+				ensureTables(db);
+				db.execSQL("INSERT OR IGNORE INTO " + TRACKED_TABLE + " (table_name) VALUES (?)", new Object[]{tableName});
+				createTriggers(db, tableName);
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "已启用变更跟踪: " + tableName, null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "启用变更跟踪失败: " + tableName, e);
+				return false;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 停用表的变更跟踪：删除触发器和该表的变更记录
+	*/
+	public boolean disable(String tableName) {
+		return dbManager.executeWithConnection(db -> {
+			try {
+				db.beginTransaction();
+				ensureTables(db);
+				for (String suffix : new String[]{"ins", "upd", "del"}) {
+					db.execSQL("DROP TRIGGER IF EXISTS " + quote(triggerName(tableName, suffix)));
+				}
+				db.execSQL("DELETE FROM " + CHANGE_LOG_TABLE + " WHERE table_name = ?", new Object[]{tableName});
+				db.execSQL("DELETE FROM " + TRACKED_TABLE + " WHERE table_name = ?", new Object[]{tableName});
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "已停用变更跟踪: " + tableName, null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "停用变更跟踪失败: " + tableName, e);
+				return false;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	public boolean isEnabled(String tableName) {
+		return getTrackedTables().contains(tableName);
+	}
+	
+	/**
+	* 已启用变更跟踪的表
+	*/
+	public List<String> getTrackedTables() {
+		return dbManager.executeWithConnection(this::getTrackedTables);
+	}
+	
+	/**
+	* 当前令牌（最近一次变更的序号），未记录过变更时为0
+	*/
+	public long getCurrentToken() {
+		return dbManager.executeWithConnection(this::currentToken);
+	}
+	
+	/**
+	* 删除序号不大于令牌的变更记录（所有副本都已同步到该令牌后调用，避免变更日志无限增长）
+	* @return 删除的记录数，失败返回-1
+	*/
+	public int prune(long token) {
+		return dbManager.executeWithConnection(db -> {
+			try {
+				if (!tableExists(db, CHANGE_LOG_TABLE)) {
+					return 0;
+				}
+				SQLiteStatement statement = db.compileStatement("DELETE FROM " + CHANGE_LOG_TABLE + " WHERE seq <= ?");
+				try {
+					statement.bindLong(1, token);
+					int deleted = statement.executeUpdateDelete();
+					log(DBCipherManager.LogLevel.DEBUG, "清理变更记录 " + deleted + " 条", null);
+					return deleted;
+				} finally {
+					statement.close();
+				}
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "清理变更记录失败", e);
+				return -1;
+			}
+		});
+	}
+	
+	// ==================== 增量导出 ====================
+	
+	/**
+	* 导出自令牌以来的变更（在同一读快照中完成，结果与令牌严格对应）
+	*
+	* 输出格式：
+	* <pre>
+	* {"format":"changes","version":2,"database_name":"...","from_token":10,"to_token":42,
+	*  "tables":{"player":{"upserts":[{"rowid":1,"values":{"id":1,"gold":100,"avatar":{"$blob":"iVBORw0..."}}}],"deletes":[7,9]}}}
+	* </pre>
+	* BLOB 值以 {"$blob":"Base64"} 标记，应用时按 BLOB 写回，不会变成 TEXT
+	* @param token 上次导出返回的令牌，首次增量导出使用全量导出时的 getCurrentToken()
+	* @return 本次导出覆盖到的令牌（下次导出的起点），失败返回-1
+	*/
+	public long exportChangesSince(long token, Writer writer) {
+		return dbManager.executeInReadSnapshot(db -> {
+			try {
+				long toToken = currentToken(db);
+				writer.write("{\"format\":\"" + FORMAT + "\",\"version\":" + FORMAT_VERSION);
+				writer.write(",\"database_name\":\"" + SqlUtilManager.escapeJsonString(dbManager.getDatabaseName()) + "\"");
+				writer.write(",\"from_token\":" + token + ",\"to_token\":" + toToken + ",\"tables\":{");
+				int upserts = 0;
+				int deletes = 0;
+				boolean firstTable = true;
+				if (toToken > token) {
+					for (String tableName : getTrackedTables(db)) {
+						if (!tableExists(db, tableName)) {
+							log(DBCipherManager.LogLevel.WARN, "跟踪的表已不存在，跳过: " + tableName, null);
+							continue;
+						}
+						String[] args = {tableName, String.valueOf(token), String.valueOf(toToken)};
+						if (queryLong(db, "SELECT COUNT(*) FROM " + CHANGE_LOG_TABLE
+						+ " WHERE table_name = ? AND seq > ? AND seq <= ?", args) == 0) {
+							continue;
+						}
+						if (!firstTable) writer.write(",");
+						firstTable = false;
+						writer.write("\"" + SqlUtilManager.escapeJsonString(tableName) + "\":{\"upserts\":[");
+						upserts += writeUpserts(db, tableName, args, writer);
+						writer.write("],\"deletes\":[");
+						deletes += writeDeletes(db, tableName, args, writer);
+						writer.write("]}");
+					}
+				}
+				writer.write("}}");
+				writer.flush();
+				log(DBCipherManager.LogLevel.INFO, "增量导出完成: 令牌 " + token + " -> " + toToken
+				+ "，更新 " + upserts + " 行，删除 " + deletes + " 行", null);
+				return toToken;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "增量导出失败", e);
+				return -1L;
+			}
+		});
+	}
+	
+	private int writeUpserts(SQLiteDatabase db, String tableName, String[] args, Writer writer) throws IOException {
+		Cursor cursor = db.rawQuery("SELECT rowid, * FROM " + quote(tableName) + " WHERE rowid IN (SELECT row_id FROM "
+		+ CHANGE_LOG_TABLE + " WHERE table_name = ? AND seq > ? AND seq <= ?) ORDER BY rowid", args);
+		try {
+			String[] columns = cursor.getColumnNames();
+			int count = 0;
+			while (cursor.moveToNext()) {
+				if (count > 0) writer.write(",");
+				writer.write("{\"rowid\":" + cursor.getLong(0) + ",\"values\":{");
+				for (int i = 1; i < columns.length; i++) {
+					if (i > 1) writer.write(",");
+					writer.write("\"" + SqlUtilManager.escapeJsonString(columns[i]) + "\":");
+					if (cursor.getType(i) == Cursor.FIELD_TYPE_BLOB) {
+						writer.write("{\"" + BLOB_TAG + "\":");
+						SqlUtilManager.writeJsonValue(writer, cursor.getBlob(i));
+						writer.write("}");
+					} else {
+						SqlUtilManager.writeJsonValue(writer, SqlUtilManager.getValueFromCursor(cursor, i));
+					}
+				}
+				writer.write("}}");
+				count++;
+			}
+			return count;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private int writeDeletes(SQLiteDatabase db, String tableName, String[] args, Writer writer) throws IOException {
+		Cursor cursor = db.rawQuery("SELECT DISTINCT row_id FROM " + CHANGE_LOG_TABLE
+		+ " WHERE table_name = ? AND seq > ? AND seq <= ? AND row_id NOT IN (SELECT rowid FROM " + quote(tableName)
+		+ ") ORDER BY row_id", args);
+		try {
+			int count = 0;
+			while (cursor.moveToNext()) {
+				if (count > 0) writer.write(",");
+				writer.write(String.valueOf(cursor.getLong(0)));
+				count++;
+			}
+			return count;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	// ==================== 应用变更 ====================
+	
+	/**
+	* 把 exportChangesSince 的输出应用到当前数据库（单个事务，任一行失败则整体回滚）
+	* 更新按 rowid 整行覆盖（INSERT OR REPLACE），删除按 rowid 删除；接收方的表结构应与导出方一致
+	* @return 应用的行数，失败返回-1
+	*/
+	public int applyChanges(Reader reader) {
+		return dbManager.executeWithConnection(db -> {
+			JsonReader jsonReader = new JsonReader(reader);
+			Map<String, SQLiteStatement> statements = new HashMap<>();
+			int applied = 0;
+			db.beginTransaction();
+			try {
+				jsonReader.beginObject();
+				while (jsonReader.hasNext()) {
+					String name = jsonReader.nextName();
+					if ("format".equals(name)) {
+						String format = jsonReader.nextString();
+						if (!FORMAT.equals(format)) {
+							throw new IOException("不是增量变更数据: " + format);
+						}
+					} else if ("version".equals(name)) {
+						int version = jsonReader.nextInt();
+						if (version > FORMAT_VERSION) {
+							throw new IOException("不支持的增量格式版本: " + version);
+						}
+					} else if ("tables".equals(name)) {
+						jsonReader.beginObject();
+						while (jsonReader.hasNext()) {
+							applied += applyTable(db, jsonReader, jsonReader.nextName(), statements);
+						}
+						jsonReader.endObject();
+					} else {
+						jsonReader.skipValue();
+					}
+				}
+				jsonReader.endObject();
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "应用增量变更完成，共 " + applied + " 行", null);
+				return applied;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "应用增量变更失败，已回滚", e);
+				return -1;
+			} finally {
+				for (SQLiteStatement statement : statements.values()) {
+					statement.close();
+				}
+				db.endTransaction();
+			}
+		});
+	}
+	
+	private int applyTable(SQLiteDatabase db, JsonReader jsonReader, String tableName,
+	Map<String, SQLiteStatement> statements) throws IOException {
+		Set<String> columns = getColumns(db, tableName);
+		if (columns.isEmpty()) {
+			throw new IOException("表不存在: " + tableName);
+		}
+		int applied = 0;
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String section = jsonReader.nextName();
+			if ("upserts".equals(section)) {
+				jsonReader.beginArray();
+				while (jsonReader.hasNext()) {
+					applyUpsert(db, jsonReader, tableName, columns, statements);
+					applied++;
+				}
+				jsonReader.endArray();
+			} else if ("deletes".equals(section)) {
+				SQLiteStatement delete = statement(db, statements, "DELETE FROM " + quote(tableName) + " WHERE rowid = ?");
+				jsonReader.beginArray();
+				while (jsonReader.hasNext()) {
+					delete.bindLong(1, jsonReader.nextLong());
+					delete.executeUpdateDelete();
+					applied++;
+				}
+				jsonReader.endArray();
+			} else {
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		return applied;
+	}
+	
+	private void applyUpsert(SQLiteDatabase db, JsonReader jsonReader, String tableName, Set<String> columns,
+	Map<String, SQLiteStatement> statements) throws IOException {
+		Long rowid = null;
+		List<String> names = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			String key = jsonReader.nextName();
+			if ("rowid".equals(key)) {
+				rowid = jsonReader.nextLong();
+			} else if ("values".equals(key) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+				jsonReader.beginObject();
+				while (jsonReader.hasNext()) {
+					String column = jsonReader.nextName();
+					if (!columns.contains(column.toLowerCase())) {
+						throw new IOException("表 '" + tableName + "' 中不存在列: " + column);
+					}
+					names.add(quote(column));
+					values.add(jsonReader.peek() == JsonToken.BEGIN_OBJECT
+					? readBlob(jsonReader, tableName, column) : SqlUtilManager.readStreamValue(jsonReader));
+				}
+				jsonReader.endObject();
+			} else {
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		if (rowid == null) {
+			throw new IOException("变更行缺少 rowid: " + tableName);
+		}
+		
+		StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(quote(tableName)).append(" (rowid");
+		for (String name : names) {
+			sql.append(", ").append(name);
+		}
+		sql.append(") VALUES (?");
+		for (int i = 0; i < names.size(); i++) {
+			sql.append(", ?");
+		}
+		sql.append(")");
+		
+		SQLiteStatement upsert = statement(db, statements, sql.toString());
+		upsert.clearBindings();
+		upsert.bindLong(1, rowid);
+		for (int i = 0; i < values.size(); i++) {
+			bindValue(upsert, i + 2, values.get(i));
+		}
+		upsert.executeInsert();
+	}
+	
+	/**
+	* 读取 {"$blob":"Base64"} 形式的 BLOB 值
+	*/
+	private static byte[] readBlob(JsonReader jsonReader, String tableName, String column) throws IOException {
+		byte[] blob = null;
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			if (BLOB_TAG.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.STRING) {
+				try {
+					blob = Base64.decode(jsonReader.nextString(), Base64.DEFAULT);
+				} catch (IllegalArgumentException e) {
+					throw new IOException("列 '" + tableName + "." + column + "' 的BLOB数据不是有效的Base64", e);
+				}
+			} else {
+				jsonReader.skipValue();
+			}
+		}
+		jsonReader.endObject();
+		if (blob == null) {
+			throw new IOException("列 '" + tableName + "." + column + "' 的值不是BLOB标记对象");
+		}
+		return blob;
+	}
+	
+	private SQLiteStatement statement(SQLiteDatabase db, Map<String, SQLiteStatement> statements, String sql) {
+		SQLiteStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = db.compileStatement(sql);
+			statements.put(sql, statement);
+		}
+		return statement;
+	}
+	
+	private static void bindValue(SQLiteStatement statement, int index, Object value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else if (value instanceof Long) {
+			statement.bindLong(index, (Long) value);
+		} else if (value instanceof Double) {
+			statement.bindDouble(index, (Double) value);
+		} else if (value instanceof Boolean) {
+			statement.bindLong(index, (Boolean) value ? 1 : 0);
+		} else if (value instanceof byte[]) {
+			statement.bindBlob(index, (byte[]) value);
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+	
+	// ==================== 触发器 ====================
+	
+	private void createTriggers(SQLiteDatabase db, String tableName) {
+		String table = quote(tableName);
+		String name = literal(tableName);
+		String logNew = "INSERT INTO " + CHANGE_LOG_TABLE + " (table_name, row_id) VALUES (" + name + ", NEW.rowid);";
+		String logOld = "INSERT INTO " + CHANGE_LOG_TABLE + " (table_name, row_id) VALUES (" + name + ", OLD.rowid);";
+		
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS " + quote(triggerName(tableName, "ins"))
+		+ " AFTER INSERT ON " + table + " BEGIN " + logNew + " END");
+		// rowid 被修改时旧 rowid 也要记录，导出时会因旧行不存在而输出为删除
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS " + quote(triggerName(tableName, "upd"))
+		+ " AFTER UPDATE ON " + table + " BEGIN " + logNew
+		+ " INSERT INTO " + CHANGE_LOG_TABLE + " (table_name, row_id) SELECT " + name + ", OLD.rowid WHERE OLD.rowid != NEW.rowid;"
+		+ " END");
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS " + quote(triggerName(tableName, "del"))
+		+ " AFTER DELETE ON " + table + " BEGIN " + logOld + " END");
+	}
+	
+	private String triggerName(String tableName, String suffix) {
+		return "__changes_" + tableName + "_" + suffix;
+	}
+	
+	// ==================== 辅助方法 ====================
+	
+	private void ensureTables(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + CHANGE_LOG_TABLE + " ("
+		+ "seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+		+ "table_name TEXT NOT NULL, "
+		+ "row_id INTEGER NOT NULL)");
+		db.execSQL("CREATE INDEX IF NOT EXISTS " + quote(CHANGE_LOG_TABLE + "_table_seq")
+		+ " ON " + CHANGE_LOG_TABLE + " (table_name, seq)");
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + TRACKED_TABLE + " ("
+		+ "table_name TEXT PRIMARY KEY)");
+	}
+	
+	private List<String> getTrackedTables(SQLiteDatabase db) {
+		List<String> tables = new ArrayList<>();
+		if (!tableExists(db, TRACKED_TABLE)) {
+			return tables;
+		}
+		Cursor cursor = db.rawQuery("SELECT table_name FROM " + TRACKED_TABLE + " ORDER BY table_name", null);
+		try {
+			while (cursor.moveToNext()) {
+				tables.add(cursor.getString(0));
+			}
+		} finally {
+			cursor.close();
+		}
+		return tables;
+	}
+	
+	/**
+	* 令牌取自自增序列而不是 MAX(seq)，清理变更记录后令牌不会回退
+	*/
+	private long currentToken(SQLiteDatabase db) {
+		if (!tableExists(db, "sqlite_sequence")) {
+			return 0;
+		}
+		return queryLong(db, "SELECT seq FROM sqlite_sequence WHERE name = ?", new String[]{CHANGE_LOG_TABLE});
+	}
+	
+	private boolean hasIntegerPrimaryKey(SQLiteDatabase db, String tableName) {
+		Cursor cursor = db.rawQuery("PRAGMA table_info(" + quote(tableName) + ")", null);
+		try {
+			int pkCount = 0;
+			boolean integerPk = false;
+			while (cursor.moveToNext()) {
+				if (cursor.getInt(5) > 0) {
+					pkCount++;
+					integerPk = "INTEGER".equalsIgnoreCase(cursor.getString(2));
+				}
+			}
+			return pkCount == 1 && integerPk;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private Set<String> getColumns(SQLiteDatabase db, String tableName) {
+		Set<String> columns = new HashSet<>();
+		Cursor cursor = db.rawQuery("PRAGMA table_info(" + quote(tableName) + ")", null);
+		try {
+			while (cursor.moveToNext()) {
+				columns.add(cursor.getString(1).toLowerCase());
+			}
+		} finally {
+			cursor.close();
+		}
+		return columns;
+	}
+	
+	private boolean tableExists(SQLiteDatabase db, String tableName) {
+		return queryLong(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+		new String[]{tableName}) > 0;
+	}
+	
+	private static long queryLong(SQLiteDatabase db, String sql, String[] args) {
+		Cursor cursor = db.rawQuery(sql, args);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private static String queryString(SQLiteDatabase db, String sql, String[] args) {
+		Cursor cursor = db.rawQuery(sql, args);
+		try {
+			return cursor.moveToFirst() ? cursor.getString(0) : null;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private static String quote(String identifier) {
+		return "\"" + identifier.replace("\"", "\"\"") + "\"";
+	}
+	
+	private static String literal(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
@@ -0,0 +1,99 @@
+package game.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* RFC 4180 CSV 读取器（与 CsvWriter 对应）
+* 支持带引号字段中的逗号、换行和转义双引号；记录分隔符接受 CRLF 或 LF。
+* 未加引号的空字段读为 null，加引号的空字段读为空字符串
+*
+* 非线程安全
+*/
+class CsvReader {
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int position = 0;
+	private int limit = 0;
+	private int pushedBack = -2;
+	private long recordNumber = 0;
+	
+	CsvReader(Reader reader) {
+		this.reader = reader;
+	}
+	
+	/**
+	* 读取下一条记录
+	* @return 字段列表，已到文件尾返回null
+	* @throws IOException 读取失败或引号未闭合
+	*/
+	List<String> readRecord() throws IOException {
+		int c = next();
+		if (c == -1) {
+			return null;
+		}
+		recordNumber++;
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		while (true) {
+			boolean quoted = false;
+			if (c == '"') {
+				quoted = true;
+				while (true) {
+					c = next();
+					if (c == -1) {
+						throw new IOException("CSV第 " + recordNumber + " 条记录的引号未闭合");
+					}
+					if (c == '"') {
+						c = next();
+						if (c != '"') {
+							break;
+						}
+					}
+					field.append((char) c);
+				}
+				if (c != ',' && c != '\r' && c != '\n' && c != -1) {
+					throw new IOException("CSV第 " + recordNumber + " 条记录的引号后出现多余字符");
+				}
+			} else {
+				while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+					field.append((char) c);
+					c = next();
+				}
+			}
+			fields.add(quoted || field.length() > 0 ? field.toString() : null);
+			field.setLength(0);
+			
+			if (c == ',') {
+				c = next();
+				continue;
+			}
+			if (c == '\r') {
+				int following = next();
+				if (following != '\n') {
+					pushedBack = following;
+				}
+			}
+			return fields;
+		}
+	}
+	
+	private int next() throws IOException {
+		if (pushedBack != -2) {
+			int c = pushedBack;
+			pushedBack = -2;
+			return c;
+		}
+		if (position == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+}
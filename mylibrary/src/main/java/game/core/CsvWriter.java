@@ -0,0 +1,75 @@
+package game.core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+* RFC 4180 CSV 写入器
+* 字段含逗号、双引号或换行时加双引号（内部双引号写两次），记录以 CRLF 结尾；
+* NULL 写为空字段，空字符串写为 ""，读取时据此区分
+*
+* 非线程安全
+*/
+class CsvWriter {
+	private final Writer writer;
+	private boolean firstField = true;
+	
+	CsvWriter(Writer writer) {
+		this.writer = writer;
+	}
+	
+	/**
+	* 写入一个字段
+	* @param value 字段值，null 表示 SQL NULL
+	*/
+	void writeField(String value) throws IOException {
+		if (!firstField) {
+			writer.write(',');
+		}
+		firstField = false;
+		if (value == null) {
+			return;
+		}
+		if (value.isEmpty() || needsQuotes(value)) {
+			writer.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					writer.write('"');
+				}
+				writer.write(c);
+			}
+			writer.write('"');
+		} else {
+			writer.write(value);
+		}
+	}
+	
+	/**
+	* 开始一个由调用方直接写入底层写入器的字段（写入的内容必须已符合 CSV 规则，如带双引号的Base64）
+	*/
+	void beginRawField() throws IOException {
+		if (!firstField) {
+			writer.write(',');
+		}
+		firstField = false;
+	}
+	
+	/**
+	* 结束当前记录
+	*/
+	void endRecord() throws IOException {
+		writer.write("\r\n");
+		firstField = true;
+	}
+	
+	private static boolean needsQuotes(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,467 @@
+package game.core;
+
+import android.content.ContentValues;
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+* 货币流水账本 - 以追加流水代替原地更新
+* 每次变动以一条流水记录追加（带幂等键），余额 = 快照余额 + 快照之后的流水之和，
+* 内存中缓存当前余额，读取为O(1)；后台压缩器定期把旧流水折叠进快照。
+* 写入时在事务内从数据库重新计算余额再做余额检查，缓存只用于读取，其他实例或进程的写入不会导致透支。
+* 通过 DBCipherManager.getCurrencyLedger() 获取
+*
+* 账户以 "表名 + 记录ID + 字段名" 标识，首次使用时以源表字段的当前值作为初始快照
+* 设计模式：采用 TableManager 风格，与 DBCipherManager 紧密集成
+*/
+public class CurrencyLedger {
+	private static final String TAG = "CurrencyLedger";
+	public static final String LEDGER_TABLE = "__currency_ledger";
+	public static final String BALANCE_TABLE = "__currency_balance";
+	private static final long NOT_RECORDED = Long.MIN_VALUE;
+	
+	private final DBCipherManager dbManager;
+	// 账户 -> 当前余额
+	private final Map<String, Long> balanceCache = new ConcurrentHashMap<>();
+	// 账户 -> 写入锁，保证余额检查与追加的原子性
+	private final Map<String, ReentrantLock> accountLocks = new ConcurrentHashMap<>();
+	private volatile boolean tablesReady = false;
+	private ScheduledExecutorService compactScheduler;
+	
+	public CurrencyLedger(DBCipherManager dbManager) {
+		this.dbManager = dbManager;
+	}
+	
+	// ==================== 初始化 ====================
+	
+	/**
+	* 创建流水表和快照表（如果不存在）
+	* @return true创建成功或已存在
+	*/
+	public boolean initialize() {
+		if (tablesReady) {
+			return true;
+		}
+		return dbManager.executeWithConnection(db -> {
+			try {
+				db.execSQL("CREATE TABLE IF NOT EXISTS " + LEDGER_TABLE + " ("
+				+ "seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ "account TEXT NOT NULL, "
+				+ "delta INTEGER NOT NULL, "
+				+ "idempotency_key TEXT UNIQUE, "
+				+ "created_at INTEGER NOT NULL, "
+				+ "balance_after INTEGER)");
+				if (!hasColumn(db, LEDGER_TABLE, "balance_after")) {
+					// 旧版本创建的流水表没有记账结果列
+					db.execSQL("ALTER TABLE " + LEDGER_TABLE + " ADD COLUMN balance_after INTEGER");
+				}
+				db.execSQL("CREATE INDEX IF NOT EXISTS idx_currency_ledger_account ON "
+				+ LEDGER_TABLE + " (account, seq)");
+				db.execSQL("CREATE TABLE IF NOT EXISTS " + BALANCE_TABLE + " ("
+				+ "account TEXT PRIMARY KEY, "
+				+ "table_name TEXT NOT NULL, "
+				+ "record_id TEXT NOT NULL, "
+				+ "field_name TEXT NOT NULL, "
+				+ "snapshot_balance INTEGER NOT NULL, "
+				+ "snapshot_seq INTEGER NOT NULL DEFAULT 0)");
+				tablesReady = true;
+				log(DBCipherManager.LogLevel.INFO, "货币账本初始化完成", null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "货币账本初始化失败", e);
+				return false;
+			}
+		});
+	}
+	
+	// ==================== 写入 ====================
+	
+	/**
+	* 追加一条货币变动
+	* @param idempotencyKey 幂等键，重复提交同一键不会重复记账并返回首次记账后的余额（可为null表示不去重）
+	* @return 变动后的余额，-1表示失败，-2表示余额不足
+	*/
+	public long append(String tableName, String recordId, String fieldName, long delta, String idempotencyKey) {
+		if (!initialize()) {
+			return -1;
+		}
+		String account = accountKey(tableName, recordId, fieldName);
+		ReentrantLock lock = accountLocks.computeIfAbsent(account, k -> new ReentrantLock());
+		lock.lock();
+		try {
+			boolean[] duplicate = new boolean[1];
+			long result = dbManager.executeWithConnection(db -> {
+				try {
+					db.beginTransaction();
+					
+					if (idempotencyKey != null) {
+						long recorded = lookupRecordedResult(db, idempotencyKey, account);
+						if (recorded != NOT_RECORDED) {
+							duplicate[0] = true;
+							db.setTransactionSuccessful();
+							log(DBCipherManager.LogLevel.DEBUG, "重复的幂等键，跳过记账: " + idempotencyKey, null);
+							return recorded;
+						}
+					}
+					
+					long balance = openAccount(db, account, tableName, recordId, fieldName);
+					if (balance < 0) {
+						return -1L;
+					}
+					if (delta < 0 && balance < -delta) {
+						log(DBCipherManager.LogLevel.ERROR,
+						"余额不足: " + account + "=" + balance + ", 尝试减少: " + (-delta), null);
+						return -2L;
+					}
+					long newBalance = Math.addExact(balance, delta);
+					
+					SQLiteStatement insert = db.compileStatement("INSERT INTO " + LEDGER_TABLE
+					+ " (account, delta, idempotency_key, created_at, balance_after) VALUES (?, ?, ?, ?, ?)");
+					try {
+						insert.bindString(1, account);
+						insert.bindLong(2, delta);
+						if (idempotencyKey != null) {
+							insert.bindString(3, idempotencyKey);
+						} else {
+							insert.bindNull(3);
+						}
+						insert.bindLong(4, System.currentTimeMillis());
+						insert.bindLong(5, newBalance);
+						insert.executeInsert();
+					} finally {
+						insert.close();
+					}
+					
+					db.setTransactionSuccessful();
+					return newBalance;
+				} catch (ArithmeticException e) {
+					log(DBCipherManager.LogLevel.ERROR, "余额溢出: " + account, e);
+					return -1L;
+				} catch (Exception e) {
+					log(DBCipherManager.LogLevel.ERROR, "记账失败: " + account, e);
+					return -1L;
+				} finally {
+					db.endTransaction();
+				}
+			});
+			if (result >= 0) {
+				if (duplicate[0]) {
+					// 首次记账结果不代表当前余额，下次读取时重新计算
+					balanceCache.remove(account);
+				} else {
+					balanceCache.put(account, result);
+				}
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	* 增加余额
+	*/
+	public long credit(String tableName, String recordId, String fieldName, long amount, String idempotencyKey) {
+		return append(tableName, recordId, fieldName, amount, idempotencyKey);
+	}
+	
+	/**
+	* 扣减余额（防负值）
+	*/
+	public long debit(String tableName, String recordId, String fieldName, long amount, String idempotencyKey) {
+		return append(tableName, recordId, fieldName, -amount, idempotencyKey);
+	}
+	
+	// ==================== 读取 ====================
+	
+	/**
+	* 获取当前余额，命中缓存时不访问数据库
+	* @return 余额，-1表示账户不存在或读取失败
+	*/
+	public long getBalance(String tableName, String recordId, String fieldName) {
+		String account = accountKey(tableName, recordId, fieldName);
+		Long cached = balanceCache.get(account);
+		if (cached != null) {
+			return cached;
+		}
+		if (!initialize()) {
+			return -1;
+		}
+		long balance = dbManager.executeWithConnection(db -> {
+			try {
+				return loadBalance(db, account);
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "读取余额失败: " + account, e);
+				return -1L;
+			}
+		});
+		if (balance >= 0) {
+			balanceCache.put(account, balance);
+		}
+		return balance;
+	}
+	
+	/**
+	* 丢弃缓存的余额，下次读取时从快照和流水重新计算（其他进程写入后使用）
+	*/
+	public void invalidateBalance(String tableName, String recordId, String fieldName) {
+		balanceCache.remove(accountKey(tableName, recordId, fieldName));
+	}
+	
+	/**
+	* 查询账户最近的流水（按序号倒序），只包含尚未被压缩的记录
+	*/
+	public List<ContentValues> getHistory(String tableName, String recordId, String fieldName, int limit) {
+		List<ContentValues> history = new ArrayList<>();
+		if (!initialize()) {
+			return history;
+		}
+		String account = accountKey(tableName, recordId, fieldName);
+		return dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT seq, delta, idempotency_key, created_at FROM " + LEDGER_TABLE
+				+ " WHERE account = ? ORDER BY seq DESC LIMIT " + limit, new String[]{account});
+				while (cursor != null && cursor.moveToNext()) {
+					ContentValues row = new ContentValues();
+					row.put("seq", cursor.getLong(0));
+					row.put("delta", cursor.getLong(1));
+					row.put("idempotency_key", cursor.isNull(2) ? null : cursor.getString(2));
+					row.put("created_at", cursor.getLong(3));
+					history.add(row);
+				}
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "查询流水失败: " + account, e);
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+			return history;
+		});
+	}
+	
+	// ==================== 压缩 ====================
+	
+	/**
+	* 把早于保留期的流水折叠进快照并删除
+	* 注意：被压缩的流水其幂等键随之删除，保留期即为幂等去重窗口
+	* @param retainMillis 流水保留时长（毫秒）
+	* @param writeBackToSource 是否同时把当前余额写回源表字段，便于旧的读取路径使用
+	* @return 压缩的账户数，-1表示失败
+	*/
+	public int compact(long retainMillis, boolean writeBackToSource) {
+		if (!initialize()) {
+			return -1;
+		}
+		long cutoff = System.currentTimeMillis() - retainMillis;
+		List<String[]> accounts = dbManager.executeWithConnection(db -> {
+			List<String[]> result = new ArrayList<>();
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT account, table_name, record_id, field_name FROM " + BALANCE_TABLE, null);
+				while (cursor != null && cursor.moveToNext()) {
+					result.add(new String[]{cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getString(3)});
+				}
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "读取账户列表失败", e);
+				return null;
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+			return result;
+		});
+		if (accounts == null) {
+			return -1;
+		}
+		
+		int compacted = 0;
+		for (String[] account : accounts) {
+			ReentrantLock lock = accountLocks.computeIfAbsent(account[0], k -> new ReentrantLock());
+			lock.lock();
+			try {
+				if (compactAccount(account, cutoff, writeBackToSource)) {
+					compacted++;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		log(DBCipherManager.LogLevel.INFO, "流水压缩完成，账户数: " + compacted, null);
+		return compacted;
+	}
+	
+	private boolean compactAccount(String[] account, long cutoff, boolean writeBackToSource) {
+		return dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				db.beginTransaction();
+				cursor = db.rawQuery("SELECT MAX(seq), COALESCE(SUM(delta), 0) FROM " + LEDGER_TABLE
+				+ " WHERE account = ? AND created_at < ? AND seq > (SELECT snapshot_seq FROM "
+				+ BALANCE_TABLE + " WHERE account = ?)",
+				new String[]{account[0], String.valueOf(cutoff), account[0]});
+				if (cursor == null || !cursor.moveToFirst() || cursor.isNull(0)) {
+					return false;
+				}
+				long foldSeq = cursor.getLong(0);
+				long foldSum = cursor.getLong(1);
+				cursor.close();
+				cursor = null;
+				
+				db.execSQL("UPDATE " + BALANCE_TABLE + " SET snapshot_balance = snapshot_balance + ?, snapshot_seq = ? WHERE account = ?",
+				new Object[]{foldSum, foldSeq, account[0]});
+				db.execSQL("DELETE FROM " + LEDGER_TABLE + " WHERE account = ? AND seq <= ?",
+				new Object[]{account[0], foldSeq});
+				
+				if (writeBackToSource) {
+					long balance = loadBalance(db, account[0]);
+					db.execSQL("UPDATE " + account[1] + " SET " + account[3] + " = ? WHERE id = ?",
+					new Object[]{balance, account[2]});
+				}
+				
+				db.setTransactionSuccessful();
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "压缩账户流水失败: " + account[0], e);
+				return false;
+			} finally {
+				if (cursor != null) cursor.close();
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 启动后台压缩器
+	* @param intervalMs 执行间隔（毫秒）
+	* @param retainMillis 流水保留时长（毫秒）
+	* @param writeBackToSource 是否写回源表字段
+	*/
+	public synchronized void startCompactor(long intervalMs, long retainMillis, boolean writeBackToSource) {
+		stopCompactor();
+		compactScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, TAG + "-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		compactScheduler.scheduleWithFixedDelay(() -> {
+			try {
+				compact(retainMillis, writeBackToSource);
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "后台压缩失败", e);
+			}
+		}, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+	
+	public synchronized void stopCompactor() {
+		if (compactScheduler != null) {
+			compactScheduler.shutdown();
+			compactScheduler = null;
+		}
+	}
+	
+	// ==================== 辅助方法 ====================
+	
+	/**
+	* 确保账户存在，不存在时以源表字段当前值建立快照
+	* @return 当前余额，-1表示源记录不存在
+	*/
+	private long openAccount(SQLiteDatabase db, String account, String tableName, String recordId, String fieldName) {
+		// 不使用缓存：其他实例或进程可能已经写入
+		long balance = loadBalance(db, account);
+		if (balance >= 0) {
+			return balance;
+		}
+		
+		Cursor cursor = null;
+		long initial;
+		try {
+			cursor = db.rawQuery("SELECT " + fieldName + " FROM " + tableName + " WHERE id = ? LIMIT 1",
+			new String[]{recordId});
+			if (cursor == null || !cursor.moveToFirst()) {
+				log(DBCipherManager.LogLevel.ERROR, "源记录不存在: " + account, null);
+				return -1;
+			}
+			initial = cursor.getLong(0);
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+		
+		db.execSQL("INSERT INTO " + BALANCE_TABLE
+		+ " (account, table_name, record_id, field_name, snapshot_balance, snapshot_seq)"
+		+ " VALUES (?, ?, ?, ?, ?, COALESCE((SELECT MAX(seq) FROM " + LEDGER_TABLE + " WHERE account = ?), 0))",
+		new Object[]{account, tableName, recordId, fieldName, initial, account});
+		log(DBCipherManager.LogLevel.DEBUG, "建立账户快照: " + account + "=" + initial, null);
+		return initial;
+	}
+	
+	/**
+	* 从快照和未压缩流水计算余额
+	* @return 余额，-1表示账户不存在
+	*/
+	private long loadBalance(SQLiteDatabase db, String account) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("SELECT b.snapshot_balance + COALESCE((SELECT SUM(l.delta) FROM " + LEDGER_TABLE
+			+ " l WHERE l.account = b.account AND l.seq > b.snapshot_seq), 0) FROM "
+			+ BALANCE_TABLE + " b WHERE b.account = ?", new String[]{account});
+			if (cursor != null && cursor.moveToFirst()) {
+				return cursor.getLong(0);
+			}
+			return -1;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
+	/**
+	* 查询幂等键首次记账后的余额
+	* @return 首次记账结果，未记账过返回 NOT_RECORDED；旧版本记录没有结果时返回当前余额
+	*/
+	private long lookupRecordedResult(SQLiteDatabase db, String idempotencyKey, String account) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("SELECT balance_after FROM " + LEDGER_TABLE + " WHERE idempotency_key = ? LIMIT 1",
+			new String[]{idempotencyKey});
+			if (cursor == null || !cursor.moveToFirst()) {
+				return NOT_RECORDED;
+			}
+			if (!cursor.isNull(0)) {
+				return cursor.getLong(0);
+			}
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+		return loadBalance(db, account);
+	}
+	
+	private boolean hasColumn(SQLiteDatabase db, String tableName, String columnName) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
+			while (cursor != null && cursor.moveToNext()) {
+				if (columnName.equalsIgnoreCase(cursor.getString(cursor.getColumnIndex("name")))) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
+	private String accountKey(String tableName, String recordId, String fieldName) {
+		return tableName + ":" + recordId + ":" + fieldName;
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
@@ -14,12 +14,16 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.concurrent.ConcurrentHashMap;
 import net.sqlcipher.database.SQLiteStatement;
 import java.util.Iterator;
@@ -38,6 +42,10 @@ public class DBCipherManager {
 	private final TableManager tableManager;//表结构管理器
 	private final SqlUtilManager sqlUtilManager;//工具类辅助
 	private final NumericFieldUpdater numericFieldUpdater;//数值操作工具
+	private final MaterializedStats materializedStats;//物化数值统计
+	private final BackupManager backupManager;//在线热备份
+	private final ChangeTracker changeTracker;//变更跟踪（增量导出）
+	private final CurrencyLedger currencyLedger;//货币流水账本
 	// 数据库帮助类
 	private DBCipherHelper dbHelper;
 	// 数据库配置
@@ -83,6 +91,10 @@ public class DBCipherManager {
 		this.databaseName = config.getDatabaseName();
 		this.tableManager = new TableManager(this);
 		this.numericFieldUpdater=new NumericFieldUpdater(this);
+		this.materializedStats = new MaterializedStats(this);
+		this.backupManager = new BackupManager(this);
+		this.changeTracker = new ChangeTracker(this);
+		this.currencyLedger = new CurrencyLedger(this);
         this.sqlUtilManager = new SqlUtilManager(this);
 		dbHelper = new DBCipherHelper(this.mContext, config);
 		dbHelper.setLogCallback(new DBCipherHelper.LogCallback() {
@@ -145,6 +157,22 @@ public class DBCipherManager {
 		return numericFieldUpdater;
 	}
 	
+	public MaterializedStats getMaterializedStats() {
+		return materializedStats;
+	}
+	
+	public BackupManager getBackupManager() {
+		return backupManager;
+	}
+	
+	public ChangeTracker getChangeTracker() {
+		return changeTracker;
+	}
+	
+	public CurrencyLedger getCurrencyLedger() {
+		return currencyLedger;
+	}
+	
 	
 	/**
 	* 移除数据库管理器实例
@@ -253,6 +281,92 @@ public class DBCipherManager {
 		T execute(SQLiteDatabase db);
 	}
 	
+	/**
+	* 打开一个独立的只读连接（不加入线程本地连接管理，调用方负责关闭）
+	* @return 只读连接，失败返回null
+	*/
+	public SQLiteDatabase openReadOnlyConnection() {
+		return openSeparateConnection(SQLiteDatabase.OPEN_READONLY);
+	}
+	
+	/**
+	* 打开一个独立的读写连接（不加入线程本地连接管理，调用方负责关闭），供备份等需要 ATTACH 可写目标库的后台任务使用
+	*/
+	SQLiteDatabase openSeparateConnection(int flags) {
+		char[] password = null;
+		try {
+			// 直接解析路径而不借用线程本地连接，工作线程上调用时不会打开/关闭共享连接
+			File dbFile = mContext.getDatabasePath(currentConfig.getDatabaseName());
+			if (dbFile == null || !dbFile.exists()) {
+				log(LogLevel.ERROR, TAG, "数据库文件不存在，无法打开独立连接", null);
+				return null;
+			}
+			String path = dbFile.getPath();
+			password = currentConfig.getPassword();
+			SQLiteDatabase connection = SQLiteDatabase.openDatabase(path, password, null, flags);
+			log(LogLevel.DEBUG, TAG, "打开独立连接: " + path, null);
+			return connection;
+		} catch (Exception e) {
+			log(LogLevel.ERROR, TAG, "打开独立连接失败", e);
+			return null;
+		} finally {
+			if (password != null) {
+				Arrays.fill(password, '\0');
+			}
+		}
+	}
+	
+	/**
+	* 当前数据库密码的副本（调用方用完后应清零）
+	*/
+	char[] getPasswordCopy() {
+		return currentConfig.getPassword();
+	}
+	
+	/**
+	* 在一致性读快照中执行只读操作
+	* 使用独立的只读连接并以 BEGIN DEFERRED 开启读事务，操作期间看到的始终是同一时刻的数据；
+	* WAL模式下读事务不会阻塞写入。只读连接打开失败时回退到普通连接（不保证快照一致）
+	*/
+	public <T> T executeInReadSnapshot(DatabaseOperation<T> operation) {
+		SQLiteDatabase reader = openReadOnlyConnection();
+		if (reader == null) {
+			log(LogLevel.WARN, TAG, "只读连接不可用，回退到普通连接执行（不保证快照一致）", null);
+			return executeWithConnection(operation);
+		}
+		
+		try {
+			if (!isWalMode(reader)) {
+				log(LogLevel.WARN, TAG, "数据库未启用WAL模式，读快照期间其他连接的写入将被阻塞", null);
+			}
+			reader.execSQL("BEGIN DEFERRED");
+			try {
+				return operation.execute(reader);
+			} finally {
+				try {
+					reader.execSQL("COMMIT");
+				} catch (Exception e) {
+					log(LogLevel.WARN, TAG, "结束读事务失败", e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private boolean isWalMode(SQLiteDatabase db) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA journal_mode", null);
+			return cursor != null && cursor.moveToFirst() && "wal".equalsIgnoreCase(cursor.getString(0));
+		} catch (Exception e) {
+			log(LogLevel.WARN, TAG, "读取日志模式失败", e);
+			return false;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
 	// ==================== 事务管理 ====================
 	
 	/**
@@ -285,7 +399,168 @@ public class DBCipherManager {
 	* @return true修改成功，false修改失败
 	*/
 	public boolean changePassword(String newPassword) {
-		return dbHelper.changePassword(currentConfig.getPassword().toString(), newPassword);
+		return dbHelper.changePassword(currentConfig.getPasswordAsString(), newPassword);
+	}
+	
+	/**
+	* 修改数据库密码，通过进度跟踪器报告开始和结束
+	* 重新加密全部页面由 PRAGMA rekey 在原生层一次完成，无法报告中间进度或中途取消；开始前已取消则直接返回false
+	* @param newPassword 新密码
+	* @param tracker 进度跟踪器（可选）
+	* @return true修改成功，false修改失败或已取消
+	*/
+	public boolean changePassword(String newPassword, ProgressTracker tracker) {
+		if (tracker == null) {
+			return changePassword(newPassword);
+		}
+		if (tracker.isCancelled()) {
+			log(LogLevel.INFO, TAG, "修改密码已取消", null);
+			return false;
+		}
+		tracker.begin("REKEY");
+		try {
+			return changePassword(newPassword);
+		} finally {
+			tracker.finish();
+		}
+	}
+	
+	// ==================== 明文/加密转换 ====================
+	
+	/**
+	* 将当前数据库导出为未加密的明文数据库文件
+	* 通过 ATTACH ... KEY '' 和 sqlcipher_export() 在原生层按页复制，保留表、索引、触发器、视图和 user_version；
+	* 先写入临时文件，成功后替换目标文件（已存在的目标文件会被覆盖）
+	* 注意：不能在事务中调用（SQLite 不允许在事务内 ATTACH）
+	* @param target 明文数据库文件
+	* @return true导出成功，false导出失败
+	*/
+	public boolean exportToPlaintext(File target) {
+		if (target == null) {
+			log(LogLevel.ERROR, TAG, "导出目标文件为空", null);
+			return false;
+		}
+		File temp = new File(target.getPath() + ".tmp");
+		deleteDatabaseFiles(temp);
+		try {
+			executeWithConnection(db -> {
+				int userVersion = db.getVersion();
+				db.rawExecSQL("ATTACH DATABASE " + quoteLiteral(temp.getPath()) + " AS plaintext KEY ''");
+				try {
+					db.rawExecSQL("SELECT sqlcipher_export('plaintext')");
+					db.rawExecSQL("PRAGMA plaintext.user_version = " + userVersion);
+				} finally {
+					db.rawExecSQL("DETACH DATABASE plaintext");
+				}
+				return null;
+			});
+			if (!replaceDatabaseFile(temp, target)) {
+				return false;
+			}
+			log(LogLevel.INFO, TAG, "导出明文数据库成功: " + target.getPath(), null);
+			return true;
+		} catch (Exception e) {
+			log(LogLevel.ERROR, TAG, "导出明文数据库失败", e);
+			deleteDatabaseFiles(temp);
+			return false;
+		}
+	}
+	
+	/**
+	* 将未加密的明文数据库转换为加密数据库文件
+	* 以加密库为主库 ATTACH 明文库（KEY ''），由 sqlcipher_export() 在原生层复制全部表、索引、触发器、视图和 user_version；
+	* 先写入临时文件，成功后替换目标文件。转换完成后可用相同的数据库名和密码通过 getInstance 打开
+	* 调用前需已加载 SQLCipher 原生库（SQLiteDatabase.loadLibs）
+	* @param plainFile 明文数据库文件（只读取，不会被修改）
+	* @param target 生成的加密数据库文件（如 context.getDatabasePath(name)）
+	* @param password 加密数据库的密码
+	* @return true转换成功，false转换失败
+	*/
+	public static boolean importFromPlaintext(File plainFile, File target, String password) {
+		if (plainFile == null || !plainFile.exists()) {
+			log(LogLevel.ERROR, TAG, "明文数据库文件不存在", null);
+			return false;
+		}
+		if (target == null || password == null || password.isEmpty()) {
+			log(LogLevel.ERROR, TAG, "目标文件或密码为空", null);
+			return false;
+		}
+		File temp = new File(target.getPath() + ".tmp");
+		deleteDatabaseFiles(temp);
+		SQLiteDatabase db = null;
+		try {
+			db = SQLiteDatabase.openOrCreateDatabase(temp, password, null);
+			db.rawExecSQL("ATTACH DATABASE " + quoteLiteral(plainFile.getPath()) + " AS plaintext KEY ''");
+			try {
+				int userVersion = 0;
+				Cursor cursor = db.rawQuery("PRAGMA plaintext.user_version", null);
+				try {
+					if (cursor.moveToFirst()) {
+						userVersion = cursor.getInt(0);
+					}
+				} finally {
+					cursor.close();
+				}
+				db.rawExecSQL("SELECT sqlcipher_export('main', 'plaintext')");
+				db.rawExecSQL("PRAGMA main.user_version = " + userVersion);
+			} finally {
+				db.rawExecSQL("DETACH DATABASE plaintext");
+			}
+			db.close();
+			db = null;
+			if (!replaceDatabaseFile(temp, target)) {
+				return false;
+			}
+			log(LogLevel.INFO, TAG, "明文数据库已转换为加密数据库: " + target.getPath(), null);
+			return true;
+		} catch (Exception e) {
+			log(LogLevel.ERROR, TAG, "明文数据库转换失败", e);
+			if (db != null) {
+				try {
+					db.close();
+				} catch (Exception ignored) {
+				}
+			}
+			deleteDatabaseFiles(temp);
+			return false;
+		}
+	}
+	
+	private static String quoteLiteral(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+	
+	/**
+	* 删除数据库文件及其日志文件
+	*/
+	private static void deleteDatabaseFiles(File file) {
+		for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+			File f = new File(file.getPath() + suffix);
+			if (f.exists() && !f.delete()) {
+				log(LogLevel.WARN, TAG, "删除文件失败: " + f.getPath(), null);
+			}
+		}
+	}
+	
+	/**
+	* 用临时文件原子替换目标文件（同一文件系统内 rename 覆盖）
+	* 替换失败时目标文件保持原样，临时文件保留以便手动恢复；替换成功后才删除目标原有的日志文件
+	*/
+	private static boolean replaceDatabaseFile(File temp, File target) {
+		try {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log(LogLevel.ERROR, TAG, "替换数据库文件失败，目标文件未修改，临时文件保留在: " + temp.getPath(), e);
+			return false;
+		}
+		// 原数据库遗留的日志文件不属于新文件，必须删除，否则打开时会被回放到新数据库上
+		for (String suffix : new String[]{"-journal", "-wal", "-shm"}) {
+			File f = new File(target.getPath() + suffix);
+			if (f.exists() && !f.delete()) {
+				log(LogLevel.WARN, TAG, "删除文件失败: " + f.getPath(), null);
+			}
+		}
+		return true;
 	}
 	
 	// ==================== 日志系统 ====================
@@ -71,7 +71,24 @@ public class DatabaseOptimizer {
 	* @return true整理成功，false整理失败
 	*/
 	public boolean vacuumDatabase() {
-		return dbManager.executeWithConnection(db -> {
+		return vacuumDatabase(null);
+	}
+	
+	/**
+	* 执行数据库整理（VACUUM），通过进度跟踪器报告开始和结束
+	* VACUUM 在原生层一条语句完成，无法报告中间进度或中途取消；开始前已取消则直接返回false
+	* @param tracker 进度跟踪器（可选）
+	* @return true整理成功，false整理失败或已取消
+	*/
+	public boolean vacuumDatabase(ProgressTracker tracker) {
+		if (tracker != null) {
+			if (tracker.isCancelled()) {
+				log(DBCipherManager.LogLevel.INFO, "数据库整理已取消", null);
+				return false;
+			}
+			tracker.begin("VACUUM");
+		}
+		boolean result = dbManager.executeWithConnection(db -> {
 			log(DBCipherManager.LogLevel.INFO, "开始执行数据库整理(VACUUM)...", null);
 			long startTime = System.currentTimeMillis();
 			boolean success = false;
@@ -87,6 +104,10 @@ public class DatabaseOptimizer {
 			}
 			return success;
 		});
+		if (tracker != null) {
+			tracker.finish();
+		}
+		return result;
 	}
 	
 	/**
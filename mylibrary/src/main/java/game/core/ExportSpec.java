@@ -0,0 +1,174 @@
+package game.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* 选择性导出规格
+* 通过 Builder 构建：选择要导出的表，并为每个表指定列投影、WHERE 条件和行数上限；
+* 这些条件都直接下推到查询语句中，只读取需要的数据
+*/
+public class ExportSpec {
+	
+	private final Set<String> includedTables;
+	private final Set<String> excludedTables;
+	private final Map<String, String[]> columns;
+	private final Map<String, String> selections;
+	private final Map<String, String[]> selectionArgs;
+	private final Map<String, Integer> limits;
+	private final int defaultLimit;
+	
+	private ExportSpec(Builder builder) {
+		this.includedTables = builder.includedTables == null ? null
+		: Collections.unmodifiableSet(new LinkedHashSet<>(builder.includedTables));
+		this.excludedTables = Collections.unmodifiableSet(new HashSet<>(builder.excludedTables));
+		this.columns = new HashMap<>(builder.columns);
+		this.selections = new HashMap<>(builder.selections);
+		this.selectionArgs = new HashMap<>(builder.selectionArgs);
+		this.limits = new HashMap<>(builder.limits);
+		this.defaultLimit = builder.defaultLimit;
+	}
+	
+	/**
+	* 从数据库中的全部表筛选出要导出的表（保持数据库中的顺序）
+	*/
+	public List<String> selectTables(List<String> allTables) {
+		List<String> result = new ArrayList<>();
+		for (String table : allTables) {
+			if (isTableIncluded(table)) {
+				result.add(table);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	* 表是否需要导出
+	*/
+	public boolean isTableIncluded(String tableName) {
+		return (includedTables == null || includedTables.contains(tableName)) && !excludedTables.contains(tableName);
+	}
+	
+	/**
+	* 导出白名单，null表示全部表
+	*/
+	public Set<String> getIncludedTables() {
+		return includedTables;
+	}
+	
+	/**
+	* 表的列投影，null表示全部列
+	*/
+	public String[] getColumns(String tableName) {
+		return columns.get(tableName);
+	}
+	
+	/**
+	* 表的 WHERE 条件（不含 WHERE），null表示全部行
+	*/
+	public String getSelection(String tableName) {
+		return selections.get(tableName);
+	}
+	
+	public String[] getSelectionArgs(String tableName) {
+		return selectionArgs.get(tableName);
+	}
+	
+	/**
+	* 表的行数上限，0表示不限制
+	*/
+	public int getLimit(String tableName) {
+		Integer limit = limits.get(tableName);
+		return limit != null ? limit : defaultLimit;
+	}
+	
+	/**
+	* 导出全部表的全部数据
+	*/
+	public static ExportSpec all() {
+		return new Builder().build();
+	}
+	
+	public static class Builder {
+		private Set<String> includedTables = null; // null表示全部表
+		private final Set<String> excludedTables = new HashSet<>();
+		private final Map<String, String[]> columns = new HashMap<>();
+		private final Map<String, String> selections = new HashMap<>();
+		private final Map<String, String[]> selectionArgs = new HashMap<>();
+		private final Map<String, Integer> limits = new HashMap<>();
+		private int defaultLimit = 0;
+		
+		/**
+		* 只导出这些表（可多次调用累加）
+		*/
+		public Builder setIncludedTables(String... tableNames) {
+			if (includedTables == null) {
+				includedTables = new LinkedHashSet<>();
+			}
+			Collections.addAll(includedTables, tableNames);
+			return this;
+		}
+		
+		/**
+		* 不导出这些表（优先于白名单）
+		*/
+		public Builder setExcludedTables(String... tableNames) {
+			Collections.addAll(excludedTables, tableNames);
+			return this;
+		}
+		
+		/**
+		* 只导出表的这些列
+		*/
+		public Builder setColumns(String tableName, String... columnNames) {
+			if (columnNames == null || columnNames.length == 0) {
+				throw new IllegalArgumentException("列投影不能为空");
+			}
+			columns.put(tableName, columnNames.clone());
+			return this;
+		}
+		
+		/**
+		* 只导出表中满足条件的行
+		* @param selection WHERE 条件（不含 WHERE），使用 ? 占位
+		* @param args 条件参数
+		*/
+		public Builder setWhere(String tableName, String selection, String... args) {
+			selections.put(tableName, selection);
+			selectionArgs.put(tableName, args != null && args.length > 0 ? args.clone() : null);
+			return this;
+		}
+		
+		/**
+		* 表最多导出的行数
+		*/
+		public Builder setLimit(String tableName, int limit) {
+			if (limit <= 0) {
+				throw new IllegalArgumentException("行数上限必须大于0");
+			}
+			limits.put(tableName, limit);
+			return this;
+		}
+		
+		/**
+		* 未单独设置上限的表最多导出的行数（默认0，不限制）
+		*/
+		public Builder setDefaultLimit(int defaultLimit) {
+			if (defaultLimit < 0) {
+				throw new IllegalArgumentException("行数上限不能为负数");
+			}
+			this.defaultLimit = defaultLimit;
+			return this;
+		}
+		
+		public ExportSpec build() {
+			return new ExportSpec(this);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+/**
+* 幂等操作记录 - 以操作ID去重，防止超时/崩溃后的重试重复生效
+* 查询与记录方法均接收调用方的数据库连接，需在与业务写入相同的事务中调用，
+* 保证"已执行"标记与写入同时提交或同时回滚
+*
+* 记录按TTL过期清理，TTL即为去重窗口
+*/
+public class IdempotencyStore {
+	private static final String TAG = "IdempotencyStore";
+	public static final String OPERATION_LOG_TABLE = "__operation_log";
+	// 默认保留24小时
+	private static final long DEFAULT_TTL_MS = 24 * 60 * 60 * 1000L;
+	// 自动清理的最大间隔
+	private static final long MAX_PURGE_INTERVAL_MS = 60 * 60 * 1000L;
+	
+	private final DBCipherManager dbManager;
+	private volatile long ttlMs = DEFAULT_TTL_MS;
+	private volatile boolean tableReady = false;
+	private volatile long lastPurgeTime = 0;
+	
+	public IdempotencyStore(DBCipherManager dbManager) {
+		this.dbManager = dbManager;
+	}
+	
+	/**
+	* 设置操作记录保留时长（去重窗口）
+	*/
+	public void setTtl(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+	
+	public long getTtl() {
+		return ttlMs;
+	}
+	
+	/**
+	* 查询操作是否已执行
+	* @param db 当前事务所在的连接
+	* @return 已执行时返回记录的结果，未执行（或已过期）返回null
+	*/
+	public String lookup(SQLiteDatabase db, String operationId) {
+		ensureTable(db);
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("SELECT result FROM " + OPERATION_LOG_TABLE
+			+ " WHERE operation_id = ? AND created_at >= ?",
+			new String[]{operationId, String.valueOf(System.currentTimeMillis() - ttlMs)});
+			if (cursor != null && cursor.moveToFirst()) {
+				log(DBCipherManager.LogLevel.DEBUG, "操作已执行，返回记录结果: " + operationId, null);
+				return cursor.isNull(0) ? "" : cursor.getString(0);
+			}
+			return null;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
+	/**
+	* 记录操作已执行（仅在写入成功后调用）
+	* @param db 当前事务所在的连接
+	* @param result 操作结果，重试时原样返回
+	*/
+	public void record(SQLiteDatabase db, String operationId, String result) {
+		ensureTable(db);
+		long now = System.currentTimeMillis();
+		db.execSQL("INSERT OR REPLACE INTO " + OPERATION_LOG_TABLE
+		+ " (operation_id, result, created_at) VALUES (?, ?, ?)",
+		new Object[]{operationId, result, now});
+		
+		if (now - lastPurgeTime > Math.min(ttlMs, MAX_PURGE_INTERVAL_MS)) {
+			lastPurgeTime = now;
+			purgeExpired(db);
+		}
+	}
+	
+	/**
+	* 清理过期的操作记录
+	* @return 删除的记录数，-1表示失败
+	*/
+	public int purgeExpired() {
+		return dbManager.executeWithConnection(db -> {
+			try {
+				ensureTable(db);
+				return purgeExpired(db);
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "清理操作记录失败", e);
+				return -1;
+			}
+		});
+	}
+	
+	private int purgeExpired(SQLiteDatabase db) {
+		db.execSQL("DELETE FROM " + OPERATION_LOG_TABLE + " WHERE created_at < ?",
+		new Object[]{System.currentTimeMillis() - ttlMs});
+		int deleted = 0;
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("SELECT changes()", null);
+			if (cursor != null && cursor.moveToFirst()) {
+				deleted = cursor.getInt(0);
+			}
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+		log(DBCipherManager.LogLevel.DEBUG, "清理过期操作记录: " + deleted, null);
+		return deleted;
+	}
+	
+	private void ensureTable(SQLiteDatabase db) {
+		if (tableReady) {
+			return;
+		}
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + OPERATION_LOG_TABLE + " ("
+		+ "operation_id TEXT PRIMARY KEY, "
+		+ "result TEXT, "
+		+ "created_at INTEGER NOT NULL)");
+		db.execSQL("CREATE INDEX IF NOT EXISTS idx_operation_log_created ON "
+		+ OPERATION_LOG_TABLE + " (created_at)");
+		tableReady = true;
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
@@ -0,0 +1,95 @@
+package game.core;
+
+/**
+* 数据导入选项
+* 通过 Builder 构建，供流式导入等接口使用
+*/
+public class ImportOptions {
+	
+	private final boolean clearBeforeImport;
+	private final int batchSize;
+	private final int parserThreads;
+	private final int maxPendingChunks;
+	
+	private ImportOptions(Builder builder) {
+		this.clearBeforeImport = builder.clearBeforeImport;
+		this.batchSize = builder.batchSize;
+		this.parserThreads = builder.parserThreads;
+		this.maxPendingChunks = builder.maxPendingChunks > 0 ? builder.maxPendingChunks : builder.parserThreads * 4;
+	}
+	
+	/**
+	* 是否在导入每个表前清空该表
+	*/
+	public boolean isClearBeforeImport() {
+		return clearBeforeImport;
+	}
+	
+	/**
+	* 每提交一次事务所包含的行数
+	*/
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	* 并行导入时的解析线程数
+	*/
+	public int getParserThreads() {
+		return parserThreads;
+	}
+	
+	/**
+	* 并行导入时允许在途（已切分未写入）的最大块数，用于背压
+	*/
+	public int getMaxPendingChunks() {
+		return maxPendingChunks;
+	}
+	
+	/**
+	* 默认选项：不清空表，每500行提交一次
+	*/
+	public static ImportOptions defaults() {
+		return new Builder().build();
+	}
+	
+	public static class Builder {
+		private boolean clearBeforeImport = false;
+		private int batchSize = 500; // 默认批次大小
+		private int parserThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+		private int maxPendingChunks = 0; // 0表示按解析线程数自动计算
+		
+		public Builder setClearBeforeImport(boolean clearBeforeImport) {
+			this.clearBeforeImport = clearBeforeImport;
+			return this;
+		}
+		
+		public Builder setBatchSize(int batchSize) {
+			if (batchSize <= 0) {
+				throw new IllegalArgumentException("批次大小必须大于0");
+			}
+			this.batchSize = batchSize;
+			return this;
+		}
+		
+		public Builder setParserThreads(int parserThreads) {
+			if (parserThreads <= 0) {
+				throw new IllegalArgumentException("解析线程数必须大于0");
+			}
+			this.parserThreads = parserThreads;
+			return this;
+		}
+		
+		public Builder setMaxPendingChunks(int maxPendingChunks) {
+			if (maxPendingChunks <= 0) {
+				throw new IllegalArgumentException("在途块数必须大于0");
+			}
+			this.maxPendingChunks = maxPendingChunks;
+			return this;
+		}
+		
+		public ImportOptions build() {
+			return new ImportOptions(this);
+		}
+	}
+}
@@ -0,0 +1,501 @@
+package game.core;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import net.sqlcipher.database.SQLiteDatabase;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+* 并行解析 / 单线程写入的导入流水线
+* 切分线程只扫描字符、把每行的原始JSON文本按块切出；解析线程池把块解码为行数据；
+* 写入在调用线程（持有数据库连接）上按原始顺序执行，每 batchSize 行提交一次事务
+*
+* 在途块数量受信号量限制（背压），解析慢于写入或写入慢于解析时切分线程都会阻塞等待
+*/
+class ImportPipeline {
+	private static final String TAG = "ImportPipeline";
+	
+	// 每个解析块包含的行数
+	private static final int CHUNK_ROWS = 256;
+	
+	private final TableManager tableManager;
+	private final ImportOptions options;
+	private final SqlUtilManager.ImportProgressListener progressListener;
+	
+	private final Semaphore permits;
+	private final BlockingQueue<Chunk> parsedQueue = new LinkedBlockingQueue<>();
+	private final AtomicReference<Exception> failure = new AtomicReference<>();
+	private ExecutorService executor;
+	
+	ImportPipeline(TableManager tableManager, ImportOptions options, SqlUtilManager.ImportProgressListener progressListener) {
+		this.tableManager = tableManager;
+		this.options = options;
+		this.progressListener = progressListener;
+		this.permits = new Semaphore(options.getMaxPendingChunks());
+	}
+	
+	/**
+	* 执行导入（必须在持有连接的线程上调用）
+	* @return 成功导入的表数量，-1表示解析或读取失败（已提交的批次不会回滚）
+	*/
+	int run(SQLiteDatabase db, Reader reader) {
+		AtomicInteger threadIndex = new AtomicInteger();
+		// 1个切分线程 + N个解析线程
+		executor = Executors.newFixedThreadPool(options.getParserThreads() + 1, r -> {
+			Thread thread = new Thread(r, TAG + "-" + threadIndex.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		TableInserter inserter = null;
+		try {
+			executor.execute(() -> {
+				try {
+					new RowSplitter(reader).split();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (Exception e) {
+					fail(e);
+				}
+			});
+			
+			db.beginTransaction();
+			try {
+				Map<Long, Chunk> pending = new HashMap<>();
+				long nextSeq = 0;
+				int pendingRows = 0;
+				int importedTables = 0;
+				int imported = 0;
+				boolean failed = false;
+				
+				while (true) {
+					Chunk chunk = pending.remove(nextSeq);
+					if (chunk == null) {
+						Chunk received = parsedQueue.take();
+						if (received.type == Chunk.FAILED) {
+							throw failure.get();
+						}
+						pending.put(received.seq, received);
+						continue;
+					}
+					nextSeq++;
+					permits.release();
+					
+					if (chunk.type == Chunk.END) {
+						break;
+					}
+					switch (chunk.type) {
+						case Chunk.TABLE_START:
+						if (progressListener != null) {
+							progressListener.onTableStart(chunk.table, importedTables);
+							SqlUtilManager.checkCancelled(progressListener);
+						}
+						if (options.isClearBeforeImport()) {
+							db.execSQL("DELETE FROM " + chunk.table);
+							log(DBCipherManager.LogLevel.DEBUG, "已清空表: " + chunk.table, null);
+						}
+						inserter = new TableInserter(db, tableManager, chunk.table);
+						imported = 0;
+						failed = false;
+						break;
+						case Chunk.ROWS:
+						for (ParsedRow row : chunk.rows) {
+							if (insertRow(inserter, row)) {
+								imported++;
+							} else {
+								failed = true;
+							}
+							if (++pendingRows >= options.getBatchSize()) {
+								db.setTransactionSuccessful();
+								db.endTransaction();
+								db.beginTransaction();
+								pendingRows = 0;
+								if (progressListener != null) {
+									progressListener.onBatchCommitted(chunk.table, imported);
+									SqlUtilManager.checkCancelled(progressListener);
+								}
+							}
+						}
+						break;
+						default:
+						// TABLE_END
+						inserter.close();
+						inserter = null;
+						if (failed) {
+							log(DBCipherManager.LogLevel.WARN, "表 '" + chunk.table + "' 部分行导入失败", null);
+						}
+						if (!failed || imported > 0) {
+							importedTables++;
+						}
+						if (progressListener != null) {
+							progressListener.onTableComplete(chunk.table, importedTables - 1, imported);
+						}
+						break;
+					}
+				}
+				
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "并行导入完成，成功导入 " + importedTables + " 个表", null);
+				return importedTables;
+			} finally {
+				db.endTransaction();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log(DBCipherManager.LogLevel.WARN, "并行导入被中断", null);
+			return -1;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "并行导入数据库时发生异常", e);
+			return -1;
+		} finally {
+			if (inserter != null) {
+				inserter.close();
+			}
+			executor.shutdownNow();
+		}
+	}
+	
+	private boolean insertRow(TableInserter inserter, ParsedRow row) {
+		inserter.beginRow();
+		if (row.columns == null) {
+			inserter.putScalar(row.values[0]);
+		} else {
+			for (int i = 0; i < row.columns.length; i++) {
+				inserter.put(row.columns[i], row.values[i]);
+			}
+		}
+		return inserter.endRow();
+	}
+	
+	/**
+	* 解析一个块中的所有行（在解析线程上执行）
+	*/
+	private void parseChunk(Chunk chunk) {
+		try {
+			List<ParsedRow> rows = new ArrayList<>(chunk.raw.size());
+			for (String raw : chunk.raw) {
+				rows.add(parseRow(raw));
+			}
+			chunk.raw = null;
+			chunk.rows = rows;
+			parsedQueue.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			fail(e);
+		}
+	}
+	
+	private ParsedRow parseRow(String raw) throws IOException {
+		JsonReader jsonReader = new JsonReader(new StringReader(raw));
+		jsonReader.setLenient(true); // 允许顶层为单个值
+		if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+			return new ParsedRow(null, new Object[]{SqlUtilManager.readStreamValue(jsonReader)});
+		}
+		
+		List<String> columns = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
+		jsonReader.beginObject();
+		while (jsonReader.hasNext()) {
+			columns.add(jsonReader.nextName());
+			values.add(SqlUtilManager.readStreamValue(jsonReader));
+		}
+		jsonReader.endObject();
+		return new ParsedRow(columns.toArray(new String[0]), values.toArray());
+	}
+	
+	private void fail(Exception e) {
+		if (failure.compareAndSet(null, e)) {
+			parsedQueue.offer(new Chunk(-1, Chunk.FAILED, null));
+		}
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+	
+	/**
+	* 流水线中的数据块：表开始/结束标记或一组行
+	*/
+	private static final class Chunk {
+		static final int TABLE_START = 0;
+		static final int ROWS = 1;
+		static final int TABLE_END = 2;
+		static final int END = 3;
+		static final int FAILED = 4;
+		
+		final long seq;
+		final int type;
+		final String table;
+		List<String> raw;
+		List<ParsedRow> rows;
+		
+		Chunk(long seq, int type, String table) {
+			this.seq = seq;
+			this.type = type;
+			this.table = table;
+		}
+	}
+	
+	private static final class ParsedRow {
+		// 为null表示单值行，写入表的第一列
+		final String[] columns;
+		final Object[] values;
+		
+		ParsedRow(String[] columns, Object[] values) {
+			this.columns = columns;
+			this.values = values;
+		}
+	}
+	
+	/**
+	* 行切分器：只做字符级扫描（跟踪字符串和嵌套层级），不构建任何JSON对象
+	* 输入格式与 exportDatabaseToJsonStream 的输出一致
+	*/
+	private class RowSplitter {
+		private final Reader reader;
+		private final char[] buffer = new char[8192];
+		private int position = 0;
+		private int limit = 0;
+		private long nextSeq = 0;
+		
+		RowSplitter(Reader reader) {
+			this.reader = reader;
+		}
+		
+		void split() throws IOException, InterruptedException {
+			expect('{');
+			if (skipWhitespace() == '}') {
+				read();
+			} else {
+				while (true) {
+					String name = readString();
+					expect(':');
+					if ("tables".equals(name)) {
+						splitTables();
+					} else {
+						// 元数据字段不参与导入
+						captureValue(null);
+					}
+					int c = read(skipWhitespace());
+					if (c == '}') break;
+					if (c != ',') throw syntaxError(c);
+				}
+			}
+			emit(Chunk.END, null);
+		}
+		
+		private void splitTables() throws IOException, InterruptedException {
+			expect('{');
+			if (skipWhitespace() == '}') {
+				read();
+				return;
+			}
+			while (true) {
+				String table = readString();
+				expect(':');
+				if (SqlUtilManager.isInternalTable(table)) {
+					// 临时簿记表（检查点、变更日志等）不随数据导入
+					log(DBCipherManager.LogLevel.WARN, "跳过内部表: " + table, null);
+					captureValue(null);
+				} else {
+					splitTable(table);
+				}
+				
+				int c = read(skipWhitespace());
+				if (c == '}') break;
+				if (c != ',') throw syntaxError(c);
+			}
+		}
+		
+		private void splitTable(String table) throws IOException, InterruptedException {
+			List<String> rows = new ArrayList<>(CHUNK_ROWS);
+			emit(Chunk.TABLE_START, table);
+			
+			if (skipWhitespace() == '[') {
+				read();
+				if (skipWhitespace() == ']') {
+					read();
+				} else {
+					while (true) {
+						StringBuilder sb = new StringBuilder();
+						captureValue(sb);
+						rows.add(sb.toString());
+						if (rows.size() >= CHUNK_ROWS) {
+							emitRows(table, rows);
+							rows = new ArrayList<>(CHUNK_ROWS);
+						}
+						int c = read(skipWhitespace());
+						if (c == ']') break;
+						if (c != ',') throw syntaxError(c);
+					}
+				}
+			} else {
+				// 单行对象或单个值
+				StringBuilder sb = new StringBuilder();
+				captureValue(sb);
+				rows.add(sb.toString());
+			}
+			if (!rows.isEmpty()) {
+				emitRows(table, rows);
+			}
+			emit(Chunk.TABLE_END, table);
+		}
+		
+		private void emitRows(String table, List<String> rows) throws InterruptedException {
+			permits.acquire();
+			Chunk chunk = new Chunk(nextSeq++, Chunk.ROWS, table);
+			chunk.raw = rows;
+			executor.execute(() -> parseChunk(chunk));
+		}
+		
+		private void emit(int type, String table) throws InterruptedException {
+			permits.acquire();
+			parsedQueue.put(new Chunk(nextSeq++, type, table));
+		}
+		
+		/**
+		* 复制一个完整值的原始文本，sb为null时只跳过
+		*/
+		private void captureValue(StringBuilder sb) throws IOException {
+			int c = skipWhitespace();
+			if (c == '"') {
+				read();
+				if (sb != null) sb.append('"');
+				copyStringBody(sb);
+			} else if (c == '{' || c == '[') {
+				int depth = 0;
+				do {
+					c = read();
+					if (c == -1) throw syntaxError(c);
+					if (sb != null) sb.append((char) c);
+					if (c == '"') {
+						copyStringBody(sb);
+					} else if (c == '{' || c == '[') {
+						depth++;
+					} else if (c == '}' || c == ']') {
+						depth--;
+					}
+				} while (depth > 0);
+			} else {
+				// 数字、true、false、null
+				while (c != -1 && c != ',' && c != ']' && c != '}' && !Character.isWhitespace(c)) {
+					read();
+					if (sb != null) sb.append((char) c);
+					c = peek();
+				}
+			}
+		}
+		
+		/**
+		* 复制字符串内容直到结束引号（开始引号已被消费）
+		*/
+		private void copyStringBody(StringBuilder sb) throws IOException {
+			while (true) {
+				int c = read();
+				if (c == -1) throw syntaxError(c);
+				if (sb != null) sb.append((char) c);
+				if (c == '\\') {
+					c = read();
+					if (c == -1) throw syntaxError(c);
+					if (sb != null) sb.append((char) c);
+				} else if (c == '"') {
+					return;
+				}
+			}
+		}
+		
+		/**
+		* 读取并解码一个字符串（用于字段名和表名）
+		*/
+		private String readString() throws IOException {
+			int c = read(skipWhitespace());
+			if (c != '"') throw syntaxError(c);
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				c = read();
+				if (c == -1) throw syntaxError(c);
+				if (c == '"') return sb.toString();
+				if (c != '\\') {
+					sb.append((char) c);
+					continue;
+				}
+				c = read();
+				switch (c) {
+					case 'b': sb.append('\b'); break;
+					case 'f': sb.append('\f'); break;
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					case 't': sb.append('\t'); break;
+					case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(read(), 16);
+						if (digit < 0) throw syntaxError(c);
+						code = (code << 4) | digit;
+					}
+					sb.append((char) code);
+					break;
+					case -1: throw syntaxError(c);
+					default: sb.append((char) c); break;
+				}
+			}
+		}
+		
+		private void expect(char expected) throws IOException {
+			int c = read(skipWhitespace());
+			if (c != expected) throw syntaxError(c);
+		}
+		
+		private int skipWhitespace() throws IOException {
+			int c = peek();
+			while (c != -1 && Character.isWhitespace(c)) {
+				position++;
+				c = peek();
+			}
+			return c;
+		}
+		
+		private int peek() throws IOException {
+			if (position >= limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[position];
+		}
+		
+		private int read() throws IOException {
+			int c = peek();
+			if (c != -1) position++;
+			return c;
+		}
+		
+		/**
+		* 消费已通过 peek 得到的字符
+		*/
+		private int read(int peeked) throws IOException {
+			return peeked == -1 ? -1 : read();
+		}
+		
+		private IOException syntaxError(int c) {
+			return new IOException("JSON格式错误，意外的字符: " + (c == -1 ? "EOF" : String.valueOf((char) c)));
+		}
+	}
+}
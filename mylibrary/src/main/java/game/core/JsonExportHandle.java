@@ -0,0 +1,233 @@
+package game.core;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import game.util.AesGcmInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+* JSON导出结果句柄
+* 预估大小在内存预算内时直接持有 JSONObject/JSONArray；超出预算时导出内容已写入临时文件，
+* 按需流式解析：getTableNames 只扫描不解析，getTable 只解析单个表，openReader 不解析。
+* 临时文件以随机密钥按 AES-GCM 加密，密钥只保存在句柄中，只能通过句柄读取。
+* 使用完毕后调用 close() 删除临时文件并清除密钥
+*/
+public class JsonExportHandle implements Closeable {
+	private static final String TAG = "JsonExportHandle";
+	
+	private final Object value;
+	private final File file;
+	private final byte[] key;
+	private final long plainLength;
+	
+	private JsonExportHandle(Object value, File file, byte[] key, long plainLength) {
+		this.value = value;
+		this.file = file;
+		this.key = key;
+		this.plainLength = plainLength;
+	}
+	
+	static JsonExportHandle inMemory(Object value) {
+		return new JsonExportHandle(value, null, null, 0);
+	}
+	
+	/**
+	* @param key 加密临时文件的密钥（句柄关闭时清零）
+	* @param plainLength 明文JSON的字节数
+	*/
+	static JsonExportHandle spilled(File file, byte[] key, long plainLength) {
+		return new JsonExportHandle(null, file, key, plainLength);
+	}
+	
+	/**
+	* 导出内容是否在临时文件中
+	*/
+	public boolean isSpilled() {
+		return file != null;
+	}
+	
+	/**
+	* 临时文件（已加密，内容只能通过 openReader 等方法读取），未溢出时返回null
+	*/
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	* 临时文件中JSON文本的UTF-8字节数（写入时累计）
+	* @return 字节数；结果在内存中时返回-1（计算长度需要把整个对象树序列化为字符串）
+	*/
+	public long length() {
+		return file != null ? plainLength : -1;
+	}
+	
+	/**
+	* 读取完整导出内容（溢出时会整体解析到内存，大数据量时优先使用 getTable 或 openReader）
+	* @return 数据库导出为 JSONObject，单表导出为 JSONArray、JSONObject 或单个值
+	*/
+	public Object get() throws IOException {
+		if (file == null) {
+			return value;
+		}
+		try (JsonReader reader = openJsonReader()) {
+			return readTree(reader);
+		}
+	}
+	
+	/**
+	* 数据库导出中的表名（溢出时只扫描文件，不解析表数据）
+	*/
+	public List<String> getTableNames() throws IOException {
+		List<String> names = new ArrayList<>();
+		if (file == null) {
+			JSONObject tables = value instanceof JSONObject ? ((JSONObject) value).optJSONObject("tables") : null;
+			if (tables != null) {
+				Iterator<String> keys = tables.keys();
+				while (keys.hasNext()) {
+					names.add(keys.next());
+				}
+			}
+			return names;
+		}
+		try (JsonReader reader = openJsonReader()) {
+			if (moveToTables(reader)) {
+				while (reader.hasNext()) {
+					names.add(reader.nextName());
+					reader.skipValue();
+				}
+			}
+		}
+		return names;
+	}
+	
+	/**
+	* 数据库导出中单个表的数据（溢出时只解析该表）
+	* @return 表数据（JSONArray、JSONObject 或单个值），表不存在返回null
+	*/
+	public Object getTable(String tableName) throws IOException {
+		if (file == null) {
+			JSONObject tables = value instanceof JSONObject ? ((JSONObject) value).optJSONObject("tables") : null;
+			return tables != null ? tables.opt(tableName) : null;
+		}
+		try (JsonReader reader = openJsonReader()) {
+			if (moveToTables(reader)) {
+				while (reader.hasNext()) {
+					if (reader.nextName().equals(tableName)) {
+						return readTree(reader);
+					}
+					reader.skipValue();
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	* 以字符流读取导出的JSON文本（调用方负责关闭）
+	*/
+	public Reader openReader() throws IOException {
+		if (file == null) {
+			return new StringReader(String.valueOf(value));
+		}
+		return new InputStreamReader(new AesGcmInputStream(new FileInputStream(file), key), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	* 读取JSON文本的前 maxChars 个字符（用于预览）
+	*/
+	public String readPrefix(int maxChars) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		try (Reader reader = openReader()) {
+			char[] buffer = new char[Math.min(Math.max(maxChars, 1), 8192)];
+			int read;
+			while (sb.length() < maxChars
+			&& (read = reader.read(buffer, 0, Math.min(buffer.length, maxChars - sb.length()))) != -1) {
+				sb.append(buffer, 0, read);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	* 删除临时文件并清除密钥
+	*/
+	@Override
+	public void close() {
+		if (key != null) {
+			Arrays.fill(key, (byte) 0);
+		}
+		if (file != null && file.exists() && !file.delete()) {
+			DBCipherManager.log(DBCipherManager.LogLevel.WARN, TAG, "删除临时导出文件失败: " + file.getPath(), null);
+		}
+	}
+	
+	private JsonReader openJsonReader() throws IOException {
+		return new JsonReader(openReader());
+	}
+	
+	/**
+	* 定位到数据库导出的 tables 对象内部
+	* @return false表示没有 tables 字段（例如单表导出）
+	*/
+	private static boolean moveToTables(JsonReader reader) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			return false;
+		}
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if ("tables".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+				return true;
+			}
+			reader.skipValue();
+		}
+		return false;
+	}
+	
+	/**
+	* 将当前值解析为 org.json 对象（数值类型与内存导出一致：整数为 Long，小数为 Double）
+	*/
+	private static Object readTree(JsonReader reader) throws IOException {
+		try {
+			switch (reader.peek()) {
+				case BEGIN_OBJECT:
+				JSONObject object = new JSONObject();
+				reader.beginObject();
+				while (reader.hasNext()) {
+					object.put(reader.nextName(), readTree(reader));
+				}
+				reader.endObject();
+				return object;
+				case BEGIN_ARRAY:
+				JSONArray array = new JSONArray();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					array.put(readTree(reader));
+				}
+				reader.endArray();
+				return array;
+				case NULL:
+				reader.nextNull();
+				return JSONObject.NULL;
+				default:
+				return SqlUtilManager.readStreamValue(reader);
+			}
+		} catch (JSONException e) {
+			throw new IOException("解析导出文件失败", e);
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import org.json.JSONObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+* 导出热路径使用的流式JSON写入器
+* 自带可复用的字符缓冲区：字符串先快速扫描，无需转义的片段直接整段拷贝，需要转义的字符查预先计算的转义表；
+* 整数直接按位写入缓冲区，游标值按列类型直接写出，不经过装箱和中间字符串。
+* 输出与 SqlUtilManager.writeJsonValue 完全一致（BLOB 为 Base64.DEFAULT 格式，每76个字符换行）
+*
+* 非线程安全；只负责写值，结构符号（括号、逗号）由调用方按需写入
+*/
+final class JsonStreamWriter extends Writer {
+	static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+	
+	// 0x00-0x9F 范围内需要转义的字符，其余字符原样输出
+	private static final int ESCAPE_LIMIT = 0xA0;
+	private static final char[][] ESCAPES = new char[ESCAPE_LIMIT][];
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	// Base64.DEFAULT 每行19组（76个字符）
+	private static final int BASE64_LINE_GROUPS = 19;
+	private static final char[] NULL = "null".toCharArray();
+	private static final char[] ESCAPED_NEWLINE = "\\n".toCharArray();
+	
+	static {
+		for (int c = 0; c < ESCAPE_LIMIT; c++) {
+			if (c <= 0x1F || c >= 0x7F) {
+				ESCAPES[c] = new char[]{'\\', 'u', '0', '0', HEX[c >> 4], HEX[c & 0xF]};
+			}
+		}
+		ESCAPES['"'] = new char[]{'\\', '"'};
+		ESCAPES['\\'] = new char[]{'\\', '\\'};
+		ESCAPES['\b'] = new char[]{'\\', 'b'};
+		ESCAPES['\f'] = new char[]{'\\', 'f'};
+		ESCAPES['\n'] = new char[]{'\\', 'n'};
+		ESCAPES['\r'] = new char[]{'\\', 'r'};
+		ESCAPES['\t'] = new char[]{'\\', 't'};
+	}
+	
+	private final Writer out;
+	private final char[] buffer;
+	private final char[] digits = new char[20];
+	// 分段Base64编码状态：未凑满3字节的尾部和当前行已写的组数
+	private final byte[] base64Tail = new byte[3];
+	private int base64Pending = 0;
+	private int base64Groups = 0;
+	private boolean base64Wrap = true;
+	private int position = 0;
+	
+	JsonStreamWriter(Writer out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+	
+	JsonStreamWriter(Writer out, int bufferSize) {
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("缓冲区太小: " + bufferSize);
+		}
+		this.out = out;
+		this.buffer = new char[bufferSize];
+	}
+	
+	/**
+	* 字符串是否包含需要转义的字符
+	*/
+	static boolean needsEscape(String value) {
+		for (int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			if (c < ESCAPE_LIMIT && ESCAPES[c] != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	* 转义字符串（不含引号），无需转义时直接返回原字符串
+	*/
+	static String escape(String value) {
+		if (!needsEscape(value)) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(value.length() + 16);
+		for (int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			char[] escaped = c < ESCAPE_LIMIT ? ESCAPES[c] : null;
+			if (escaped != null) {
+				sb.append(escaped);
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	// ==================== JSON值 ====================
+	
+	/**
+	* 写入带引号的字符串
+	*/
+	void writeString(String value) throws IOException {
+		writeChar('"');
+		int length = value.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < ESCAPE_LIMIT) {
+				char[] escaped = ESCAPES[c];
+				if (escaped != null) {
+					appendChars(value, start, i);
+					appendChars(escaped);
+					start = i + 1;
+				}
+			}
+		}
+		appendChars(value, start, length);
+		writeChar('"');
+	}
+	
+	/**
+	* 写入对象键（"name":）
+	*/
+	void writeName(String name) throws IOException {
+		writeString(name);
+		writeChar(':');
+	}
+	
+	void writeNull() throws IOException {
+		appendChars(NULL);
+	}
+	
+	void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			appendChars("-9223372036854775808", 0, 20);
+			return;
+		}
+		if (value < 0) {
+			writeChar('-');
+			value = -value;
+		}
+		int index = digits.length;
+		do {
+			digits[--index] = (char) ('0' + (int) (value % 10));
+			value /= 10;
+		} while (value != 0);
+		appendChars(digits, index, digits.length - index);
+	}
+	
+	/**
+	* 写入浮点数（与 Double.toString 输出相同）
+	*/
+	void writeDouble(double value) throws IOException {
+		// 常见的整数值（如 3.0）直接按位写出，其余交给 Double.toString
+		if (value == (long) value && Math.abs(value) < 1e7 && !(value == 0 && 1 / value < 0)) {
+			writeLong((long) value);
+			writeChar('.');
+			writeChar('0');
+		} else {
+			String text = Double.toString(value);
+			appendChars(text, 0, text.length());
+		}
+	}
+	
+	/**
+	* 写入BLOB的Base64字符串（与 Base64.DEFAULT 相同：每76个字符及末尾各一个换行，在JSON中写为 \n）
+	*/
+	void writeBase64(byte[] data) throws IOException {
+		beginBase64();
+		appendBase64(data, 0, data.length);
+		endBase64();
+	}
+	
+	/**
+	* 开始分段写入Base64字符串（之后多次调用 appendBase64，最后调用 endBase64）
+	*/
+	void beginBase64() throws IOException {
+		beginBase64(true);
+	}
+	
+	/**
+	* @param wrapLines true 与 Base64.DEFAULT 相同（每76个字符及末尾换行，写为 \n），false 与 Base64.NO_WRAP 相同
+	*/
+	void beginBase64(boolean wrapLines) throws IOException {
+		writeChar('"');
+		base64Pending = 0;
+		base64Groups = 0;
+		base64Wrap = wrapLines;
+	}
+	
+	/**
+	* 追加一段原始字节（不足3字节的尾部留到下一段或 endBase64 处理，输出与一次性编码相同）
+	*/
+	void appendBase64(byte[] data, int offset, int length) throws IOException {
+		int i = offset;
+		int end = offset + length;
+		while (base64Pending > 0 && base64Pending < 3 && i < end) {
+			base64Tail[base64Pending++] = data[i++];
+		}
+		if (base64Pending == 3) {
+			writeBase64Group(base64Tail[0], base64Tail[1], base64Tail[2]);
+			base64Pending = 0;
+		}
+		for (; i + 3 <= end; i += 3) {
+			writeBase64Group(data[i], data[i + 1], data[i + 2]);
+		}
+		while (i < end) {
+			base64Tail[base64Pending++] = data[i++];
+		}
+	}
+	
+	void endBase64() throws IOException {
+		if (base64Pending > 0) {
+			int bits = (base64Tail[0] & 0xFF) << 16 | (base64Pending == 2 ? (base64Tail[1] & 0xFF) << 8 : 0);
+			ensureCapacity(4);
+			buffer[position++] = BASE64[bits >>> 18];
+			buffer[position++] = BASE64[(bits >>> 12) & 0x3F];
+			buffer[position++] = base64Pending == 2 ? BASE64[(bits >>> 6) & 0x3F] : '=';
+			buffer[position++] = '=';
+			base64Groups++;
+			base64Pending = 0;
+		}
+		if (base64Wrap && base64Groups > 0) {
+			appendChars(ESCAPED_NEWLINE);
+		}
+		writeChar('"');
+	}
+	
+	private void writeBase64Group(byte b0, byte b1, byte b2) throws IOException {
+		int bits = (b0 & 0xFF) << 16 | (b1 & 0xFF) << 8 | (b2 & 0xFF);
+		ensureCapacity(4);
+		buffer[position++] = BASE64[bits >>> 18];
+		buffer[position++] = BASE64[(bits >>> 12) & 0x3F];
+		buffer[position++] = BASE64[(bits >>> 6) & 0x3F];
+		buffer[position++] = BASE64[bits & 0x3F];
+		if (++base64Groups == BASE64_LINE_GROUPS && base64Wrap) {
+			appendChars(ESCAPED_NEWLINE);
+			base64Groups = 0;
+		}
+	}
+	
+	/**
+	* 以Base64字符串写入输入流的全部内容（分块读取，不把整个BLOB放入内存）
+	*/
+	void writeBase64(InputStream in) throws IOException {
+		writeBase64(in, true);
+	}
+	
+	/**
+	* @param wrapLines 是否按 Base64.DEFAULT 换行，false 时与 Base64.NO_WRAP 相同
+	*/
+	void writeBase64(InputStream in, boolean wrapLines) throws IOException {
+		byte[] chunk = new byte[8190];
+		beginBase64(wrapLines);
+		int read;
+		while ((read = in.read(chunk)) != -1) {
+			appendBase64(chunk, 0, read);
+		}
+		endBase64();
+	}
+	
+	/**
+	* 写入任意值（规则与 SqlUtilManager.writeJsonValue 相同）
+	*/
+	void writeValue(Object value) throws IOException {
+		if (value == null || value == JSONObject.NULL) {
+			writeNull();
+		} else if (value instanceof String) {
+			writeString((String) value);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			writeLong(((Number) value).longValue());
+		} else if (value instanceof Double) {
+			writeDouble((Double) value);
+		} else if (value instanceof Number || value instanceof Boolean) {
+			String text = value.toString();
+			appendChars(text, 0, text.length());
+		} else if (value instanceof byte[]) {
+			writeBase64((byte[]) value);
+		} else {
+			writeString(value.toString());
+		}
+	}
+	
+	/**
+	* 按列类型直接写入游标的当前值（与 writeValue(getValueFromCursor(...)) 输出相同）
+	*/
+	void writeCursorValue(Cursor cursor, int columnIndex) throws IOException {
+		switch (cursor.getType(columnIndex)) {
+			case Cursor.FIELD_TYPE_NULL:
+			writeNull();
+			break;
+			case Cursor.FIELD_TYPE_INTEGER:
+			writeLong(cursor.getLong(columnIndex));
+			break;
+			case Cursor.FIELD_TYPE_FLOAT:
+			writeDouble(cursor.getDouble(columnIndex));
+			break;
+			case Cursor.FIELD_TYPE_BLOB:
+			writeBase64(cursor.getBlob(columnIndex));
+			break;
+			default:
+			writeString(cursor.getString(columnIndex));
+		}
+	}
+	
+	// ==================== Writer ====================
+	
+	@Override
+	public void write(int c) throws IOException {
+		writeChar((char) c);
+	}
+	
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		appendChars(chars, offset, length);
+	}
+	
+	@Override
+	public void write(String str, int offset, int length) throws IOException {
+		appendChars(str, offset, offset + length);
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			out.close();
+		}
+	}
+	
+	// ==================== 缓冲区 ====================
+	
+	private void writeChar(char c) throws IOException {
+		if (position == buffer.length) {
+			flushBuffer();
+		}
+		buffer[position++] = c;
+	}
+	
+	private void appendChars(char[] chars) throws IOException {
+		appendChars(chars, 0, chars.length);
+	}
+	
+	private void appendChars(char[] chars, int offset, int length) throws IOException {
+		if (length > buffer.length) {
+			flushBuffer();
+			out.write(chars, offset, length);
+			return;
+		}
+		ensureCapacity(length);
+		System.arraycopy(chars, offset, buffer, position, length);
+		position += length;
+	}
+	
+	/**
+	* 拷贝字符串的 [from, to) 片段（分段拷贝，不产生中间对象）
+	*/
+	private void appendChars(String value, int from, int to) throws IOException {
+		while (from < to) {
+			if (position == buffer.length) {
+				flushBuffer();
+			}
+			int count = Math.min(to - from, buffer.length - position);
+			value.getChars(from, from + count, buffer, position);
+			position += count;
+			from += count;
+		}
+	}
+	
+	private void ensureCapacity(int length) throws IOException {
+		if (buffer.length - position < length) {
+			flushBuffer();
+		}
+	}
+	
+	private void flushBuffer() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
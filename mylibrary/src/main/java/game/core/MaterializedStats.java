@@ -0,0 +1,391 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* 物化数值统计 - 按 (表, 字段, 可选分组列) 维护 COUNT/SUM/MIN/MAX
+* 统计行由源表上的触发器增量维护，因此任何写入途径（包括其他进程）都会同步更新，
+* 统计读取为单行主键查询；MIN/MAX只在删除或修改了当前极值时回表重新计算
+*
+* 统计结果与 PropertyManager.getNumericFieldStats 的返回格式一致
+*/
+public class MaterializedStats {
+	private static final String TAG = "MaterializedStats";
+	public static final String STATS_TABLE = "__numeric_stats";
+	public static final String DEFINITION_TABLE = "__numeric_stats_def";
+	// 不分组时的分组列/分组值占位
+	private static final String NO_GROUP = "";
+	
+	private final DBCipherManager dbManager;
+	// 已启用的统计定义缓存：表名\u0000字段名\u0000分组列
+	private final Set<String> enabledDefinitions = ConcurrentHashMap.newKeySet();
+	private volatile boolean definitionsLoaded = false;
+	
+	public MaterializedStats(DBCipherManager dbManager) {
+		this.dbManager = dbManager;
+	}
+	
+	// ==================== 启用与停用 ====================
+	
+	/**
+	* 为字段启用物化统计（不分组）
+	*/
+	public boolean enable(String tableName, String fieldName) {
+		return enable(tableName, fieldName, null);
+	}
+	
+	/**
+	* 为字段启用物化统计：创建触发器并立即全量重建一次
+	* @param groupColumn 分组列，为null表示整表统计
+	* @return 是否启用成功
+	*/
+	public boolean enable(String tableName, String fieldName, String groupColumn) {
+		String group = groupColumn == null ? NO_GROUP : groupColumn;
+		return dbManager.executeWithConnection(db -> {
+			try {
+				db.beginTransaction();
+				ensureTables(db);
+				db.execSQL("INSERT OR IGNORE INTO " + DEFINITION_TABLE
+				+ " (table_name, field_name, group_column) VALUES (?, ?, ?)",
+				new Object[]{tableName, fieldName, group});
+				createTriggers(db, tableName, fieldName, group);
+				rebuild(db, tableName, fieldName, group);
+				db.setTransactionSuccessful();
+				enabledDefinitions.add(definitionKey(tableName, fieldName, group));
+				log(DBCipherManager.LogLevel.INFO, "已启用物化统计: " + tableName + "." + fieldName
+				+ (group.isEmpty() ? "" : " 分组: " + group), null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "启用物化统计失败: " + tableName + "." + fieldName, e);
+				return false;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 停用物化统计：删除触发器和统计数据
+	*/
+	public boolean disable(String tableName, String fieldName, String groupColumn) {
+		String group = groupColumn == null ? NO_GROUP : groupColumn;
+		return dbManager.executeWithConnection(db -> {
+			try {
+				db.beginTransaction();
+				ensureTables(db);
+				for (String suffix : new String[]{"ins", "del", "upd"}) {
+					db.execSQL("DROP TRIGGER IF EXISTS " + quote(triggerName(tableName, fieldName, group, suffix)));
+				}
+				db.execSQL("DELETE FROM " + STATS_TABLE + " WHERE table_name = ? AND field_name = ? AND group_column = ?",
+				new Object[]{tableName, fieldName, group});
+				db.execSQL("DELETE FROM " + DEFINITION_TABLE + " WHERE table_name = ? AND field_name = ? AND group_column = ?",
+				new Object[]{tableName, fieldName, group});
+				db.setTransactionSuccessful();
+				enabledDefinitions.remove(definitionKey(tableName, fieldName, group));
+				log(DBCipherManager.LogLevel.INFO, "已停用物化统计: " + tableName + "." + fieldName, null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "停用物化统计失败: " + tableName + "." + fieldName, e);
+				return false;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	public boolean isEnabled(String tableName, String fieldName, String groupColumn) {
+		loadDefinitions();
+		return enabledDefinitions.contains(definitionKey(tableName, fieldName,
+		groupColumn == null ? NO_GROUP : groupColumn));
+	}
+	
+	// ==================== 重建 ====================
+	
+	/**
+	* 全量重建指定统计（用于数据漂移恢复，如触发器被删除期间的写入）
+	*/
+	public boolean rebuild(String tableName, String fieldName, String groupColumn) {
+		String group = groupColumn == null ? NO_GROUP : groupColumn;
+		return dbManager.executeWithConnection(db -> {
+			try {
+				db.beginTransaction();
+				ensureTables(db);
+				// 顺带补建可能丢失的触发器（如源表被重建）
+				createTriggers(db, tableName, fieldName, group);
+				rebuild(db, tableName, fieldName, group);
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "物化统计重建完成: " + tableName + "." + fieldName, null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "物化统计重建失败: " + tableName + "." + fieldName, e);
+				return false;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 重建所有已启用的统计
+	* @return 成功重建的数量
+	*/
+	public int rebuildAll() {
+		loadDefinitions();
+		int count = 0;
+		for (String key : enabledDefinitions) {
+			String[] parts = key.split("\u0000", -1);
+			if (rebuild(parts[0], parts[1], parts[2].isEmpty() ? null : parts[2])) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private void rebuild(SQLiteDatabase db, String tableName, String fieldName, String group) {
+		db.execSQL("DELETE FROM " + STATS_TABLE + " WHERE table_name = ? AND field_name = ? AND group_column = ?",
+		new Object[]{tableName, fieldName, group});
+		String field = quote(fieldName);
+		String groupValue = group.isEmpty() ? "''" : "COALESCE(CAST(" + quote(group) + " AS TEXT), '')";
+		String sql = "INSERT INTO " + STATS_TABLE
+		+ " (table_name, field_name, group_column, group_value, row_count, value_count, total, min_value, max_value)"
+		+ " SELECT ?, ?, ?, " + groupValue + ", COUNT(*), COUNT(" + field + "), COALESCE(SUM(" + field + "), 0), "
+		+ "MIN(" + field + "), MAX(" + field + ") FROM " + quote(tableName)
+		+ (group.isEmpty() ? "" : " GROUP BY " + groupValue);
+		db.execSQL(sql, new Object[]{tableName, fieldName, group});
+	}
+	
+	// ==================== 读取 ====================
+	
+	/**
+	* 读取整表统计
+	* @return 统计结果（count, sum, average, minimum, maximum），未启用时返回null
+	*/
+	public Map<String, Object> getStats(String tableName, String fieldName) {
+		if (!isEnabled(tableName, fieldName, null)) {
+			return null;
+		}
+		return readStats(tableName, fieldName, NO_GROUP, NO_GROUP);
+	}
+	
+	/**
+	* 读取单个分组的统计
+	* @return 统计结果，未启用时返回null；分组不存在时各项为0
+	*/
+	public Map<String, Object> getStats(String tableName, String fieldName, String groupColumn, String groupValue) {
+		if (!isEnabled(tableName, fieldName, groupColumn)) {
+			return null;
+		}
+		return readStats(tableName, fieldName, groupColumn, groupValue == null ? NO_GROUP : groupValue);
+	}
+	
+	/**
+	* 读取所有分组的统计
+	* @return 分组值 -> 统计结果，未启用时返回null
+	*/
+	public Map<String, Map<String, Object>> getGroupedStats(String tableName, String fieldName, String groupColumn) {
+		if (!isEnabled(tableName, fieldName, groupColumn)) {
+			return null;
+		}
+		return dbManager.executeWithConnection(db -> {
+			Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT group_value, row_count, value_count, total, min_value, max_value FROM "
+				+ STATS_TABLE + " WHERE table_name = ? AND field_name = ? AND group_column = ? ORDER BY group_value",
+				new String[]{tableName, fieldName, groupColumn});
+				while (cursor != null && cursor.moveToNext()) {
+					result.put(cursor.getString(0), toStats(cursor, 1));
+				}
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "读取分组统计失败: " + tableName + "." + fieldName, e);
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+			return result;
+		});
+	}
+	
+	private Map<String, Object> readStats(String tableName, String fieldName, String group, String groupValue) {
+		return dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT row_count, value_count, total, min_value, max_value FROM " + STATS_TABLE
+				+ " WHERE table_name = ? AND field_name = ? AND group_column = ? AND group_value = ?",
+				new String[]{tableName, fieldName, group, groupValue});
+				if (cursor != null && cursor.moveToFirst()) {
+					return toStats(cursor, 0);
+				}
+				return emptyStats();
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "读取物化统计失败: " + tableName + "." + fieldName, e);
+				return new HashMap<String, Object>();
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+		});
+	}
+	
+	private Map<String, Object> toStats(Cursor cursor, int offset) {
+		Map<String, Object> stats = new HashMap<>();
+		long valueCount = cursor.getLong(offset + 1);
+		double total = cursor.getDouble(offset + 2);
+		stats.put("count", cursor.getLong(offset));
+		stats.put("sum", cursor.getLong(offset + 2));
+		stats.put("average", valueCount > 0 ? total / valueCount : 0d);
+		stats.put("minimum", cursor.getLong(offset + 3));
+		stats.put("maximum", cursor.getLong(offset + 4));
+		return stats;
+	}
+	
+	private Map<String, Object> emptyStats() {
+		Map<String, Object> stats = new HashMap<>();
+		stats.put("count", 0L);
+		stats.put("sum", 0L);
+		stats.put("average", 0d);
+		stats.put("minimum", 0L);
+		stats.put("maximum", 0L);
+		return stats;
+	}
+	
+	// ==================== 触发器 ====================
+	
+	private void createTriggers(SQLiteDatabase db, String tableName, String fieldName, String group) {
+		String table = quote(tableName);
+		String newPart = applyRow(tableName, fieldName, group, "NEW");
+		String oldPart = removeRow(tableName, fieldName, group, "OLD");
+		String updateOf = quote(fieldName) + (group.isEmpty() ? "" : ", " + quote(group));
+		
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS " + quote(triggerName(tableName, fieldName, group, "ins"))
+		+ " AFTER INSERT ON " + table + " BEGIN " + newPart + " END");
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS " + quote(triggerName(tableName, fieldName, group, "del"))
+		+ " AFTER DELETE ON " + table + " BEGIN " + oldPart + " END");
+		// 更新视为删除旧行再插入新行，分组列变化时自动迁移到新分组
+		db.execSQL("CREATE TRIGGER IF NOT EXISTS " + quote(triggerName(tableName, fieldName, group, "upd"))
+		+ " AFTER UPDATE OF " + updateOf + " ON " + table + " BEGIN " + oldPart + " " + newPart + " END");
+	}
+	
+	/**
+	* 生成把一行计入统计的语句
+	*/
+	private String applyRow(String tableName, String fieldName, String group, String row) {
+		String value = row + "." + quote(fieldName);
+		String keyMatch = keyMatch(tableName, fieldName, group, row);
+		return "INSERT OR IGNORE INTO " + STATS_TABLE
+		+ " (table_name, field_name, group_column, group_value, row_count, value_count, total, min_value, max_value)"
+		+ " VALUES (" + literal(tableName) + ", " + literal(fieldName) + ", " + literal(group) + ", "
+		+ groupValueOf(group, row) + ", 0, 0, 0, NULL, NULL);"
+		+ " UPDATE " + STATS_TABLE + " SET row_count = row_count + 1,"
+		+ " value_count = value_count + (" + value + " IS NOT NULL),"
+		+ " total = total + COALESCE(" + value + ", 0),"
+		+ " min_value = CASE WHEN " + value + " IS NULL THEN min_value"
+		+ " WHEN min_value IS NULL OR " + value + " < min_value THEN " + value + " ELSE min_value END,"
+		+ " max_value = CASE WHEN " + value + " IS NULL THEN max_value"
+		+ " WHEN max_value IS NULL OR " + value + " > max_value THEN " + value + " ELSE max_value END"
+		+ " WHERE " + keyMatch + ";";
+	}
+	
+	/**
+	* 生成把一行移出统计的语句，删除的是当前极值时回表重新计算
+	*/
+	private String removeRow(String tableName, String fieldName, String group, String row) {
+		String value = row + "." + quote(fieldName);
+		String field = quote(fieldName);
+		String groupFilter = group.isEmpty() ? ""
+		: " WHERE COALESCE(CAST(" + quote(group) + " AS TEXT), '') = " + groupValueOf(group, row);
+		String sql = "UPDATE " + STATS_TABLE + " SET row_count = row_count - 1,"
+		+ " value_count = value_count - (" + value + " IS NOT NULL),"
+		+ " total = total - COALESCE(" + value + ", 0),"
+		+ " min_value = CASE WHEN " + value + " IS NOT NULL AND " + value + " <= min_value"
+		+ " THEN (SELECT MIN(" + field + ") FROM " + quote(tableName) + groupFilter + ") ELSE min_value END,"
+		+ " max_value = CASE WHEN " + value + " IS NOT NULL AND " + value + " >= max_value"
+		+ " THEN (SELECT MAX(" + field + ") FROM " + quote(tableName) + groupFilter + ") ELSE max_value END"
+		+ " WHERE " + keyMatch(tableName, fieldName, group, row) + ";";
+		if (!group.isEmpty()) {
+			// 分组清空后删除统计行
+			sql += " DELETE FROM " + STATS_TABLE + " WHERE " + keyMatch(tableName, fieldName, group, row)
+			+ " AND row_count <= 0;";
+		}
+		return sql;
+	}
+	
+	private String keyMatch(String tableName, String fieldName, String group, String row) {
+		return "table_name = " + literal(tableName) + " AND field_name = " + literal(fieldName)
+		+ " AND group_column = " + literal(group) + " AND group_value = " + groupValueOf(group, row);
+	}
+	
+	private String groupValueOf(String group, String row) {
+		return group.isEmpty() ? "''" : "COALESCE(CAST(" + row + "." + quote(group) + " AS TEXT), '')";
+	}
+	
+	private String triggerName(String tableName, String fieldName, String group, String suffix) {
+		return "__stats_" + tableName + "_" + fieldName + (group.isEmpty() ? "" : "_" + group) + "_" + suffix;
+	}
+	
+	// ==================== 辅助方法 ====================
+	
+	private void ensureTables(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + STATS_TABLE + " ("
+		+ "table_name TEXT NOT NULL, "
+		+ "field_name TEXT NOT NULL, "
+		+ "group_column TEXT NOT NULL, "
+		+ "group_value TEXT NOT NULL, "
+		+ "row_count INTEGER NOT NULL, "
+		+ "value_count INTEGER NOT NULL, "
+		+ "total INTEGER NOT NULL, "
+		+ "min_value, "
+		+ "max_value, "
+		+ "PRIMARY KEY (table_name, field_name, group_column, group_value))");
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + DEFINITION_TABLE + " ("
+		+ "table_name TEXT NOT NULL, "
+		+ "field_name TEXT NOT NULL, "
+		+ "group_column TEXT NOT NULL, "
+		+ "PRIMARY KEY (table_name, field_name, group_column))");
+	}
+	
+	/**
+	* 从定义表加载已启用的统计（首次使用时）
+	*/
+	private void loadDefinitions() {
+		if (definitionsLoaded) {
+			return;
+		}
+		dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT table_name, field_name, group_column FROM " + DEFINITION_TABLE, null);
+				while (cursor != null && cursor.moveToNext()) {
+					enabledDefinitions.add(definitionKey(cursor.getString(0), cursor.getString(1), cursor.getString(2)));
+				}
+			} catch (Exception e) {
+				// 定义表不存在表示尚未启用任何统计
+				log(DBCipherManager.LogLevel.DEBUG, "未找到物化统计定义", null);
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+			definitionsLoaded = true;
+			return null;
+		});
+	}
+	
+	private String definitionKey(String tableName, String fieldName, String group) {
+		return tableName + "\u0000" + fieldName + "\u0000" + group;
+	}
+	
+	private static String quote(String identifier) {
+		return "\"" + identifier.replace("\"", "\"\"") + "\"";
+	}
+	
+	private static String literal(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
@@ -3,12 +3,14 @@ package game.core;
 import android.content.ContentValues;
 import net.sqlcipher.Cursor;
 import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -24,8 +26,72 @@ public class NumericFieldUpdater {
 	private final Map<String, ReentrantLock> lockMap = new ConcurrentHashMap<>();
 	private final Object lockMapMutex = new Object();
 	
+	// 乐观锁模式：表名 -> 版本列名
+	private final Map<String, String> optimisticTables = new ConcurrentHashMap<>();
+	// 乐观锁冲突重试策略
+	private volatile int optimisticMaxRetries = 5;
+	private volatile long optimisticBaseBackoffMs = 10;
+	private volatile long optimisticMaxBackoffMs = 200;
+	// 内部标记：版本号不匹配，需要重试
+	private static final long VERSION_CONFLICT = Long.MIN_VALUE;
+	// 幂等操作记录，用于带操作ID的更新去重
+	private final IdempotencyStore idempotencyStore;
+	
 	public NumericFieldUpdater(DBCipherManager dbManager) {
 		this.dbManager = dbManager;
+		this.idempotencyStore = new IdempotencyStore(dbManager);
+	}
+	
+	/**
+	* 获取幂等操作记录（可调整TTL或手动清理）
+	*/
+	public IdempotencyStore getIdempotencyStore() {
+		return idempotencyStore;
+	}
+	
+	// ==================== 乐观锁模式 ====================
+	
+	/**
+	* 为表启用乐观锁模式（跨进程安全）
+	* 表中会自动添加版本列（INTEGER NOT NULL DEFAULT 0），此后对该表的更新不再使用进程内锁，
+	* 而是以 "WHERE ... AND 版本列 = ?" 条件更新并递增版本号，版本不匹配时重新读取并按退避策略重试
+	* @param tableName 表名
+	* @param versionColumn 版本列名
+	* @return 是否启用成功
+	*/
+	public boolean enableOptimisticLocking(String tableName, String versionColumn) {
+		boolean ready = dbManager.getTableManager()
+		.addColumnIfNotExists(tableName, versionColumn, "INTEGER NOT NULL DEFAULT 0");
+		if (!ready) {
+			log(DBCipherManager.LogLevel.ERROR, "启用乐观锁失败，无法添加版本列: " + tableName + "." + versionColumn, null);
+			return false;
+		}
+		optimisticTables.put(tableName, versionColumn);
+		log(DBCipherManager.LogLevel.INFO, "已启用乐观锁: " + tableName + "." + versionColumn, null);
+		return true;
+	}
+	
+	/**
+	* 关闭表的乐观锁模式（版本列保留），恢复为进程内锁
+	*/
+	public void disableOptimisticLocking(String tableName) {
+		optimisticTables.remove(tableName);
+	}
+	
+	public boolean isOptimisticLockingEnabled(String tableName) {
+		return optimisticTables.containsKey(tableName);
+	}
+	
+	/**
+	* 设置乐观锁冲突重试策略
+	* @param maxRetries 最大重试次数
+	* @param baseBackoffMs 首次退避时间（毫秒），之后按指数增长
+	* @param maxBackoffMs 单次退避上限（毫秒）
+	*/
+	public void setOptimisticRetryPolicy(int maxRetries, long baseBackoffMs, long maxBackoffMs) {
+		this.optimisticMaxRetries = Math.max(0, maxRetries);
+		this.optimisticBaseBackoffMs = Math.max(1, baseBackoffMs);
+		this.optimisticMaxBackoffMs = Math.max(this.optimisticBaseBackoffMs, maxBackoffMs);
 	}
 	
 	/**
@@ -33,15 +99,34 @@ public class NumericFieldUpdater {
 	* @return 更新后的值，-1表示失败
 	*/
 	public long safeIncrement(String tableName, String recordId, String fieldName, long increment) {
-		return updateField(tableName, "id = ?", new String[]{recordId}, fieldName, increment);
+		return updateField(tableName, "id = ?", new String[]{recordId}, fieldName, increment, null);
+	}
+	
+	/**
+	* 幂等的安全增加（基于ID）
+	* 同一operationId在TTL内重复调用只生效一次，重试时返回首次执行的结果
+	* @param operationId 操作ID，为null时等同于不去重
+	*/
+	public long safeIncrement(String tableName, String recordId, String fieldName, long increment,
+	String operationId) {
+		return updateField(tableName, "id = ?", new String[]{recordId}, fieldName, increment, operationId);
 	}
 	
 	/**
 	* 安全减少数值字段（基于ID）
-	* @return 更新后的值，-1表示失败，-2表示数值不足
+	* @return 更新后的值，-1表示失败，-2表示数值不足，-3表示乐观锁冲突重试耗尽
 	*/
 	public long safeDecrement(String tableName, String recordId, String fieldName, long decrement) {
-		return updateField(tableName, "id = ?", new String[]{recordId}, fieldName, -decrement);
+		return updateField(tableName, "id = ?", new String[]{recordId}, fieldName, -decrement, null);
+	}
+	
+	/**
+	* 幂等的安全减少（基于ID）
+	* @param operationId 操作ID，为null时等同于不去重
+	*/
+	public long safeDecrement(String tableName, String recordId, String fieldName, long decrement,
+	String operationId) {
+		return updateField(tableName, "id = ?", new String[]{recordId}, fieldName, -decrement, operationId);
 	}
 	
 	/**
@@ -52,14 +137,29 @@ public class NumericFieldUpdater {
 	*/
 	public long safeUpdate(String tableName, String whereClause, String[] whereArgs,
 	String fieldName, long delta) {
-		return updateField(tableName, whereClause, whereArgs, fieldName, delta);
+		return updateField(tableName, whereClause, whereArgs, fieldName, delta, null);
+	}
+	
+	/**
+	* 幂等的安全更新（完全自定义条件）
+	* @param operationId 操作ID，为null时等同于不去重
+	*/
+	public long safeUpdate(String tableName, String whereClause, String[] whereArgs,
+	String fieldName, long delta, String operationId) {
+		return updateField(tableName, whereClause, whereArgs, fieldName, delta, operationId);
 	}
 	
 	/**
 	* 核心更新方法（原子操作）- 支持自定义WHERE条件
+	* @param operationId 幂等操作ID，非null时在同一事务中查询和记录执行结果
 	*/
 	private long updateField(String tableName, String whereClause, String[] whereArgs,
-	String fieldName, long delta) {
+	String fieldName, long delta, String operationId) {
+		String versionColumn = optimisticTables.get(tableName);
+		if (versionColumn != null) {
+			return updateFieldOptimistic(tableName, versionColumn, whereClause, whereArgs, fieldName, delta, operationId);
+		}
+		
 		// 生成唯一的锁标识键
 		String lockKey = generateLockKey(tableName, fieldName, whereClause);
 		Lock lock = acquireLock(lockKey);
@@ -72,6 +172,15 @@ public class NumericFieldUpdater {
 					
 					db.beginTransaction();
 					
+					// 0. 已执行过的操作直接返回首次结果
+					if (operationId != null) {
+						String recorded = idempotencyStore.lookup(db, operationId);
+						if (recorded != null) {
+							db.setTransactionSuccessful();
+							return Long.parseLong(recorded);
+						}
+					}
+					
 					// 1. 获取当前值（使用自定义WHERE条件）
 					long currentValue = getCurrentValue(db, tableName, whereClause, whereArgs, fieldName);
 					if (currentValue == -1) {
@@ -96,6 +205,9 @@ public class NumericFieldUpdater {
 					int updated = db.update(tableName, values, whereClause, whereArgs);
 					
 					if (updated == 1) {
+						if (operationId != null) {
+							idempotencyStore.record(db, operationId, String.valueOf(newValue));
+						}
 						db.setTransactionSuccessful();
 						log(DBCipherManager.LogLevel.INFO,
 						"字段更新成功: " + fieldName + "=" + newValue + ", 条件: " + whereClause, null);
@@ -127,6 +239,10 @@ public class NumericFieldUpdater {
 	*/
 	public boolean updateMultipleFields(String tableName, String whereClause, String[] whereArgs,
 	Map<String, Long> fieldUpdates) {
+		String versionColumn = optimisticTables.get(tableName);
+		if (versionColumn != null) {
+			return updateMultipleFieldsOptimistic(tableName, versionColumn, whereClause, whereArgs, fieldUpdates);
+		}
 		return dbManager.executeWithConnection(db -> {
 			try {
 				log(DBCipherManager.LogLevel.DEBUG,
@@ -261,67 +377,365 @@ public class NumericFieldUpdater {
 		}
 	}
 	
+	// ==================== 乐观锁更新实现 ====================
+	
+	/**
+	* 乐观锁单字段更新：在事务外读取值和版本号，只把带版本条件的写回和去重记录放在短事务中，
+	* 写回未命中（版本已变化）时退避后重新读取
+	* @return 更新后的值，-1表示失败（含溢出），-2表示数值不足，-3表示重试耗尽仍冲突
+	*/
+	private long updateFieldOptimistic(String tableName, String versionColumn, String whereClause,
+	String[] whereArgs, String fieldName, long delta, String operationId) {
+		int maxRetries = optimisticMaxRetries;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0 && !backoff(attempt)) {
+				return -1L;
+			}
+			long result = dbManager.executeWithConnection(db -> {
+				try {
+					if (operationId != null) {
+						String recorded = idempotencyStore.lookup(db, operationId);
+						if (recorded != null) {
+							return Long.parseLong(recorded);
+						}
+					}
+					long[] current = readValueAndVersion(db, tableName, versionColumn, whereClause, whereArgs, fieldName);
+					if (current == null) {
+						log(DBCipherManager.LogLevel.ERROR, "未找到匹配的记录", null);
+						return -1L;
+					}
+					if (delta < 0 && current[0] < Math.abs(delta)) {
+						log(DBCipherManager.LogLevel.ERROR,
+						"数值不足: " + fieldName + "=" + current[0] + ", 尝试减少: " + Math.abs(delta), null);
+						return -2L;
+					}
+					long newValue = Math.addExact(current[0], delta);
+					Map<String, Long> values = new HashMap<>();
+					values.put(fieldName, newValue);
+					
+					// 事务保证条件命中多行时整体回滚，并让去重记录与写入一起提交
+					db.beginTransaction();
+					try {
+						if (operationId != null) {
+							// 读取之后同一操作可能已由其他写入者提交
+							String recorded = idempotencyStore.lookup(db, operationId);
+							if (recorded != null) {
+								db.setTransactionSuccessful();
+								return Long.parseLong(recorded);
+							}
+						}
+						int updated = updateWithVersion(db, tableName, versionColumn, whereClause, whereArgs, values, current[1]);
+						if (updated == 0) {
+							return VERSION_CONFLICT;
+						}
+						if (updated > 1) {
+							log(DBCipherManager.LogLevel.ERROR,
+							"更新异常，影响行数: " + updated + "，预期为1行，条件: " + whereClause, null);
+							return -1L;
+						}
+						if (operationId != null) {
+							idempotencyStore.record(db, operationId, String.valueOf(newValue));
+						}
+						db.setTransactionSuccessful();
+						return newValue;
+					} finally {
+						db.endTransaction();
+					}
+				} catch (ArithmeticException e) {
+					log(DBCipherManager.LogLevel.ERROR,
+					"数值溢出: " + fieldName + ", 变化量: " + delta + ", 条件: " + whereClause, null);
+					return -1L;
+				} catch (Exception e) {
+					log(DBCipherManager.LogLevel.ERROR,
+					"乐观锁更新字段时发生异常: " + fieldName + ", 条件: " + whereClause, e);
+					return -1L;
+				}
+			});
+			if (result != VERSION_CONFLICT) {
+				return result;
+			}
+			log(DBCipherManager.LogLevel.DEBUG,
+			"版本冲突，准备重试(" + (attempt + 1) + "/" + maxRetries + "): " + tableName + "." + fieldName, null);
+		}
+		log(DBCipherManager.LogLevel.ERROR,
+		"乐观锁重试耗尽: " + tableName + "." + fieldName + ", 条件: " + whereClause, null);
+		return -3L;
+	}
+	
+	/**
+	* 乐观锁多字段更新（读取在事务外，写回在短事务中）
+	*/
+	private boolean updateMultipleFieldsOptimistic(String tableName, String versionColumn, String whereClause,
+	String[] whereArgs, Map<String, Long> fieldUpdates) {
+		int maxRetries = optimisticMaxRetries;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0 && !backoff(attempt)) {
+				return false;
+			}
+			long result = dbManager.executeWithConnection(db -> {
+				try {
+					List<String> fields = new ArrayList<>(fieldUpdates.keySet());
+					fields.add(versionColumn);
+					Map<String, Long> currentValues = getCurrentValues(db, tableName, whereClause, whereArgs, fields);
+					if (currentValues == null) {
+						return -1L;
+					}
+					
+					Map<String, Long> values = new HashMap<>();
+					for (Map.Entry<String, Long> entry : fieldUpdates.entrySet()) {
+						long currentValue = currentValues.get(entry.getKey());
+						long delta = entry.getValue();
+						if (delta < 0 && currentValue < Math.abs(delta)) {
+							log(DBCipherManager.LogLevel.ERROR,
+							"数值不足: " + entry.getKey() + "=" + currentValue, null);
+							return -2L;
+						}
+						values.put(entry.getKey(), Math.addExact(currentValue, delta));
+					}
+					
+					db.beginTransaction();
+					try {
+						int updated = updateWithVersion(db, tableName, versionColumn, whereClause, whereArgs,
+						values, currentValues.get(versionColumn));
+						if (updated == 0) {
+							return VERSION_CONFLICT;
+						}
+						if (updated > 1) {
+							log(DBCipherManager.LogLevel.ERROR,
+							"更新异常，影响行数: " + updated + "，预期为1行，条件: " + whereClause, null);
+							return -1L;
+						}
+						db.setTransactionSuccessful();
+						return 1L;
+					} finally {
+						db.endTransaction();
+					}
+				} catch (ArithmeticException e) {
+					log(DBCipherManager.LogLevel.ERROR, "数值溢出，条件: " + whereClause, null);
+					return -1L;
+				} catch (Exception e) {
+					log(DBCipherManager.LogLevel.ERROR, "乐观锁多字段更新时发生异常", e);
+					return -1L;
+				}
+			});
+			if (result != VERSION_CONFLICT) {
+				if (result == 1L) {
+					log(DBCipherManager.LogLevel.INFO,
+					"多字段更新成功: " + fieldUpdates.size() + "个字段", null);
+				}
+				return result == 1L;
+			}
+			log(DBCipherManager.LogLevel.DEBUG,
+			"版本冲突，准备重试(" + (attempt + 1) + "/" + maxRetries + "): " + tableName, null);
+		}
+		log(DBCipherManager.LogLevel.ERROR, "乐观锁重试耗尽: " + tableName + ", 条件: " + whereClause, null);
+		return false;
+	}
+	
+	/**
+	* 读取字段值和版本号
+	* @return [值, 版本号]，未找到记录返回null
+	*/
+	private long[] readValueAndVersion(SQLiteDatabase db, String tableName, String versionColumn,
+	String whereClause, String[] whereArgs, String fieldName) {
+		String sql = "SELECT " + fieldName + ", " + versionColumn + " FROM " + tableName;
+		if (whereClause != null && !whereClause.trim().isEmpty()) {
+			sql += " WHERE " + whereClause;
+		}
+		sql += " LIMIT 1";
+		
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery(sql, whereArgs);
+			if (cursor != null && cursor.moveToFirst()) {
+				return new long[]{cursor.getLong(0), cursor.getLong(1)};
+			}
+			return null;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
+	/**
+	* 带版本条件的更新，成功时版本号加1
+	* @return 影响的行数，0表示版本已变化
+	*/
+	private int updateWithVersion(SQLiteDatabase db, String tableName, String versionColumn,
+	String whereClause, String[] whereArgs, Map<String, Long> values, long expectedVersion) {
+		StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+		for (String field : values.keySet()) {
+			sql.append(field).append(" = ?, ");
+		}
+		sql.append(versionColumn).append(" = ").append(versionColumn).append(" + 1 WHERE ");
+		if (whereClause != null && !whereClause.trim().isEmpty()) {
+			sql.append("(").append(whereClause).append(") AND ");
+		}
+		sql.append(versionColumn).append(" = ?");
+		
+		SQLiteStatement statement = db.compileStatement(sql.toString());
+		try {
+			int index = 1;
+			for (Long value : values.values()) {
+				statement.bindLong(index++, value);
+			}
+			if (whereArgs != null) {
+				for (String arg : whereArgs) {
+					if (arg == null) {
+						statement.bindNull(index++);
+					} else {
+						statement.bindString(index++, arg);
+					}
+				}
+			}
+			statement.bindLong(index, expectedVersion);
+			return statement.executeUpdateDelete();
+		} finally {
+			statement.close();
+		}
+	}
+	
+	/**
+	* 指数退避 + 随机抖动，避免多个写入者同步重试
+	* @return false表示线程被中断
+	*/
+	private boolean backoff(int attempt) {
+		long delay = Math.min(optimisticMaxBackoffMs, optimisticBaseBackoffMs << Math.min(attempt - 1, 20));
+		long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+		try {
+			Thread.sleep(jittered);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log(DBCipherManager.LogLevel.WARN, "乐观锁重试等待被中断", e);
+			return false;
+		}
+	}
+	
 	/**
 	* 批量更新数值字段（事务内原子操作）
+	* 乐观锁表的条目在事务外读取值和版本号，事务内按版本条件写回，任一条目冲突时整批回滚并退避重试；
+	* 同一行的多个条目需使用相同的条件
 	* @param updates 更新列表
 	* @return 是否全部成功
 	*/
 	public boolean batchUpdate(List<FieldUpdate> updates) {
-		return dbManager.executeWithConnection(db -> {
+		int maxRetries = optimisticMaxRetries;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0 && !backoff(attempt)) {
+				return false;
+			}
+			long result = dbManager.executeWithConnection(db -> batchUpdateOnce(db, updates));
+			if (result != VERSION_CONFLICT) {
+				return result == 1L;
+			}
+			log(DBCipherManager.LogLevel.DEBUG,
+			"批量更新版本冲突，准备重试(" + (attempt + 1) + "/" + maxRetries + ")", null);
+		}
+		log(DBCipherManager.LogLevel.ERROR, "批量更新乐观锁重试耗尽: " + updates.size() + "条记录", null);
+		return false;
+	}
+	
+	/**
+	* 执行一次批量更新
+	* @return 1表示成功，-1表示失败，VERSION_CONFLICT表示乐观锁表版本已变化
+	*/
+	private long batchUpdateOnce(SQLiteDatabase db, List<FieldUpdate> updates) {
+		try {
+			log(DBCipherManager.LogLevel.DEBUG,
+			"开始批量更新: " + updates.size() + "条记录", null);
+			
+			// 乐观锁表：行 -> 预期版本号，行+字段 -> 当前值（事务内随已写入的条目推进）
+			Map<String, Long> rowVersions = new HashMap<>();
+			Map<String, Long> fieldValues = new HashMap<>();
+			for (FieldUpdate update : updates) {
+				String versionColumn = optimisticTables.get(update.tableName);
+				String fieldKey = update.rowKey() + "\u0000" + update.fieldName;
+				if (versionColumn == null || fieldValues.containsKey(fieldKey)) {
+					continue;
+				}
+				long[] current = readValueAndVersion(db, update.tableName, versionColumn,
+				update.whereClause, update.whereArgs, update.fieldName);
+				if (current == null) {
+					log(DBCipherManager.LogLevel.ERROR, "未找到匹配的记录: " + update, null);
+					return -1L;
+				}
+				Long version = rowVersions.putIfAbsent(update.rowKey(), current[1]);
+				if (version != null && version != current[1]) {
+					// 两次读取之间该行已被修改
+					return VERSION_CONFLICT;
+				}
+				fieldValues.put(fieldKey, current[0]);
+			}
+			
+			db.beginTransaction();
 			try {
-				log(DBCipherManager.LogLevel.DEBUG,
-				"开始批量更新: " + updates.size() + "条记录", null);
-				
-				db.beginTransaction();
-				
 				for (FieldUpdate update : updates) {
+					String versionColumn = optimisticTables.get(update.tableName);
+					String fieldKey = update.rowKey() + "\u0000" + update.fieldName;
+					
 					// 获取当前值
-					long currentValue = getCurrentValue(db, update.tableName,
-					update.whereClause, update.whereArgs, update.fieldName);
-					if (currentValue == -1) {
-						return false;
+					long currentValue;
+					if (versionColumn != null) {
+						currentValue = fieldValues.get(fieldKey);
+					} else {
+						currentValue = getCurrentValue(db, update.tableName,
+						update.whereClause, update.whereArgs, update.fieldName);
+						if (currentValue == -1) {
+							return -1L;
+						}
 					}
 					
 					// 检查减量操作
 					if (update.delta < 0 && currentValue < Math.abs(update.delta)) {
 						log(DBCipherManager.LogLevel.ERROR,
 						"数值不足: " + update.fieldName + "=" + currentValue, null);
-						return false;
+						return -1L;
 					}
 					
 					// 计算新值
-					long newValue = currentValue + update.delta;
+					long newValue = Math.addExact(currentValue, update.delta);
 					
 					// 执行更新
-					ContentValues values = new ContentValues();
-					values.put(update.fieldName, newValue);
-					
-					int updated = db.update(
-					update.tableName,
-					values,
-					update.whereClause,
-					update.whereArgs
-					);
+					int updated;
+					if (versionColumn != null) {
+						Map<String, Long> values = new HashMap<>();
+						values.put(update.fieldName, newValue);
+						long expectedVersion = rowVersions.get(update.rowKey());
+						updated = updateWithVersion(db, update.tableName, versionColumn,
+						update.whereClause, update.whereArgs, values, expectedVersion);
+						if (updated == 0) {
+							return VERSION_CONFLICT;
+						}
+						rowVersions.put(update.rowKey(), expectedVersion + 1);
+						fieldValues.put(fieldKey, newValue);
+					} else {
+						ContentValues values = new ContentValues();
+						values.put(update.fieldName, newValue);
+						updated = db.update(update.tableName, values, update.whereClause, update.whereArgs);
+					}
 					
 					if (updated != 1) {
 						log(DBCipherManager.LogLevel.ERROR,
-						"更新失败: " + update, null);
-						return false;
+						"更新失败，影响行数: " + updated + ": " + update, null);
+						return -1L;
 					}
 				}
 				
 				db.setTransactionSuccessful();
 				log(DBCipherManager.LogLevel.INFO,
 				"批量更新成功: " + updates.size() + "条记录", null);
-				return true;
-			} catch (Exception e) {
-				log(DBCipherManager.LogLevel.ERROR,
-				"批量更新失败", e);
-				return false;
+				return 1L;
 			} finally {
 				db.endTransaction();
 			}
-		});
+		} catch (ArithmeticException e) {
+			log(DBCipherManager.LogLevel.ERROR, "批量更新数值溢出", null);
+			return -1L;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR,
+			"批量更新失败", e);
+			return -1L;
+		}
 	}
 	
 	/**
@@ -343,6 +757,13 @@ public class NumericFieldUpdater {
 			this.delta = delta;
 		}
 		
+		/**
+		* 同一行的标识（表名 + 条件 + 参数）
+		*/
+		String rowKey() {
+			return tableName + "\u0000" + whereClause + "\u0000" + Arrays.toString(whereArgs);
+		}
+		
 		@Override
 		public String toString() {
 			return tableName + "." + fieldName + "(" + whereClause + "): " + (delta >= 0 ? "+" : "") + delta;
@@ -0,0 +1,425 @@
+package game.core;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* 限频进度跟踪器
+* 通过 asExportListener / asImportListener / asBackupListener 传给导出、导入和备份操作；逐行/逐批的回调只在内部累计，
+* 按时间间隔或百分比步长合并后才通知 Listener，避免把每一行都投递到主线程。
+* 累计已处理行数、字节数，并根据已用时间估算剩余时间；持有的取消令牌被取消后，正在执行的操作在下一批次前停止
+*
+* 用法：
+* <pre>
+* ProgressTracker tracker = new ProgressTracker(progress -&gt; runOnUiThread(() -&gt; show(progress)));
+* tracker.begin("导出");
+* boolean ok = utilManager.exportDatabaseToJsonStream(writer, tracker.asExportListener());
+* tracker.finish();
+* </pre>
+*
+* 线程安全（并行导出时可被多个工作线程同时回调）；Listener 在产生进度的线程上调用
+*/
+public class ProgressTracker {
+	private static final String TAG = "ProgressTracker";
+	
+	/**
+	* 进度回调
+	*/
+	public interface Listener {
+		void onProgress(Progress progress);
+	}
+	
+	/**
+	* 某一时刻的进度快照（不可变）
+	*/
+	public static class Progress {
+		private final String operation;
+		private final String stage;
+		private final long rowsDone;
+		private final long totalRows;
+		private final long bytesDone;
+		private final long elapsedMillis;
+		private final boolean finished;
+		private final boolean cancelled;
+		
+		Progress(String operation, String stage, long rowsDone, long totalRows, long bytesDone,
+		long elapsedMillis, boolean finished, boolean cancelled) {
+			this.operation = operation;
+			this.stage = stage;
+			this.rowsDone = rowsDone;
+			this.totalRows = totalRows;
+			this.bytesDone = bytesDone;
+			this.elapsedMillis = elapsedMillis;
+			this.finished = finished;
+			this.cancelled = cancelled;
+		}
+		
+		/**
+		* 操作名称（begin 时传入）
+		*/
+		public String getOperation() {
+			return operation;
+		}
+		
+		/**
+		* 当前阶段，通常为正在处理的表名
+		*/
+		public String getStage() {
+			return stage;
+		}
+		
+		public long getRowsDone() {
+			return rowsDone;
+		}
+		
+		/**
+		* 总行数，0表示未知
+		*/
+		public long getTotalRows() {
+			return totalRows;
+		}
+		
+		public long getBytesDone() {
+			return bytesDone;
+		}
+		
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+		
+		/**
+		* 完成百分比（0-100），总行数未知时返回-1
+		*/
+		public int getPercent() {
+			if (totalRows <= 0) {
+				return finished ? 100 : -1;
+			}
+			return (int) Math.min(100, rowsDone * 100 / totalRows);
+		}
+		
+		/**
+		* 预计剩余时间（毫秒），无法估算时返回-1
+		*/
+		public long getEtaMillis() {
+			if (finished) {
+				return 0;
+			}
+			if (totalRows <= 0 || rowsDone <= 0) {
+				return -1;
+			}
+			if (rowsDone >= totalRows) {
+				return 0;
+			}
+			return (long) (elapsedMillis * (double) (totalRows - rowsDone) / rowsDone);
+		}
+		
+		public long getRowsPerSecond() {
+			return elapsedMillis > 0 ? rowsDone * 1000 / elapsedMillis : 0;
+		}
+		
+		public boolean isFinished() {
+			return finished;
+		}
+		
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+	
+	private final Listener listener;
+	private final CancellationToken token;
+	private volatile long minIntervalNanos = 250_000_000L;
+	private volatile int minPercentStep = 0;
+	
+	private String operation;
+	private String stage;
+	private long startNanos = -1;
+	private long lastEmitNanos;
+	private int lastEmitPercent = -1;
+	private long rowsDone;
+	private long totalRows;
+	private long bytesDone;
+	private boolean finished;
+	
+	public ProgressTracker(Listener listener) {
+		this(listener, new CancellationToken());
+	}
+	
+	/**
+	* @param listener 进度回调（可为null，只用于取消和累计）
+	* @param token 取消令牌，可与其他跟踪器共享
+	*/
+	public ProgressTracker(Listener listener, CancellationToken token) {
+		if (token == null) {
+			throw new IllegalArgumentException("取消令牌不能为空");
+		}
+		this.listener = listener;
+		this.token = token;
+	}
+	
+	// ==================== 配置 ====================
+	
+	/**
+	* 两次通知之间的最小间隔（默认250ms，0表示不按时间通知）
+	*/
+	public ProgressTracker setMinIntervalMillis(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("通知间隔不能为负数");
+		}
+		this.minIntervalNanos = millis * 1_000_000L;
+		return this;
+	}
+	
+	/**
+	* 百分比每前进多少就通知一次（默认0，不按百分比通知；总行数未知时不生效）
+	*/
+	public ProgressTracker setMinPercentStep(int percent) {
+		if (percent < 0 || percent > 100) {
+			throw new IllegalArgumentException("百分比步长必须在0-100之间");
+		}
+		this.minPercentStep = percent;
+		return this;
+	}
+	
+	public CancellationToken getCancellationToken() {
+		return token;
+	}
+	
+	public void cancel() {
+		token.cancel();
+	}
+	
+	// ==================== 进度上报 ====================
+	
+	/**
+	* 开始一个新操作（重置计数并立即通知一次）
+	*/
+	public void begin(String operation) {
+		begin(operation, 0);
+	}
+	
+	public void begin(String operation, long totalRows) {
+		synchronized (this) {
+			this.operation = operation;
+			this.stage = null;
+			this.startNanos = System.nanoTime();
+			this.lastEmitPercent = -1;
+			this.rowsDone = 0;
+			this.totalRows = Math.max(totalRows, 0);
+			this.bytesDone = 0;
+			this.finished = false;
+		}
+		emit(true);
+	}
+	
+	/**
+	* 结束当前操作（立即通知一次，isFinished() 为 true）
+	*/
+	public void finish() {
+		synchronized (this) {
+			ensureStarted();
+			finished = true;
+		}
+		emit(true);
+	}
+	
+	public void setStage(String stage) {
+		synchronized (this) {
+			this.stage = stage;
+		}
+		emit(false);
+	}
+	
+	public void addTotalRows(long rows) {
+		synchronized (this) {
+			totalRows += rows;
+		}
+	}
+	
+	public void addRows(long rows) {
+		synchronized (this) {
+			rowsDone += rows;
+		}
+		emit(false);
+	}
+	
+	public void addBytes(long bytes) {
+		synchronized (this) {
+			bytesDone += bytes;
+		}
+		emit(false);
+	}
+	
+	/**
+	* 包装输出流，写入的字节数计入进度（不改变数据）
+	*/
+	public OutputStream countBytes(OutputStream out) {
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				addBytesSilently(1);
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				addBytesSilently(len);
+			}
+		};
+	}
+	
+	/**
+	* 当前进度快照
+	*/
+	public synchronized Progress snapshot() {
+		ensureStarted();
+		return new Progress(operation, stage, rowsDone, totalRows, bytesDone,
+		(System.nanoTime() - startNanos) / 1_000_000L, finished, token.isCancelled());
+	}
+	
+	// ==================== 监听接口适配 ====================
+	
+	/**
+	* 作为导出监听器使用（逐行回调只累计，按限频规则通知）
+	*/
+	public SqlUtilManager.ExportProgressListener asExportListener() {
+		return new SqlUtilManager.ExportProgressListener() {
+			@Override
+			public void onTableStart(String tableName, int tableIndex, int totalTables) {
+				setStage(tableName);
+			}
+			
+			@Override
+			public void onTableSizeDetermined(String tableName, int rowCount) {
+				addTotalRows(rowCount);
+			}
+			
+			@Override
+			public void onRowProcessed(String tableName, int rowIndex, int totalRows) {
+				addRows(1);
+			}
+			
+			@Override
+			public void onTableComplete(String tableName, int tableIndex, int totalTables) {
+				emit(false);
+			}
+			
+			@Override
+			public boolean isCancelled() {
+				return token.isCancelled();
+			}
+		};
+	}
+	
+	/**
+	* 作为导入监听器使用（每表的累计行数换算成总行数）
+	*/
+	public SqlUtilManager.ImportProgressListener asImportListener() {
+		return new SqlUtilManager.ImportProgressListener() {
+			private long tableRows;
+			
+			@Override
+			public void onTableStart(String tableName, int tableIndex) {
+				tableRows = 0;
+				setStage(tableName);
+			}
+			
+			@Override
+			public void onBatchCommitted(String tableName, int importedRows) {
+				addTableRows(importedRows);
+			}
+			
+			@Override
+			public void onTableComplete(String tableName, int tableIndex, int importedRows) {
+				addTableRows(importedRows);
+			}
+			
+			@Override
+			public boolean isCancelled() {
+				return token.isCancelled();
+			}
+			
+			private void addTableRows(int importedRows) {
+				if (importedRows > tableRows) {
+					addRows(importedRows - tableRows);
+					tableRows = importedRows;
+				}
+			}
+		};
+	}
+	
+	/**
+	* 作为备份监听器使用（备份回调给出的是累计行数和快照总行数）
+	*/
+	public BackupManager.BackupProgressListener asBackupListener() {
+		return new BackupManager.BackupProgressListener() {
+			@Override
+			public void onProgress(String tableName, long copiedRows, long totalRows) {
+				synchronized (ProgressTracker.this) {
+					stage = tableName;
+					rowsDone = copiedRows;
+					ProgressTracker.this.totalRows = totalRows;
+				}
+				emit(false);
+			}
+			
+			@Override
+			public boolean isCancelled() {
+				return token.isCancelled();
+			}
+		};
+	}
+	
+	public boolean isCancelled() {
+		return token.isCancelled();
+	}
+	
+	// ==================== 内部方法 ====================
+	
+	private synchronized void addBytesSilently(long bytes) {
+		bytesDone += bytes;
+	}
+	
+	private void ensureStarted() {
+		if (startNanos < 0) {
+			startNanos = System.nanoTime();
+		}
+	}
+	
+	/**
+	* 到达时间间隔或百分比步长时通知（force 时总是通知）
+	*/
+	private void emit(boolean force) {
+		if (listener == null) {
+			return;
+		}
+		Progress progress;
+		synchronized (this) {
+			ensureStarted();
+			long now = System.nanoTime();
+			int percent = totalRows > 0 ? (int) Math.min(100, rowsDone * 100 / totalRows) : -1;
+			boolean due = force;
+			if (!due && minIntervalNanos > 0 && now - lastEmitNanos >= minIntervalNanos) {
+				due = true;
+			}
+			int step = minPercentStep;
+			if (!due && step > 0 && percent >= 0 && percent - lastEmitPercent >= step) {
+				due = true;
+			}
+			if (!due) {
+				return;
+			}
+			lastEmitNanos = now;
+			lastEmitPercent = percent;
+			progress = new Progress(operation, stage, rowsDone, totalRows, bytesDone,
+			(now - startNanos) / 1_000_000L, finished, token.isCancelled());
+		}
+		try {
+			listener.onProgress(progress);
+		} catch (Exception e) {
+			DBCipherManager.log(DBCipherManager.LogLevel.WARN, TAG, "进度回调异常", e);
+		}
+	}
+}
@@ -2,24 +2,61 @@ package game.core;
 
 import android.content.ContentValues;
 import android.util.Base64;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 import net.sqlcipher.Cursor;
 import net.sqlcipher.database.SQLiteDatabase;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import game.util.AesGcmOutputStream;
+import game.util.CompressedOutputStream;
+import game.util.CompressionUtils;
 
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 /**
 * SQL工具管理器 - 提供JSON转换和数据导入导出功能
@@ -29,6 +66,16 @@ public class SqlUtilManager {
 	private static final String TAG = "SqlUtilManager";
 	private final DBCipherManager dbManager;
 	private final TableManager mTableManager;
+	// 非流式导出的内存预算（按预估的堆占用计算），超出时导出结果写入临时文件
+	private volatile long jsonMemoryBudget = 16L * 1024 * 1024;
+	// 超过该大小的 BLOB 在流式导出时按窗口读取，不经过游标
+	private static final int LARGE_BLOB_THRESHOLD = 256 * 1024;
+	// 不参与整库导出和导入的临时簿记表（可重建或只对本机有意义）；流水账本等其他表照常导出
+	private static final Set<String> TRANSIENT_TABLES = new HashSet<>(Arrays.asList(
+	TransferCheckpoint.CHECKPOINT_TABLE, IdempotencyStore.OPERATION_LOG_TABLE,
+	ChangeTracker.CHANGE_LOG_TABLE, ChangeTracker.TRACKED_TABLE));
+	// 物化统计表（__numeric_stats、__numeric_stats_def）可由原表重建
+	private static final String STATS_TABLE_PREFIX = MaterializedStats.STATS_TABLE;
 	public SqlUtilManager(DBCipherManager dbManager) {
 		this.dbManager = dbManager;
 		this.mTableManager=dbManager.getTableManager();
@@ -43,7 +90,20 @@ public class SqlUtilManager {
 	* @return 是否成功导出
 	*/
 	public boolean exportDatabaseToJsonStream(Writer writer, ExportProgressListener progressListener) {
-		return dbManager.executeWithConnection(db -> {
+		return exportDatabaseToJsonStream(writer, null, progressListener);
+	}
+	
+	/**
+	* 按导出规格流式导出数据库到JSON格式（输出格式与全量导出相同，只包含选中的表、列和行）
+	* 表的列投影、WHERE 条件和行数上限直接下推到查询语句，有索引时只读取需要的页
+	* @param writer 输出写入器
+	* @param spec 导出规格，null表示导出全部
+	* @param progressListener 进度监听器（可选）
+	* @return 是否成功导出
+	*/
+	public boolean exportDatabaseToJsonStream(Writer writer, ExportSpec spec, ExportProgressListener progressListener) {
+		// 所有表在同一个读快照中导出，导出期间的并发写入不会造成表之间数据时刻不一致
+		return dbManager.executeInReadSnapshot(db -> {
 			log(DBCipherManager.LogLevel.INFO, "开始流式导出整个数据库为JSON格式", null);
 			
 			try {
@@ -53,40 +113,55 @@ public class SqlUtilManager {
 				}
 				
 				List<String> tableNames = getAllTableNames(db);
+				if (spec != null) {
+					if (spec.getIncludedTables() != null) {
+						for (String included : spec.getIncludedTables()) {
+							if (!tableNames.contains(included)) {
+								log(DBCipherManager.LogLevel.WARN, "导出规格中的表不存在，已忽略: " + included, null);
+							}
+						}
+					}
+					tableNames = spec.selectTables(tableNames);
+				}
 				int totalTables = tableNames.size();
+				JsonStreamWriter json = new JsonStreamWriter(writer);
 				
 				// 开始写入JSON对象
-				writer.write("{");
+				json.write("{");
 				
 				// 写入元数据
-				writer.write("\"database_name\":\"" + escapeJsonString(dbManager.getDatabaseName()) + "\",");
-				writer.write("\"export_time\":" + System.currentTimeMillis() + ",");
-				writer.write("\"table_count\":" + totalTables + ",");
-				writer.write("\"tables\":{");
+				json.writeName("database_name");
+				json.writeString(dbManager.getDatabaseName());
+				json.write(",\"export_time\":");
+				json.writeLong(System.currentTimeMillis());
+				json.write(",\"table_count\":");
+				json.writeLong(totalTables);
+				json.write(",\"tables\":{");
 				
 				// 导出每个表
 				int tableIndex = 0;
 				for (String tableName : tableNames) {
 					if (progressListener != null) {
 						progressListener.onTableStart(tableName, tableIndex, totalTables);
+						checkCancelled(progressListener);
 					}
 					
 					log(DBCipherManager.LogLevel.DEBUG, "正在流式导出表: " + tableName, null);
 					
 					// 写入表名
-					writer.write("\"" + escapeJsonString(tableName) + "\":");
+					json.writeName(tableName);
 					
 					// 导出表数据
-					boolean success = exportTableToJsonStream(db, tableName, writer, progressListener);
+					int exportedRows = exportTableToJsonStream(db, tableName, spec, json, progressListener);
 					
-					if (!success) {
+					if (exportedRows < 0) {
 						log(DBCipherManager.LogLevel.ERROR, "导出表失败: " + tableName, null);
 						return false;
 					}
 					
 					// 如果不是最后一个表，添加逗号
 					if (tableIndex < totalTables - 1) {
-						writer.write(",");
+						json.write(",");
 					}
 					
 					if (progressListener != null) {
@@ -97,8 +172,8 @@ public class SqlUtilManager {
 				}
 				
 				// 结束JSON对象
-				writer.write("}}");
-				writer.flush();
+				json.write("}}");
+				json.flush();
 				
 				log(DBCipherManager.LogLevel.INFO, "数据库流式导出完成，共导出 " + totalTables + " 个表", null);
 				return true;
@@ -114,24 +189,36 @@ public class SqlUtilManager {
 	* 流式导出单个表的数据
 	* @param db 数据库连接
 	* @param tableName 表名
+	* @param spec 导出规格，null表示全部列和全部行
 	* @param writer 输出写入器
 	* @param progressListener 进度监听器
-	* @return 是否成功导出
+	* @return 导出的行数，-1表示导出失败
 	*/
-	private boolean exportTableToJsonStream(SQLiteDatabase db, String tableName, Writer writer,
+	private int exportTableToJsonStream(SQLiteDatabase db, String tableName, ExportSpec spec, JsonStreamWriter writer,
 	ExportProgressListener progressListener) {
 		Cursor cursor = null;
+		int rowCount = 0;
 		
 		try {
-			// 获取表结构信息
-			List<Map<String, String>> tableStructure = mTableManager.getTableStructure(tableName);
-			int columnCount = tableStructure.size();
-			
-			cursor = db.query(tableName, null, null, null, null, null, null);
+			String[] columns = spec != null ? spec.getColumns(tableName) : null;
+			// 大 BLOB 不随游标读出，写入时再按窗口读取
+			String[] projection = buildBlobAwareProjection(db, tableName, columns);
+			if (projection != null) {
+				columns = projection;
+			}
+			if (spec == null) {
+				cursor = db.query(tableName, columns, null, null, null, null, null);
+			} else {
+				int limit = spec.getLimit(tableName);
+				cursor = db.query(tableName, columns, spec.getSelection(tableName),
+				spec.getSelectionArgs(tableName), null, null, null, limit > 0 ? String.valueOf(limit) : null);
+			}
 			
 			if (cursor != null) {
-				int rowCount = cursor.getCount();
+				rowCount = cursor.getCount();
+				// 列信息直接取自同一连接上的查询结果（不含末尾的 rowid 和大 BLOB 掩码列）
 				String[] columnNames = cursor.getColumnNames();
+				int columnCount = projection != null ? columnNames.length - 2 : columnNames.length;
 				
 				if (progressListener != null) {
 					progressListener.onTableSizeDetermined(tableName, rowCount);
@@ -140,17 +227,16 @@ public class SqlUtilManager {
 				// 单行单列：直接写入单个值
 				if (rowCount == 1 && columnCount == 1) {
 					cursor.moveToFirst();
-					Object value = getValueFromCursor(cursor, 0);
-					writeJsonValue(writer, value);
+					writeExportValue(db, tableName, cursor, columnNames, 0, columnCount, writer);
 				}
 				// 单行多列：写入JSONObject
 				else if (rowCount == 1 && columnCount > 1) {
 					cursor.moveToFirst();
 					writer.write("{");
-					for (int i = 0; i < columnNames.length; i++) {
+					for (int i = 0; i < columnCount; i++) {
 						if (i > 0) writer.write(",");
-						writer.write("\"" + escapeJsonString(columnNames[i]) + "\":");
-						writeJsonValue(writer, getValueFromCursor(cursor, i));
+						writer.writeName(columnNames[i]);
+						writeExportValue(db, tableName, cursor, columnNames, i, columnCount, writer);
 					}
 					writer.write("}");
 				}
@@ -163,21 +249,22 @@ public class SqlUtilManager {
 						
 						// 单列：直接写入值
 						if (columnCount == 1) {
-							writeJsonValue(writer, getValueFromCursor(cursor, 0));
+							writeExportValue(db, tableName, cursor, columnNames, 0, columnCount, writer);
 						}
 						// 多列：写入JSONObject
 						else {
 							writer.write("{");
-							for (int i = 0; i < columnNames.length; i++) {
+							for (int i = 0; i < columnCount; i++) {
 								if (i > 0) writer.write(",");
-								writer.write("\"" + escapeJsonString(columnNames[i]) + "\":");
-								writeJsonValue(writer, getValueFromCursor(cursor, i));
+								writer.writeName(columnNames[i]);
+								writeExportValue(db, tableName, cursor, columnNames, i, columnCount, writer);
 							}
 							writer.write("}");
 						}
 						
 						if (progressListener != null) {
 							progressListener.onRowProcessed(tableName, rowIndex, rowCount);
+							checkCancelled(progressListener);
 						}
 						
 						rowIndex++;
@@ -187,66 +274,356 @@ public class SqlUtilManager {
 			}
 			
 			log(DBCipherManager.LogLevel.DEBUG, "表 '" + tableName + "' 数据流式导出完成", null);
-			return true;
+			return rowCount;
 			
 		} catch (Exception e) {
 			log(DBCipherManager.LogLevel.ERROR, "流式导出表 '" + tableName + "' 为JSON时发生异常", e);
-			return false;
+			return -1;
 		} finally {
 			if (cursor != null) cursor.close();
 		}
 	}
 	
+	/**
+	* 构建导出查询的列：超过 LARGE_BLOB_THRESHOLD 的 BLOB 在结果中替换为 NULL，
+	* 末尾追加 rowid 和标记这些列的位掩码，写入时再用 BlobInputStream 按窗口读取，整个值不进入 Java 堆
+	* @param columns 要导出的列，为null时为全部列
+	* @return 列表达式；表没有可用的 rowid 或列数超过掩码位数时返回null（按普通查询导出）
+	*/
+	private String[] buildBlobAwareProjection(SQLiteDatabase db, String tableName, String[] columns) {
+		// 只使用传入的连接（并行导出的工作线程上没有线程本地连接）
+		String sql = queryString(db, "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{tableName});
+		if (sql == null || sql.toUpperCase(Locale.ROOT).replaceAll("\\s+", " ").trim().endsWith("WITHOUT ROWID")) {
+			return null;
+		}
+		String[] allColumns;
+		Cursor probe = db.rawQuery("SELECT * FROM " + BlobInputStream.quote(tableName) + " LIMIT 0", null);
+		try {
+			allColumns = probe.getColumnNames();
+		} finally {
+			probe.close();
+		}
+		for (String column : allColumns) {
+			if ("rowid".equalsIgnoreCase(column) || "oid".equalsIgnoreCase(column) || "_rowid_".equalsIgnoreCase(column)) {
+				return null;
+			}
+		}
+		if (columns == null) {
+			columns = allColumns;
+		}
+		if (columns.length == 0 || columns.length > 62) {
+			return null;
+		}
+		String[] projection = new String[columns.length + 2];
+		StringBuilder mask = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			String column = BlobInputStream.quote(columns[i]);
+			String large = "typeof(" + column + ") = 'blob' AND length(" + column + ") > " + LARGE_BLOB_THRESHOLD;
+			projection[i] = "CASE WHEN " + large + " THEN NULL ELSE " + column + " END AS " + column;
+			if (i > 0) mask.append(" + ");
+			mask.append("(CASE WHEN ").append(large).append(" THEN ").append(1L << i).append(" ELSE 0 END)");
+		}
+		projection[columns.length] = "rowid";
+		projection[columns.length + 1] = mask.toString();
+		return projection;
+	}
+	
+	/**
+	* 写入导出行中的一个值，被标记为大 BLOB 的列按窗口读取后分段编码为 Base64
+	*/
+	private void writeExportValue(SQLiteDatabase db, String tableName, Cursor cursor, String[] columnNames, int index,
+	int columnCount, JsonStreamWriter writer) throws IOException {
+		if (columnCount == columnNames.length || (cursor.getLong(columnCount + 1) >>> index & 1) == 0) {
+			writer.writeCursorValue(cursor, index);
+			return;
+		}
+		BlobInputStream in = BlobInputStream.open(db, tableName, columnNames[index], cursor.getLong(columnCount),
+		BlobInputStream.DEFAULT_WINDOW_SIZE);
+		if (in == null) {
+			throw new IOException("导出过程中行已不存在: " + tableName);
+		}
+		writer.writeBase64(in);
+	}
+	
+	// ==================== 目录导出/导入功能 ====================
+	
+	/**
+	* 目录导出的清单文件名
+	*/
+	public static final String MANIFEST_FILE = "manifest.json";
+	
+	/**
+	* 并行导出整个数据库到目录：每个表一个文件，外加清单文件 manifest.json（行数、字节数、CRC32）
+	* 每个表在独立的只读连接上以读快照导出，由有界线程池并行执行；
+	* 单个表内部数据一致，不同表之间不保证处于同一时刻
+	* @param directory 输出目录（不存在时自动创建）
+	* @param threads 最大并行线程数
+	* @param progressListener 进度监听器（可选，会在工作线程上被并发调用，需线程安全）
+	* @return 是否成功导出（失败时不写入清单文件）
+	*/
+	public boolean exportDatabaseToDirectory(File directory, int threads, ExportProgressListener progressListener) {
+		if (directory == null || threads <= 0) {
+			log(DBCipherManager.LogLevel.ERROR, "导出目录为空或线程数无效", null);
+			return false;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			log(DBCipherManager.LogLevel.ERROR, "无法创建导出目录: " + directory, null);
+			return false;
+		}
+		
+		List<String> tableNames = dbManager.executeInReadSnapshot(this::getAllTableNames);
+		int totalTables = tableNames.size();
+		JSONObject[] entries = new JSONObject[totalTables];
+		log(DBCipherManager.LogLevel.INFO, "开始并行导出数据库到目录: " + directory + "，共 " + totalTables + " 个表", null);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, totalTables)), r -> {
+			Thread thread = new Thread(r, TAG + "-export");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (int i = 0; i < totalTables; i++) {
+				final int tableIndex = i;
+				futures.add(executor.submit(() -> exportTableToFile(directory, tableNames.get(tableIndex),
+				tableIndex, totalTables, entries, progressListener)));
+			}
+			
+			boolean success = true;
+			for (Future<Boolean> future : futures) {
+				if (!future.get()) {
+					success = false;
+				}
+			}
+			if (!success) {
+				log(DBCipherManager.LogLevel.ERROR, "部分表导出失败，未写入清单文件", null);
+				return false;
+			}
+			
+			JSONObject manifest = new JSONObject();
+			manifest.put("format_version", 1);
+			manifest.put("database_name", dbManager.getDatabaseName());
+			manifest.put("export_time", System.currentTimeMillis());
+			manifest.put("table_count", totalTables);
+			JSONArray tablesJson = new JSONArray();
+			for (JSONObject entry : entries) {
+				tablesJson.put(entry);
+			}
+			manifest.put("tables", tablesJson);
+			
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, MANIFEST_FILE)), StandardCharsets.UTF_8)) {
+				writer.write(manifest.toString());
+			}
+			log(DBCipherManager.LogLevel.INFO, "目录导出完成，共导出 " + totalTables + " 个表", null);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log(DBCipherManager.LogLevel.WARN, "目录导出被中断", null);
+			return false;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "并行导出数据库到目录时发生异常", e);
+			return false;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	* 导出单个表到文件并生成清单条目（在工作线程上执行）
+	*/
+	private boolean exportTableToFile(File directory, String tableName, int tableIndex, int totalTables,
+	JSONObject[] entries, ExportProgressListener progressListener) throws JSONException {
+		// 表名可能包含文件名非法字符，文件名只使用序号
+		String fileName = "table_" + tableIndex + ".json";
+		File file = new File(directory, fileName);
+		CRC32 crc = new CRC32();
+		
+		int rows = dbManager.executeInReadSnapshot(db -> {
+			if (progressListener != null) {
+				progressListener.onTableStart(tableName, tableIndex, totalTables);
+			}
+			int count;
+			try (JsonStreamWriter writer = new JsonStreamWriter(new OutputStreamWriter(
+			new CheckedOutputStream(new FileOutputStream(file), crc), StandardCharsets.UTF_8))) {
+				count = exportTableToJsonStream(db, tableName, null, writer, progressListener);
+			} catch (IOException e) {
+				log(DBCipherManager.LogLevel.ERROR, "写入表文件失败: " + file, e);
+				return -1;
+			}
+			if (count >= 0 && progressListener != null) {
+				progressListener.onTableComplete(tableName, tableIndex, totalTables);
+			}
+			return count;
+		});
+		if (rows < 0) {
+			return false;
+		}
+		
+		JSONObject entry = new JSONObject();
+		entry.put("name", tableName);
+		entry.put("file", fileName);
+		entry.put("rows", rows);
+		entry.put("bytes", file.length());
+		entry.put("crc32", Long.toHexString(crc.getValue()));
+		entries[tableIndex] = entry;
+		return true;
+	}
+	
+	/**
+	* 从 exportDatabaseToDirectory 导出的目录导入整个数据库
+	* 先按清单并行校验所有文件的字节数和CRC32，全部通过后再通过并行解析流水线导入
+	* @param directory 导出目录
+	* @param options 导入选项，为null时使用默认选项（parserThreads 同时作为校验线程数）
+	* @param progressListener 进度监听器（可选）
+	* @return 成功导入的表数量，-1表示清单无效、校验失败或解析失败
+	*/
+	public int importDatabaseFromDirectory(File directory, ImportOptions options, ImportProgressListener progressListener) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		try {
+			JSONObject manifest = new JSONObject(readFileAsString(new File(directory, MANIFEST_FILE)));
+			JSONArray tables = manifest.getJSONArray("tables");
+			if (!verifyDirectoryFiles(directory, tables, importOptions.getParserThreads())) {
+				return -1;
+			}
+			
+			// 拼接为 {"tables":{"表名":文件内容,...}}，文件在读取到时才打开
+			List<Object> parts = new ArrayList<>();
+			parts.add("{\"tables\":{");
+			for (int i = 0; i < tables.length(); i++) {
+				JSONObject entry = tables.getJSONObject(i);
+				parts.add((i > 0 ? "," : "") + "\"" + escapeJsonString(entry.getString("name")) + "\":");
+				parts.add(new File(directory, entry.getString("file")));
+			}
+			parts.add("}}");
+			
+			Enumeration<InputStream> streams = new Enumeration<InputStream>() {
+				private int index = 0;
+				
+				@Override
+				public boolean hasMoreElements() {
+					return index < parts.size();
+				}
+				
+				@Override
+				public InputStream nextElement() {
+					Object part = parts.get(index++);
+					if (part instanceof File) {
+						try {
+							return new FileInputStream((File) part);
+						} catch (FileNotFoundException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+					return new ByteArrayInputStream(((String) part).getBytes(StandardCharsets.UTF_8));
+				}
+			};
+			
+			try (Reader reader = new BufferedReader(new InputStreamReader(new SequenceInputStream(streams), StandardCharsets.UTF_8))) {
+				return importDatabaseFromJsonParallel(reader, importOptions, progressListener);
+			}
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "从目录导入数据库时发生异常: " + directory, e);
+			return -1;
+		}
+	}
+	
+	/**
+	* 并行校验清单中所有文件的字节数和CRC32
+	*/
+	private boolean verifyDirectoryFiles(File directory, JSONArray tables, int threads) throws JSONException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tables.length())), r -> {
+			Thread thread = new Thread(r, TAG + "-verify");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (int i = 0; i < tables.length(); i++) {
+				JSONObject entry = tables.getJSONObject(i);
+				File file = new File(directory, entry.getString("file"));
+				long expectedBytes = entry.getLong("bytes");
+				String expectedCrc = entry.getString("crc32");
+				futures.add(executor.submit(() -> {
+					if (!file.isFile() || file.length() != expectedBytes) {
+						log(DBCipherManager.LogLevel.ERROR, "文件缺失或大小不符: " + file, null);
+						return false;
+					}
+					CRC32 crc = new CRC32();
+					try (InputStream in = new CheckedInputStream(new FileInputStream(file), crc)) {
+						byte[] buffer = new byte[8192];
+						while (in.read(buffer) != -1) {
+							// 读取过程中累计校验和
+						}
+					}
+					if (!expectedCrc.equalsIgnoreCase(Long.toHexString(crc.getValue()))) {
+						log(DBCipherManager.LogLevel.ERROR, "文件校验和不符: " + file, null);
+						return false;
+					}
+					return true;
+				}));
+			}
+			
+			boolean valid = true;
+			for (Future<Boolean> future : futures) {
+				try {
+					if (!future.get()) {
+						valid = false;
+					}
+				} catch (ExecutionException e) {
+					log(DBCipherManager.LogLevel.ERROR, "校验文件时发生异常", e.getCause());
+					valid = false;
+				}
+			}
+			return valid;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static String readFileAsString(File file) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			char[] buffer = new char[4096];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				sb.append(buffer, 0, read);
+			}
+		}
+		return sb.toString();
+	}
+	
 	/**
 	* 将值写入JSON流
 	* @param writer 输出写入器
 	* @param value 要写入的值
 	* @throws IOException 如果写入失败
 	*/
-	private void writeJsonValue(Writer writer, Object value) throws IOException {
+	static void writeJsonValue(Writer writer, Object value) throws IOException {
+		if (writer instanceof JsonStreamWriter) {
+			((JsonStreamWriter) writer).writeValue(value);
+			return;
+		}
 		if (value == null || value == JSONObject.NULL) {
 			writer.write("null");
-		} else if (value instanceof String) {
-			writer.write("\"" + escapeJsonString((String) value) + "\"");
-		} else if (value instanceof Number) {
-			writer.write(value.toString());
-		} else if (value instanceof Boolean) {
+		} else if (value instanceof Number || value instanceof Boolean) {
 			writer.write(value.toString());
-		} else if (value instanceof byte[]) {
-			String base64 = Base64.encodeToString((byte[]) value, Base64.DEFAULT);
-			writer.write("\"" + escapeJsonString(base64) + "\"");
 		} else {
-			writer.write("\"" + escapeJsonString(value.toString()) + "\"");
+			String text = value instanceof byte[]
+			? Base64.encodeToString((byte[]) value, Base64.DEFAULT) : value.toString();
+			writer.write('"');
+			writer.write(JsonStreamWriter.escape(text));
+			writer.write('"');
 		}
 	}
 	
 	/**
-	* 转义JSON字符串中的特殊字符
+	* 转义JSON字符串中的特殊字符（不需要转义时直接返回原字符串）
 	* @param input 原始字符串
 	* @return 转义后的字符串
 	*/
-	private String escapeJsonString(String input) {
+	static String escapeJsonString(String input) {
 		if (input == null) return "";
-		
-		StringBuilder sb = new StringBuilder();
-		for (char c : input.toCharArray()) {
-			switch (c) {
-				case '"': sb.append("\\\""); break;
-				case '\\': sb.append("\\\\"); break;
-				case '\b': sb.append("\\b"); break;
-				case '\f': sb.append("\\f"); break;
-				case '\n': sb.append("\\n"); break;
-				case '\r': sb.append("\\r"); break;
-				case '\t': sb.append("\\t"); break;
-				default:
-				if (c <= '\u001F' || c == '\u007F' || (c >= '\u0080' && c <= '\u009F')) {
-					sb.append(String.format("\\u%04x", (int) c));
-				} else {
-					sb.append(c);
-				}
-			}
-		}
-		return sb.toString();
+		return JsonStreamWriter.escape(input);
 	}
 	
 	// ==================== 进度监听接口 ====================
@@ -285,6 +662,65 @@ public class SqlUtilManager {
 		* @param totalTables 总表数
 		*/
 		void onTableComplete(String tableName, int tableIndex, int totalTables);
+		
+		/**
+		* 是否请求取消；导出在表和行之间检查，返回true后导出按失败结束
+		*/
+		default boolean isCancelled() {
+			return false;
+		}
+	}
+	
+	/**
+	* 导入进度监听器接口
+	*/
+	public interface ImportProgressListener {
+		/**
+		* 开始导入表时调用
+		* @param tableName 表名
+		* @param tableIndex 表索引
+		*/
+		void onTableStart(String tableName, int tableIndex);
+		
+		/**
+		* 每提交一个批次后调用
+		* @param tableName 表名
+		* @param importedRows 该表已导入的行数
+		*/
+		void onBatchCommitted(String tableName, int importedRows);
+		
+		/**
+		* 完成表导入时调用
+		* @param tableName 表名
+		* @param tableIndex 表索引
+		* @param importedRows 该表导入的行数
+		*/
+		void onTableComplete(String tableName, int tableIndex, int importedRows);
+		
+		/**
+		* 是否请求取消；导入在表和批次之间检查，返回true后导入按失败结束（已提交的批次不会回滚）
+		*/
+		default boolean isCancelled() {
+			return false;
+		}
+	}
+	
+	/**
+	* 监听器请求取消时中止当前导出（抛出的异常由各导出方法按失败处理）
+	*/
+	static void checkCancelled(ExportProgressListener listener) throws InterruptedIOException {
+		if (listener != null && listener.isCancelled()) {
+			throw new InterruptedIOException("导出已取消");
+		}
+	}
+	
+	/**
+	* 监听器请求取消时中止当前导入（抛出的异常由各导入方法按失败处理）
+	*/
+	static void checkCancelled(ImportProgressListener listener) throws InterruptedIOException {
+		if (listener != null && listener.isCancelled()) {
+			throw new InterruptedIOException("导入已取消");
+		}
 	}
 	
 	
@@ -394,10 +830,11 @@ public class SqlUtilManager {
 	/**
 	* 将整个数据库导出为JSON格式（表名作为主键）
 	* 格式：{表名: {字段1: 数据, ...}} 或 {表名: [{字段1: 数据, ...}, ...]}
+	* 整个数据库会在堆中构建为对象树，数据量较大时使用 exportDatabaseToJsonHandle
 	* @return 包含所有表数据和元信息的JSONObject
 	*/
 	public JSONObject exportDatabaseToJson() {
-		return dbManager.executeWithConnection(db -> {
+		return dbManager.executeInReadSnapshot(db -> {
 			log(DBCipherManager.LogLevel.INFO, "开始导出整个数据库为JSON格式", null);
 			
 			JSONObject databaseJson = new JSONObject();
@@ -422,12 +859,8 @@ public class SqlUtilManager {
 				for (String tableName : tableNames) {
 					log(DBCipherManager.LogLevel.DEBUG, "正在导出表: " + tableName, null);
 					
-					// 获取表结构信息
-					List<Map<String, String>> tableStructure = mTableManager.getTableStructure(tableName);
-					int columnCount = tableStructure.size();
-					
 					// 导出表数据
-					Object tableData = exportTableToJsonWithConnection(db, tableName, columnCount);
+					Object tableData = exportTableToJsonWithConnection(db, tableName);
 					
 					try {
 						tablesJson.put(tableName, tableData);
@@ -452,7 +885,14 @@ public class SqlUtilManager {
 	}
 	
 	/**
-	* 获取数据库中所有用户表的表名（排除系统表）
+	* 临时簿记表（导入检查点、操作日志、变更日志、物化统计）不参与整库导出和导入
+	*/
+	static boolean isInternalTable(String tableName) {
+		return TRANSIENT_TABLES.contains(tableName) || tableName.startsWith(STATS_TABLE_PREFIX);
+	}
+	
+	/**
+	* 获取数据库中所有用户表的表名（排除系统表和临时簿记表）
 	*/
 	private List<String> getAllTableNames(SQLiteDatabase db) {
 		List<String> tableNames = new ArrayList<>();
@@ -464,6 +904,9 @@ public class SqlUtilManager {
 			
 			while (cursor != null && cursor.moveToNext()) {
 				String tableName = cursor.getString(0);
+				if (isInternalTable(tableName)) {
+					continue;
+				}
 				tableNames.add(tableName);
 				log(DBCipherManager.LogLevel.DEBUG, "发现用户表: " + tableName, null);
 			}
@@ -486,11 +929,7 @@ public class SqlUtilManager {
 			log(DBCipherManager.LogLevel.DEBUG, "导出表为JSON: " + tableName, null);
 			
 			try {
-				// 获取表结构信息
-				List<Map<String, String>> tableStructure = mTableManager.getTableStructure(tableName);
-				int columnCount = tableStructure.size();
-				
-				return exportTableToJsonWithConnection(db, tableName, columnCount);
+				return exportTableToJsonWithConnection(db, tableName);
 			} catch (Exception e) {
 				log(DBCipherManager.LogLevel.ERROR, "导出表为JSON时发生异常", e);
 				return null;
@@ -498,14 +937,164 @@ public class SqlUtilManager {
 		});
 	}
 	
+	// ==================== 内存受限的导出 ====================
+	
+	/**
+	* 每字节存储数据构建为 JSONObject/JSONArray 后的预估堆占用倍数
+	* （UTF-16 字符串、装箱数值、每行一个 HashMap、BLOB 的 Base64 膨胀）
+	*/
+	private static final int JSON_HEAP_FACTOR = 6;
+	
+	/**
+	* 设置非流式导出的内存预算（默认16MB）
+	* 预估的堆占用超过预算时，exportDatabaseToJsonHandle / exportTableToJsonHandle 把结果写入临时文件
+	*/
+	public void setJsonMemoryBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("内存预算不能为负数");
+		}
+		this.jsonMemoryBudget = bytes;
+	}
+	
+	public long getJsonMemoryBudget() {
+		return jsonMemoryBudget;
+	}
+	
+	/**
+	* 导出整个数据库为JSON，预估大小在内存预算内时在内存中构建，否则流式写入临时文件并返回按需解析的句柄
+	* 临时文件以只保存在句柄中的随机密钥加密，不会以明文形式写入磁盘；两种情况下的数据结构与 exportDatabaseToJson 相同
+	* @return 导出句柄（使用完毕需 close），失败返回null
+	*/
+	public JsonExportHandle exportDatabaseToJsonHandle() {
+		return exportDatabaseToJsonHandle(null);
+	}
+	
+	/**
+	* 导出整个数据库为JSON（规则同上），通过进度跟踪器报告进度
+	* 写入临时文件时逐行累计行数和已写入的JSON字节数，取消后在下一行前停止并返回null；
+	* 在内存中构建时（数据量在预算内）只报告开始和结束
+	* @param tracker 进度跟踪器（可选）
+	* @return 导出句柄（使用完毕需 close），失败或已取消返回null
+	*/
+	public JsonExportHandle exportDatabaseToJsonHandle(ProgressTracker tracker) {
+		if (tracker != null) {
+			if (tracker.isCancelled()) {
+				log(DBCipherManager.LogLevel.INFO, "导出已取消", null);
+				return null;
+			}
+			tracker.begin("EXPORT_JSON");
+		}
+		try {
+			Long estimate = dbManager.executeWithConnection(db -> estimateJsonHeapSize(db, getAllTableNames(db)));
+			if (estimate == null || estimate <= jsonMemoryBudget) {
+				return JsonExportHandle.inMemory(exportDatabaseToJson());
+			}
+			log(DBCipherManager.LogLevel.INFO, "预估导出占用 " + estimate + " 字节，超出内存预算，写入临时文件", null);
+			return spillToTempFile(writer -> exportDatabaseToJsonStream(writer,
+			tracker != null ? tracker.asExportListener() : null), tracker);
+		} finally {
+			if (tracker != null) {
+				tracker.finish();
+			}
+		}
+	}
+	
+	/**
+	* 导出单个表为JSON，超出内存预算时写入临时文件（规则同 exportDatabaseToJsonHandle）
+	* @return 导出句柄（使用完毕需 close），失败返回null
+	*/
+	public JsonExportHandle exportTableToJsonHandle(String tableName) {
+		Long estimate = dbManager.executeWithConnection(db -> estimateJsonHeapSize(db, Collections.singletonList(tableName)));
+		if (estimate == null || estimate <= jsonMemoryBudget) {
+			Object value = exportTableToJson(tableName);
+			return value != null ? JsonExportHandle.inMemory(value) : null;
+		}
+		log(DBCipherManager.LogLevel.INFO, "预估导出表 '" + tableName + "' 占用 " + estimate + " 字节，超出内存预算，写入临时文件", null);
+		return spillToTempFile(writer -> {
+			JsonStreamWriter json = new JsonStreamWriter(writer);
+			Integer rows = dbManager.executeInReadSnapshot(db -> exportTableToJsonStream(db, tableName, null, json, null));
+			json.flush();
+			return rows != null && rows >= 0;
+		}, null);
+	}
+	
+	private interface SpillExport {
+		boolean export(Writer writer) throws IOException;
+	}
+	
+	/**
+	* 把导出内容写入临时文件：以随机密钥按 AES-GCM 分块加密，密钥只保存在返回的句柄中，
+	* 明文数据不会落盘，句柄关闭或进程退出后文件无法解密
+	* @param tracker 进度跟踪器（可选），累计写入的明文字节数
+	*/
+	private JsonExportHandle spillToTempFile(SpillExport export, ProgressTracker tracker) {
+		File file = null;
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		try {
+			file = File.createTempFile("json_export_", ".enc");
+			long[] plainLength = new long[1];
+			boolean success;
+			OutputStream counting = new FilterOutputStream(new AesGcmOutputStream(new FileOutputStream(file), key)) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					plainLength[0] += len;
+				}
+				
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					plainLength[0]++;
+				}
+			};
+			try (Writer writer = new OutputStreamWriter(tracker != null ? tracker.countBytes(counting) : counting,
+			StandardCharsets.UTF_8)) {
+				success = export.export(writer);
+			}
+			if (success) {
+				return JsonExportHandle.spilled(file, key, plainLength[0]);
+			}
+			log(DBCipherManager.LogLevel.ERROR, "写入临时导出文件失败", null);
+		} catch (IOException e) {
+			log(DBCipherManager.LogLevel.ERROR, "创建临时导出文件失败", e);
+		}
+		Arrays.fill(key, (byte) 0);
+		if (file != null && !file.delete()) {
+			log(DBCipherManager.LogLevel.WARN, "删除临时导出文件失败: " + file.getPath(), null);
+		}
+		return null;
+	}
+	
+	/**
+	* 预估把这些表构建为JSON对象树的堆占用
+	* 数据库文件本身在预算内时直接按文件大小估算；否则用 dbstat 统计各表实际存储的行数据字节数
+	* （行数 × 平均行大小），dbstat 不可用时退回文件大小
+	*/
+	private long estimateJsonHeapSize(SQLiteDatabase db, List<String> tableNames) {
+		long fileSize = queryLong(db, "PRAGMA page_count", null) * queryLong(db, "PRAGMA page_size", null);
+		if (fileSize * JSON_HEAP_FACTOR <= jsonMemoryBudget) {
+			return fileSize * JSON_HEAP_FACTOR;
+		}
+		try {
+			long payload = 0;
+			for (String tableName : tableNames) {
+				payload += queryLong(db, "SELECT COALESCE(SUM(payload), 0) FROM dbstat WHERE name = ?", new String[]{tableName});
+			}
+			return payload * JSON_HEAP_FACTOR;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.DEBUG, "dbstat 不可用，按数据库文件大小估算", e);
+			return fileSize * JSON_HEAP_FACTOR;
+		}
+	}
+	
 	/**
 	* 使用已打开的数据库连接导出单个表的数据
 	* @param db 数据库连接
 	* @param tableName 表名
-	* @param columnCount 列数
 	* @return 表数据对象（单行或多行）
 	*/
-	private Object exportTableToJsonWithConnection(SQLiteDatabase db, String tableName, int columnCount) {
+	private Object exportTableToJsonWithConnection(SQLiteDatabase db, String tableName) {
 		Cursor cursor = null;
 		Object result = null;
 		
@@ -515,6 +1104,7 @@ public class SqlUtilManager {
 			if (cursor != null) {
 				int rowCount = cursor.getCount();
 				String[] columnNames = cursor.getColumnNames();
+				int columnCount = columnNames.length;
 				
 				// 单行单列：直接返回单个值
 				if (rowCount == 1 && columnCount == 1) {
@@ -567,7 +1157,7 @@ public class SqlUtilManager {
 	* @param columnIndex 列索引
 	* @return 列值
 	*/
-	private Object getValueFromCursor(Cursor cursor, int columnIndex) {
+	static Object getValueFromCursor(Cursor cursor, int columnIndex) {
 		int columnType = cursor.getType(columnIndex);
 		
 		switch (columnType) {
@@ -607,31 +1197,18 @@ public class SqlUtilManager {
 					return 0;
 				}
 				
+				TableInserter inserter = new TableInserter(db, mTableManager, tableName);
 				db.beginTransaction();
 				try {
 					for (int i = 0; i < jsonArray.length(); i++) {
-						Object rowData = jsonArray.get(i);
-						
-						if (rowData instanceof JSONObject) {
-							// 多列数据行
-							ContentValues values = jsonToContentValues((JSONObject) rowData);
-							long result = db.insert(tableName, null, values);
-							if (result != -1) {
-								insertedCount++;
-							}
-						} else {
-							// 单列数据行
-							ContentValues values = new ContentValues();
-							values.put(mTableManager.getFirstColumnName(db, tableName), rowData.toString());
-							long result = db.insert(tableName, null, values);
-							if (result != -1) {
-								insertedCount++;
-							}
+						if (insertJsonRow(inserter, jsonArray.get(i))) {
+							insertedCount++;
 						}
 					}
 					db.setTransactionSuccessful();
 				} finally {
 					db.endTransaction();
+					inserter.close();
 				}
 				
 				log(DBCipherManager.LogLevel.INFO, "批量插入完成，成功插入 " + insertedCount + " 条记录", null);
@@ -667,6 +1244,10 @@ public class SqlUtilManager {
 				
 				while (tableNames.hasNext()) {
 					String tableName = tableNames.next();
+					if (isInternalTable(tableName)) {
+						log(DBCipherManager.LogLevel.WARN, "跳过内部表: " + tableName, null);
+						continue;
+					}
 					Object tableData = tablesJson.get(tableName);
 					
 					if (importTableData(db, tableName, tableData, clearBeforeImport)) {
@@ -700,14 +1281,13 @@ public class SqlUtilManager {
 				log(DBCipherManager.LogLevel.DEBUG, "已清空表: " + tableName, null);
 			}
 			
-			// 处理不同类型的数据
-			if (tableData instanceof JSONObject) {
-				// 单行多列数据
-				ContentValues values = jsonToContentValues((JSONObject) tableData);
-				long result = db.insert(tableName, null, values);
-				return result != -1;
-			}
-			else if (tableData instanceof JSONArray) {
+			TableInserter inserter = new TableInserter(db, mTableManager, tableName);
+			try {
+				if (!(tableData instanceof JSONArray)) {
+					// 单行多列数据或单行单列数据
+					return insertJsonRow(inserter, tableData);
+				}
+				
 				// 多行数据
 				JSONArray dataArray = (JSONArray) tableData;
 				boolean allSuccess = true;
@@ -715,33 +1295,15 @@ public class SqlUtilManager {
 				db.beginTransaction();
 				try {
 					for (int i = 0; i < dataArray.length(); i++) {
-						Object rowData = dataArray.get(i);
-						
-						if (rowData instanceof JSONObject) {
-							// 多列数据行
-							ContentValues values = jsonToContentValues((JSONObject) rowData);
-							long result = db.insert(tableName, null, values);
-							if (result == -1) allSuccess = false;
-						} else {
-							// 单列数据行
-							ContentValues values = new ContentValues();
-							values.put(mTableManager.getFirstColumnName(db, tableName), rowData.toString());
-							long result = db.insert(tableName, null, values);
-							if (result == -1) allSuccess = false;
-						}
+						if (!insertJsonRow(inserter, dataArray.get(i))) allSuccess = false;
 					}
 					db.setTransactionSuccessful();
 				} finally {
 					db.endTransaction();
 				}
 				return allSuccess;
-			}
-			else {
-				// 单行单列数据
-				ContentValues values = new ContentValues();
-				values.put(mTableManager.getFirstColumnName(db, tableName), tableData.toString());
-				long result = db.insert(tableName, null, values);
-				return result != -1;
+			} finally {
+				inserter.close();
 			}
 		} catch (Exception e) {
 			log(DBCipherManager.LogLevel.ERROR, "导入表 '" + tableName + "' 数据失败", e);
@@ -749,6 +1311,1334 @@ public class SqlUtilManager {
 		}
 	}
 	
+	/**
+	* 插入一行JSON数据：JSONObject按键写入对应列，其他值以字符串写入表的第一列
+	*/
+	private boolean insertJsonRow(TableInserter inserter, Object rowData) throws JSONException {
+		inserter.beginRow();
+		if (rowData instanceof JSONObject) {
+			JSONObject row = (JSONObject) rowData;
+			Iterator<String> keys = row.keys();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				Object value = row.get(key);
+				// 与 jsonToContentValues 一致：基本类型直接绑定，其他值转为字符串
+				if (value == JSONObject.NULL) {
+					inserter.put(key, null);
+				} else if (value instanceof Number || value instanceof Boolean || value instanceof String || value instanceof byte[]) {
+					inserter.put(key, value);
+				} else {
+					inserter.put(key, value.toString());
+				}
+			}
+		} else {
+			inserter.putScalar(rowData.toString());
+		}
+		return inserter.endRow();
+	}
+	
+	// ==================== 流式导入功能 ====================
+	
+	/**
+	* 流式导入整个数据库（读取 exportDatabaseToJsonStream 输出的格式）
+	* 使用 JsonReader 边解析边写入，不构建完整的JSON树；每 batchSize 行提交一次事务
+	* @param reader 输入读取器
+	* @param options 导入选项，为null时使用默认选项
+	* @param progressListener 进度监听器（可选）
+	* @return 成功导入的表数量，-1表示解析或读取失败（已提交的批次不会回滚）
+	*/
+	public int importDatabaseFromJsonStream(Reader reader, ImportOptions options, ImportProgressListener progressListener) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		return dbManager.executeWithConnection(db -> {
+			log(DBCipherManager.LogLevel.INFO, "开始流式导入数据库数据", null);
+			
+			JsonReader jsonReader = new JsonReader(reader);
+			StreamImportState state = new StreamImportState(db, importOptions.getBatchSize());
+			int importedTables = 0;
+			
+			try {
+				db.beginTransaction();
+				jsonReader.beginObject();
+				while (jsonReader.hasNext()) {
+					String name = jsonReader.nextName();
+					if (!"tables".equals(name)) {
+						// 元数据字段不参与导入
+						jsonReader.skipValue();
+						continue;
+					}
+					
+					jsonReader.beginObject();
+					while (jsonReader.hasNext()) {
+						String tableName = jsonReader.nextName();
+						if (isInternalTable(tableName)) {
+							log(DBCipherManager.LogLevel.WARN, "跳过内部表: " + tableName, null);
+							jsonReader.skipValue();
+							continue;
+						}
+						if (progressListener != null) {
+							progressListener.onTableStart(tableName, importedTables);
+							checkCancelled(progressListener);
+						}
+						
+						int rows = importTableFromJsonStream(jsonReader, tableName, importOptions, state, progressListener);
+						if (rows >= 0) {
+							importedTables++;
+						}
+						
+						if (progressListener != null) {
+							progressListener.onTableComplete(tableName, importedTables - 1, Math.max(rows, 0));
+						}
+					}
+					jsonReader.endObject();
+				}
+				jsonReader.endObject();
+				
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "流式导入完成，成功导入 " + importedTables + " 个表", null);
+				return importedTables;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "流式导入数据库时发生异常", e);
+				return -1;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 并行解析导入整个数据库（输入格式与 importDatabaseFromJsonStream 相同）
+	* 切分线程按行切出原始JSON文本，parserThreads 个解析线程并行解码，
+	* 调用线程作为唯一写入者按原顺序插入；在途块数量受 maxPendingChunks 限制
+	* 进度回调在调用线程上执行
+	* @param reader 输入读取器
+	* @param options 导入选项，为null时使用默认选项
+	* @param progressListener 进度监听器（可选）
+	* @return 成功导入的表数量，-1表示解析或读取失败（已提交的批次不会回滚）
+	*/
+	public int importDatabaseFromJsonParallel(Reader reader, ImportOptions options, ImportProgressListener progressListener) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		return dbManager.executeWithConnection(db -> {
+			log(DBCipherManager.LogLevel.INFO, "开始并行导入数据库数据，解析线程数: " + importOptions.getParserThreads(), null);
+			return new ImportPipeline(mTableManager, importOptions, progressListener).run(db, reader);
+		});
+	}
+	
+	/**
+	* 从流中导入单个表的数据（数组、单行对象或单个值）
+	* @return 导入的行数，-1表示表数据无法写入（已跳过）
+	*/
+	private int importTableFromJsonStream(JsonReader jsonReader, String tableName, ImportOptions options,
+	StreamImportState state, ImportProgressListener progressListener) throws IOException {
+		SQLiteDatabase db = state.db;
+		if (options.isClearBeforeImport()) {
+			db.execSQL("DELETE FROM " + tableName);
+			log(DBCipherManager.LogLevel.DEBUG, "已清空表: " + tableName, null);
+		}
+		
+		int imported = 0;
+		boolean failed = false;
+		// 每个表只解析一次列信息，同一行结构复用同一条预编译INSERT
+		TableInserter inserter = new TableInserter(db, mTableManager, tableName);
+		try {
+			JsonToken token = jsonReader.peek();
+			if (token == JsonToken.BEGIN_ARRAY) {
+				jsonReader.beginArray();
+				while (jsonReader.hasNext()) {
+					if (insertStreamRow(jsonReader, inserter)) {
+						imported++;
+					} else {
+						failed = true;
+					}
+					if (state.rowCommitted() && progressListener != null) {
+						progressListener.onBatchCommitted(tableName, imported);
+						checkCancelled(progressListener);
+					}
+				}
+				jsonReader.endArray();
+			} else {
+				// 单行对象或单个值
+				if (insertStreamRow(jsonReader, inserter)) {
+					imported++;
+				} else {
+					failed = true;
+				}
+				state.rowCommitted();
+			}
+		} finally {
+			inserter.close();
+		}
+		
+		if (failed) {
+			log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 部分行导入失败", null);
+		}
+		return failed && imported == 0 ? -1 : imported;
+	}
+	
+	/**
+	* 读取一行（对象或单个值）并插入，值从JSON记号直接绑定到预编译语句
+	*/
+	private boolean insertStreamRow(JsonReader jsonReader, TableInserter inserter) throws IOException {
+		inserter.beginRow();
+		if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+			jsonReader.beginObject();
+			while (jsonReader.hasNext()) {
+				String key = jsonReader.nextName();
+				inserter.put(key, readStreamValue(jsonReader));
+			}
+			jsonReader.endObject();
+		} else {
+			// 单列数据行：写入表的第一列
+			inserter.putScalar(readStreamValue(jsonReader));
+		}
+		return inserter.endRow();
+	}
+	
+	/**
+	* 按JSON记号类型读取一个值
+	*/
+	static Object readStreamValue(JsonReader jsonReader) throws IOException {
+		switch (jsonReader.peek()) {
+			case NULL:
+			jsonReader.nextNull();
+			return null;
+			case BOOLEAN:
+			return jsonReader.nextBoolean();
+			case NUMBER:
+			String number = jsonReader.nextString();
+			if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+				try {
+					return Long.parseLong(number);
+				} catch (NumberFormatException e) {
+					// 超出long范围，按浮点数处理
+				}
+			}
+			return Double.parseDouble(number);
+			case STRING:
+			return jsonReader.nextString();
+			default:
+			// 嵌套对象/数组：与 jsonToContentValues 一致，以字符串形式保存
+			return readNestedAsString(jsonReader);
+		}
+	}
+	
+	/**
+	* 将嵌套的对象/数组读回为JSON字符串
+	*/
+	private static String readNestedAsString(JsonReader jsonReader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		appendNested(jsonReader, sb);
+		return sb.toString();
+	}
+	
+	private static void appendNested(JsonReader jsonReader, StringBuilder sb) throws IOException {
+		switch (jsonReader.peek()) {
+			case BEGIN_OBJECT:
+			jsonReader.beginObject();
+			sb.append('{');
+			boolean firstField = true;
+			while (jsonReader.hasNext()) {
+				if (!firstField) sb.append(',');
+				sb.append('"').append(escapeJsonString(jsonReader.nextName())).append("\":");
+				appendNested(jsonReader, sb);
+				firstField = false;
+			}
+			jsonReader.endObject();
+			sb.append('}');
+			break;
+			case BEGIN_ARRAY:
+			jsonReader.beginArray();
+			sb.append('[');
+			boolean firstItem = true;
+			while (jsonReader.hasNext()) {
+				if (!firstItem) sb.append(',');
+				appendNested(jsonReader, sb);
+				firstItem = false;
+			}
+			jsonReader.endArray();
+			sb.append(']');
+			break;
+			case STRING:
+			sb.append('"').append(escapeJsonString(jsonReader.nextString())).append('"');
+			break;
+			case NUMBER:
+			sb.append(jsonReader.nextString());
+			break;
+			case BOOLEAN:
+			sb.append(jsonReader.nextBoolean());
+			break;
+			default:
+			jsonReader.nextNull();
+			sb.append("null");
+			break;
+		}
+	}
+	
+	/**
+	* 流式导入的批次状态：累计行数达到批次大小时提交并开启新事务
+	*/
+	private class StreamImportState {
+		final SQLiteDatabase db;
+		final int batchSize;
+		int pendingRows = 0;
+		
+		StreamImportState(SQLiteDatabase db, int batchSize) {
+			this.db = db;
+			this.batchSize = batchSize;
+		}
+		
+		/**
+		* 记录一行已写入
+		* @return 本次是否提交了一个批次
+		*/
+		boolean rowCommitted() {
+			if (++pendingRows < batchSize) {
+				return false;
+			}
+			db.setTransactionSuccessful();
+			db.endTransaction();
+			db.beginTransaction();
+			pendingRows = 0;
+			return true;
+		}
+		
+		/**
+		* 立即提交当前事务（不论批次是否已满）
+		*/
+		void commit() {
+			db.setTransactionSuccessful();
+			db.endTransaction();
+			db.beginTransaction();
+			pendingRows = 0;
+		}
+	}
+	
+	
+	// ==================== BLOB 流式读写 ====================
+	
+	/**
+	* 按窗口读取一个 BLOB（每次只用 substr() 取出一个窗口，整个值不会进入 Java 堆，也不受 CursorWindow 大小限制）
+	* 每个窗口单独查询，读取期间该行被修改会读到不一致的数据；TEXT 值按 UTF-8 字节读取，NULL 为空流。
+	* 流持有当前线程的数据库连接直到 close()，只能在打开它的线程上使用，用完必须关闭
+	* @param tableName 表名
+	* @param columnName 列名
+	* @param rowid 行的 rowid
+	* @return 输入流（调用方负责关闭），行不存在或查询失败返回null
+	*/
+	public InputStream openBlobInputStream(String tableName, String columnName, long rowid) {
+		try {
+			InputStream in = BlobInputStream.open(dbManager, tableName, columnName, rowid, BlobInputStream.DEFAULT_WINDOW_SIZE);
+			if (in == null) {
+				log(DBCipherManager.LogLevel.WARN, "读取BLOB失败，行不存在: " + tableName + " rowid=" + rowid, null);
+			}
+			return in;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "打开BLOB输入流失败: " + tableName + "." + columnName, e);
+			return null;
+		}
+	}
+	
+	/**
+	* 分块写入一个 BLOB：打开时把该列置为空 BLOB，写入的数据按块追加，Java 堆中只保留一块
+	* 每块是一条独立的 UPDATE，需要原子写入时在事务中使用（同一线程的 executeTransaction 内）。
+	* 注意：每次追加都在原生层读出并重写整个值，总写入量随数据大小平方增长（按512KB分块写入20MB约重写400MB）；
+	* 已知总长度时使用 openBlobOutputStream(tableName, columnName, rowid, expectedLength)。
+	* 流持有当前线程的数据库连接直到 close()，只能在打开它的线程上使用，用完必须关闭
+	* @param tableName 表名
+	* @param columnName 列名
+	* @param rowid 行的 rowid（行必须已存在）
+	* @return 输出流（调用方负责关闭，关闭时写入最后一块），行不存在或更新失败返回null
+	*/
+	public OutputStream openBlobOutputStream(String tableName, String columnName, long rowid) {
+		return openBlobOutputStream(tableName, columnName, rowid, 0);
+	}
+	
+	/**
+	* 分块写入一个 BLOB，按预计总长度选择块大小，使追加次数约为16次（块大小在512KB到8MB之间），
+	* 总写入量约为数据大小的8倍；块越大 Java 堆中占用越多
+	* @param expectedLength 预计总字节数，0表示未知（使用512KB的块）
+	* @return 输出流（调用方负责关闭，关闭时写入最后一块），行不存在或更新失败返回null
+	*/
+	public OutputStream openBlobOutputStream(String tableName, String columnName, long rowid, long expectedLength) {
+		try {
+			OutputStream out = BlobOutputStream.open(dbManager, tableName, columnName, rowid,
+			BlobOutputStream.chunkSizeFor(expectedLength));
+			if (out == null) {
+				log(DBCipherManager.LogLevel.WARN, "写入BLOB失败，行不存在: " + tableName + " rowid=" + rowid, null);
+			}
+			return out;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "打开BLOB输出流失败: " + tableName + "." + columnName, e);
+			return null;
+		}
+	}
+	
+	// ==================== 行式导出/导入（NDJSON / CSV） ====================
+	
+	/**
+	* 按行导出单个表为 NDJSON（每行一个JSON对象，以换行结尾）
+	* 每行都包含全部投影列（NULL 写为 null），行结构不随行数或列数变化；BLOB 写为Base64字符串，
+	* 大 BLOB 按窗口读取后分段编码，整个值不进入 Java 堆
+	* @param tableName 表名
+	* @param columns 要导出的列，为null时导出全部列
+	* @param selection WHERE 条件（不含 WHERE），为null时导出全部行
+	* @param selectionArgs 条件参数
+	* @param writer 输出写入器（不会被关闭）
+	* @return 导出的行数，-1表示导出失败
+	*/
+	public int exportTableToNdjson(String tableName, String[] columns, String selection, String[] selectionArgs, Writer writer) {
+		return dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				String[] projection = buildBlobAwareProjection(db, tableName, columns);
+				cursor = db.query(tableName, projection != null ? projection : columns, selection, selectionArgs,
+				null, null, null);
+				// 不含末尾的 rowid 和大 BLOB 掩码列
+				String[] names = cursor.getColumnNames();
+				int columnCount = projection != null ? names.length - 2 : names.length;
+				String[] keys = new String[columnCount];
+				for (int i = 0; i < columnCount; i++) {
+					keys[i] = "\"" + escapeJsonString(names[i]) + "\":";
+				}
+				JsonStreamWriter json = new JsonStreamWriter(writer);
+				int rows = 0;
+				while (cursor.moveToNext()) {
+					json.write('{');
+					for (int i = 0; i < columnCount; i++) {
+						if (i > 0) json.write(',');
+						json.write(keys[i]);
+						writeExportValue(db, tableName, cursor, names, i, columnCount, json);
+					}
+					json.write("}\n");
+					rows++;
+				}
+				json.flush();
+				log(DBCipherManager.LogLevel.DEBUG, "表 '" + tableName + "' 导出为NDJSON，共 " + rows + " 行", null);
+				return rows;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "导出表 '" + tableName + "' 为NDJSON失败", e);
+				return -1;
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+		});
+	}
+	
+	/**
+	* 按行导出单个表为 RFC 4180 CSV（首行为列名，记录以 CRLF 结尾）
+	* NULL 写为空字段，空字符串写为 ""；BLOB 写为不换行的Base64，大 BLOB 按窗口读取后分段编码（带双引号）
+	* @param tableName 表名
+	* @param columns 要导出的列，为null时导出全部列
+	* @param selection WHERE 条件（不含 WHERE），为null时导出全部行
+	* @param selectionArgs 条件参数
+	* @param writer 输出写入器（不会被关闭）
+	* @return 导出的行数，-1表示导出失败
+	*/
+	public int exportTableToCsv(String tableName, String[] columns, String selection, String[] selectionArgs, Writer writer) {
+		return dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				String[] projection = buildBlobAwareProjection(db, tableName, columns);
+				cursor = db.query(tableName, projection != null ? projection : columns, selection, selectionArgs,
+				null, null, null);
+				// 不含末尾的 rowid 和大 BLOB 掩码列
+				String[] names = cursor.getColumnNames();
+				int columnCount = projection != null ? names.length - 2 : names.length;
+				// 大 BLOB 的Base64直接写入同一缓冲区
+				JsonStreamWriter out = new JsonStreamWriter(writer);
+				CsvWriter csv = new CsvWriter(out);
+				for (int i = 0; i < columnCount; i++) {
+					csv.writeField(names[i]);
+				}
+				csv.endRecord();
+				int rows = 0;
+				while (cursor.moveToNext()) {
+					for (int i = 0; i < columnCount; i++) {
+						if (projection != null && (cursor.getLong(columnCount + 1) >>> i & 1) != 0) {
+							BlobInputStream in = BlobInputStream.open(db, tableName, names[i], cursor.getLong(columnCount),
+							BlobInputStream.DEFAULT_WINDOW_SIZE);
+							if (in == null) {
+								throw new IOException("导出过程中行已不存在: " + tableName);
+							}
+							csv.beginRawField();
+							out.writeBase64(in, false);
+							continue;
+						}
+						switch (cursor.getType(i)) {
+							case Cursor.FIELD_TYPE_NULL:
+							csv.writeField(null);
+							break;
+							case Cursor.FIELD_TYPE_BLOB:
+							csv.writeField(Base64.encodeToString(cursor.getBlob(i), Base64.NO_WRAP));
+							break;
+							default:
+							csv.writeField(cursor.getString(i));
+							break;
+						}
+					}
+					csv.endRecord();
+					rows++;
+				}
+				out.flush();
+				log(DBCipherManager.LogLevel.DEBUG, "表 '" + tableName + "' 导出为CSV，共 " + rows + " 行", null);
+				return rows;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "导出表 '" + tableName + "' 为CSV失败", e);
+				return -1;
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+		});
+	}
+	
+	/**
+	* 从 NDJSON 导入单个表（每行一个JSON对象，键为列名；空行会被忽略）
+	* 边读边写，每 batchSize 行提交一次事务
+	* @param tableName 表名
+	* @param reader 输入读取器
+	* @param options 导入选项，为null时使用默认选项
+	* @return 成功导入的行数，-1表示读取或解析失败（已提交的批次不会回滚）
+	*/
+	public int importTableFromNdjson(String tableName, Reader reader, ImportOptions options) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		return dbManager.executeWithConnection(db -> {
+			JsonReader jsonReader = new JsonReader(reader);
+			// 宽松模式允许多个顶层值，即每行一个对象
+			jsonReader.setLenient(true);
+			StreamImportState state = new StreamImportState(db, importOptions.getBatchSize());
+			TableInserter inserter = null;
+			int imported = 0;
+			int failed = 0;
+			db.beginTransaction();
+			try {
+				if (importOptions.isClearBeforeImport()) {
+					db.execSQL("DELETE FROM " + tableName);
+				}
+				inserter = new TableInserter(db, mTableManager, tableName);
+				while (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+					if (insertStreamRow(jsonReader, inserter)) {
+						imported++;
+					} else {
+						failed++;
+					}
+					state.rowCommitted();
+				}
+				db.setTransactionSuccessful();
+				if (failed > 0) {
+					log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 有 " + failed + " 行NDJSON导入失败", null);
+				}
+				log(DBCipherManager.LogLevel.INFO, "表 '" + tableName + "' 从NDJSON导入 " + imported + " 行", null);
+				return imported;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "从NDJSON导入表 '" + tableName + "' 失败", e);
+				return -1;
+			} finally {
+				if (inserter != null) inserter.close();
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 从 RFC 4180 CSV 导入单个表（首行为列名）
+	* 未加引号的空字段按 NULL 写入，其他字段按文本绑定，由列的类型亲和性转换为数值；
+	* 首行包含表中不存在的列时不导入任何数据
+	* @param tableName 表名
+	* @param reader 输入读取器
+	* @param options 导入选项，为null时使用默认选项
+	* @return 成功导入的行数，-1表示读取或解析失败（已提交的批次不会回滚）
+	*/
+	public int importTableFromCsv(String tableName, Reader reader, ImportOptions options) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		return dbManager.executeWithConnection(db -> {
+			CsvReader csv = new CsvReader(reader);
+			StreamImportState state = new StreamImportState(db, importOptions.getBatchSize());
+			TableInserter inserter = null;
+			int imported = 0;
+			int failed = 0;
+			db.beginTransaction();
+			try {
+				List<String> header = csv.readRecord();
+				if (header == null) {
+					log(DBCipherManager.LogLevel.WARN, "CSV为空: " + tableName, null);
+					return 0;
+				}
+				Set<String> tableColumns = new HashSet<>();
+				for (String column : mTableManager.getColumnTypes(tableName).keySet()) {
+					tableColumns.add(column.toLowerCase(Locale.ROOT));
+				}
+				for (String column : header) {
+					if (column == null || !tableColumns.contains(column.toLowerCase(Locale.ROOT))) {
+						log(DBCipherManager.LogLevel.ERROR, "CSV列 '" + column + "' 在表 '" + tableName + "' 中不存在", null);
+						return -1;
+					}
+				}
+				
+				if (importOptions.isClearBeforeImport()) {
+					db.execSQL("DELETE FROM " + tableName);
+				}
+				inserter = new TableInserter(db, mTableManager, tableName);
+				List<String> record;
+				while ((record = csv.readRecord()) != null) {
+					if (record.size() == 1 && record.get(0) == null) {
+						continue; // 空行
+					}
+					if (record.size() != header.size()) {
+						failed++;
+						continue;
+					}
+					inserter.beginRow();
+					for (int i = 0; i < header.size(); i++) {
+						inserter.put(header.get(i), record.get(i));
+					}
+					if (inserter.endRow()) {
+						imported++;
+					} else {
+						failed++;
+					}
+					state.rowCommitted();
+				}
+				db.setTransactionSuccessful();
+				if (failed > 0) {
+					log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 有 " + failed + " 条CSV记录导入失败", null);
+				}
+				log(DBCipherManager.LogLevel.INFO, "表 '" + tableName + "' 从CSV导入 " + imported + " 行", null);
+				return imported;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "从CSV导入表 '" + tableName + "' 失败", e);
+				return -1;
+			} finally {
+				if (inserter != null) inserter.close();
+				db.endTransaction();
+			}
+		});
+	}
+	
+	// ==================== 断点续传导出/导入 ====================
+	
+	/**
+	* 可续传导出每次记录检查点的行数
+	*/
+	private static final int CHECKPOINT_ROWS = 1000;
+	
+	/**
+	* 可断点续传地导出整个数据库到文件
+	* 每导出 1000 行把（当前表、最后导出的 rowid、已落盘的字节数）写入目标文件旁的 .ckpt 文件；
+	* 中断后用同一目标文件再次调用，会把文件截断到检查点位置并从该行之后继续，完成后删除检查点文件
+	* 输出格式与 exportDatabaseToJsonStream 兼容（每个表都写为对象数组），可用任一流式导入读取。
+	* 同一次调用内的数据来自同一读快照，中断前后的两部分分别对应各自调用时的数据
+	* @param target 目标文件
+	* @param progressListener 进度监听器（可选）
+	* @return true导出完成，false导出中断（可再次调用继续）
+	*/
+	public boolean exportDatabaseToFileResumable(File target, ExportProgressListener progressListener) {
+		return dbManager.executeInReadSnapshot(db -> {
+			TransferCheckpoint checkpoint = TransferCheckpoint.readSidecar(target);
+			if (checkpoint != null && (!checkpoint.matches(dbManager.getDatabaseName())
+			|| !target.exists() || target.length() < checkpoint.bytes)) {
+				log(DBCipherManager.LogLevel.WARN, "导出检查点与目标文件不匹配，重新开始导出", null);
+				checkpoint = null;
+			}
+			boolean resumed = checkpoint != null;
+			if (resumed) {
+				log(DBCipherManager.LogLevel.INFO, "从检查点继续导出: 表 " + checkpoint.tables.get(checkpoint.tableIndex)
+				+ " 已导出 " + checkpoint.rowsDone + " 行", null);
+			} else {
+				checkpoint = TransferCheckpoint.forExport(dbManager.getDatabaseName(), getAllTableNames(db));
+			}
+			
+			try {
+				// 丢弃检查点之后未确认的输出
+				try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+					file.setLength(resumed ? checkpoint.bytes : 0);
+				}
+				FileOutputStream outputStream = new FileOutputStream(target, true);
+				List<String> tableNames = checkpoint.tables;
+				int totalTables = tableNames.size();
+				try (JsonStreamWriter writer = new JsonStreamWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024)) {
+					if (!resumed) {
+						writer.write("{");
+						writer.write("\"database_name\":\"" + escapeJsonString(dbManager.getDatabaseName()) + "\",");
+						writer.write("\"export_time\":" + System.currentTimeMillis() + ",");
+						writer.write("\"table_count\":" + totalTables + ",");
+						writer.write("\"tables\":{");
+					}
+					
+					for (int i = checkpoint.tableIndex; i < totalTables; i++) {
+						String tableName = tableNames.get(i);
+						if (progressListener != null) {
+							progressListener.onTableStart(tableName, i, totalTables);
+							checkCancelled(progressListener);
+						}
+						if (!resumed || i > checkpoint.tableIndex) {
+							checkpoint.startTable(i);
+							if (i > 0) writer.write(",");
+							writer.write("\"" + escapeJsonString(tableName) + "\":[");
+							saveExportCheckpoint(writer, outputStream, target, checkpoint);
+						}
+						exportTableResumable(db, tableName, writer, outputStream, target, checkpoint, progressListener);
+						writer.write("]");
+						if (progressListener != null) {
+							progressListener.onTableComplete(tableName, i, totalTables);
+						}
+					}
+					
+					writer.write("}}");
+					writer.flush();
+					outputStream.getFD().sync();
+				}
+				TransferCheckpoint.deleteSidecar(target);
+				log(DBCipherManager.LogLevel.INFO, "可续传导出完成，共导出 " + totalTables + " 个表", null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "可续传导出中断，再次调用将从检查点继续", e);
+				return false;
+			}
+		});
+	}
+	
+	/**
+	* 是否存在未完成的可续传导出
+	*/
+	public boolean hasExportCheckpoint(File target) {
+		return TransferCheckpoint.sidecarFile(target).exists();
+	}
+	
+	/**
+	* 从检查点位置继续导出一个表，每 CHECKPOINT_ROWS 行记录一次检查点
+	* 有 rowid 的表按 rowid 分页，WITHOUT ROWID 表按已导出行数分页
+	*/
+	private void exportTableResumable(SQLiteDatabase db, String tableName, JsonStreamWriter writer, FileOutputStream outputStream,
+	File target, TransferCheckpoint checkpoint, ExportProgressListener progressListener) throws IOException {
+		if (!tableExists(db, tableName)) {
+			log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 已不存在，导出为空表", null);
+			return;
+		}
+		String table = "\"" + tableName.replace("\"", "\"\"") + "\"";
+		boolean pageByRowid = hasUsableRowid(db, tableName);
+		int totalRows = (int) queryLong(db, "SELECT COUNT(*) FROM " + table, null);
+		if (progressListener != null) {
+			progressListener.onTableSizeDetermined(tableName, totalRows);
+		}
+		
+		while (true) {
+			Cursor cursor = pageByRowid
+			? db.rawQuery("SELECT rowid, * FROM " + table + " WHERE rowid > " + checkpoint.lastRowid
+			+ " ORDER BY rowid LIMIT " + CHECKPOINT_ROWS, null)
+			: db.rawQuery("SELECT NULL, * FROM " + table + " LIMIT " + CHECKPOINT_ROWS
+			+ " OFFSET " + checkpoint.rowsDone, null);
+			int rows = 0;
+			try {
+				String[] columnNames = cursor.getColumnNames();
+				while (cursor.moveToNext()) {
+					if (checkpoint.rowsDone > 0) writer.write(",");
+					writer.write("{");
+					for (int i = 1; i < columnNames.length; i++) {
+						if (i > 1) writer.write(",");
+						writer.writeName(columnNames[i]);
+						writer.writeCursorValue(cursor, i);
+					}
+					writer.write("}");
+					if (pageByRowid) {
+						checkpoint.lastRowid = cursor.getLong(0);
+					}
+					if (progressListener != null) {
+						progressListener.onRowProcessed(tableName, (int) checkpoint.rowsDone, totalRows);
+						checkCancelled(progressListener);
+					}
+					checkpoint.rowsDone++;
+					rows++;
+				}
+			} finally {
+				cursor.close();
+			}
+			if (rows == 0) {
+				return;
+			}
+			saveExportCheckpoint(writer, outputStream, target, checkpoint);
+			if (rows < CHECKPOINT_ROWS) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	* 先把输出刷到磁盘再写检查点，检查点记录的字节数不会超过已落盘的数据
+	*/
+	private void saveExportCheckpoint(Writer writer, FileOutputStream outputStream, File target,
+	TransferCheckpoint checkpoint) throws IOException {
+		writer.flush();
+		outputStream.getFD().sync();
+		checkpoint.bytes = outputStream.getChannel().position();
+		checkpoint.writeSidecar(target);
+	}
+	
+	/**
+	* 可断点续传地从文件导入整个数据库（读取 exportDatabaseToJsonStream / exportDatabaseToFileResumable 的输出）
+	* 每 batchSize 行提交一次事务，导入位置（表序号、该表已处理的行数）记录在数据库的 __transfer_checkpoint 表中，
+	* 与该批数据在同一事务中提交；中断后用同一文件再次调用，跳过已提交的行从下一行继续，完成后删除检查点。
+	* 源文件被修改（长度或修改时间变化）时检查点失效，从头导入
+	* @param source 源文件
+	* @param options 导入选项，为null时使用默认选项（clearBeforeImport 只在表从头导入时生效）
+	* @param progressListener 进度监听器（可选）
+	* @return 成功导入的表数量（包括之前调用中已完成的表），-1表示导入中断（可再次调用继续）
+	*/
+	public int importDatabaseFromFileResumable(File source, ImportOptions options, ImportProgressListener progressListener) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		String sourceKey = source.getAbsolutePath();
+		String fingerprint = source.length() + ":" + source.lastModified();
+		return dbManager.executeWithConnection(db -> {
+			try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8), 64 * 1024)) {
+				JsonReader jsonReader = new JsonReader(reader);
+				db.beginTransaction();
+				try {
+					TransferCheckpoint.ensureTable(db);
+					TransferCheckpoint checkpoint = TransferCheckpoint.loadImport(db, sourceKey);
+					if (checkpoint != null && !checkpoint.matches(fingerprint)) {
+						log(DBCipherManager.LogLevel.WARN, "源文件已变化，导入检查点失效，从头导入", null);
+						checkpoint = null;
+					}
+					if (checkpoint == null) {
+						checkpoint = TransferCheckpoint.forImport(fingerprint);
+					} else {
+						log(DBCipherManager.LogLevel.INFO, "从检查点继续导入: 第 " + (checkpoint.tableIndex + 1)
+						+ " 个表，已处理 " + checkpoint.rowsDone + " 行", null);
+					}
+					int resumeTable = checkpoint.tableIndex;
+					long resumeRows = checkpoint.rowsDone;
+					int importedTables = 0;
+					
+					jsonReader.beginObject();
+					while (jsonReader.hasNext()) {
+						if (!"tables".equals(jsonReader.nextName())) {
+							jsonReader.skipValue();
+							continue;
+						}
+						jsonReader.beginObject();
+						int tableIndex = 0;
+						while (jsonReader.hasNext()) {
+							String tableName = jsonReader.nextName();
+							if (isInternalTable(tableName)) {
+								// 计入表序号，与检查点中记录的位置保持一致
+								log(DBCipherManager.LogLevel.WARN, "跳过内部表: " + tableName, null);
+								jsonReader.skipValue();
+								tableIndex++;
+								continue;
+							}
+							if (tableIndex < resumeTable) {
+								// 之前的调用中已完成
+								jsonReader.skipValue();
+								importedTables++;
+								tableIndex++;
+								continue;
+							}
+							if (progressListener != null) {
+								progressListener.onTableStart(tableName, tableIndex);
+								checkCancelled(progressListener);
+							}
+							long skipRows = tableIndex == resumeTable ? resumeRows : 0;
+							int rows = importTableResumable(db, jsonReader, tableName, tableIndex, skipRows,
+							importOptions, checkpoint, sourceKey, progressListener);
+							if (rows >= 0) {
+								importedTables++;
+							}
+							if (progressListener != null) {
+								progressListener.onTableComplete(tableName, tableIndex, Math.max(rows, 0));
+							}
+							tableIndex++;
+							// 表完成的位置随下一批数据一起提交
+							checkpoint.startTable(tableIndex);
+							checkpoint.saveImport(db, sourceKey);
+						}
+						jsonReader.endObject();
+					}
+					jsonReader.endObject();
+					
+					TransferCheckpoint.clearImport(db, sourceKey);
+					db.setTransactionSuccessful();
+					log(DBCipherManager.LogLevel.INFO, "可续传导入完成，共导入 " + importedTables + " 个表", null);
+					return importedTables;
+				} finally {
+					db.endTransaction();
+				}
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "可续传导入中断，已提交的批次已保存，再次调用将从检查点继续", e);
+				return -1;
+			}
+		});
+	}
+	
+	/**
+	* 导入一个表，跳过之前已提交的 skipRows 行；每提交一批时同时提交检查点
+	* @return 本次导入的行数，-1表示表数据无法写入
+	*/
+	private int importTableResumable(SQLiteDatabase db, JsonReader jsonReader, String tableName, int tableIndex,
+	long skipRows, ImportOptions options, TransferCheckpoint checkpoint, String sourceKey,
+	ImportProgressListener progressListener) throws IOException {
+		if (options.isClearBeforeImport() && skipRows == 0) {
+			db.execSQL("DELETE FROM " + tableName);
+			log(DBCipherManager.LogLevel.DEBUG, "已清空表: " + tableName, null);
+		}
+		
+		int imported = 0;
+		boolean failed = false;
+		TableInserter inserter = new TableInserter(db, mTableManager, tableName);
+		try {
+			if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+				// 单行对象或单个值
+				if (skipRows > 0) {
+					jsonReader.skipValue();
+					return 0;
+				}
+				if (insertStreamRow(jsonReader, inserter)) {
+					imported++;
+				} else {
+					failed = true;
+				}
+			} else {
+				long position = 0;
+				int pendingRows = 0;
+				jsonReader.beginArray();
+				while (jsonReader.hasNext()) {
+					if (position < skipRows) {
+						jsonReader.skipValue();
+						position++;
+						continue;
+					}
+					if (insertStreamRow(jsonReader, inserter)) {
+						imported++;
+					} else {
+						failed = true;
+					}
+					position++;
+					if (++pendingRows >= options.getBatchSize()) {
+						checkpoint.tableIndex = tableIndex;
+						checkpoint.rowsDone = position;
+						checkpoint.saveImport(db, sourceKey);
+						db.setTransactionSuccessful();
+						db.endTransaction();
+						db.beginTransaction();
+						pendingRows = 0;
+						if (progressListener != null) {
+							progressListener.onBatchCommitted(tableName, imported);
+							checkCancelled(progressListener);
+						}
+					}
+				}
+				jsonReader.endArray();
+			}
+		} finally {
+			inserter.close();
+		}
+		
+		if (failed) {
+			log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 部分行导入失败", null);
+		}
+		return failed && imported == 0 ? -1 : imported;
+	}
+	
+	private boolean tableExists(SQLiteDatabase db, String tableName) {
+		return queryLong(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+		new String[]{tableName}) > 0;
+	}
+	
+	/**
+	* 表是否可以按 rowid 分页（不是 WITHOUT ROWID 表，且没有同名真实列遮蔽 rowid）
+	*/
+	private boolean hasUsableRowid(SQLiteDatabase db, String tableName) {
+		String sql = queryString(db, "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?",
+		new String[]{tableName});
+		if (sql == null || sql.toUpperCase(Locale.ROOT).replaceAll("\\s+", " ").trim().endsWith("WITHOUT ROWID")) {
+			return false;
+		}
+		for (String column : mTableManager.getColumnTypes(tableName).keySet()) {
+			if ("rowid".equalsIgnoreCase(column) || "oid".equalsIgnoreCase(column) || "_rowid_".equalsIgnoreCase(column)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	static long queryLong(SQLiteDatabase db, String sql, String[] args) {
+		Cursor cursor = db.rawQuery(sql, args);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	private static String queryString(SQLiteDatabase db, String sql, String[] args) {
+		Cursor cursor = db.rawQuery(sql, args);
+		try {
+			return cursor.moveToFirst() ? cursor.getString(0) : null;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	
+	// ==================== 压缩导出/导入功能 ====================
+	
+	/**
+	* 流式导出整个数据库为压缩的JSON
+	* 压缩在独立线程上进行，与游标读取和JSON序列化并行；不缓存完整数据
+	* @param outputStream 输出流（不会被关闭）
+	* @param format 压缩格式（GZIP 或 DEFLATE）
+	* @param level 压缩级别（0-9，或 Deflater.DEFAULT_COMPRESSION）
+	* @param progressListener 进度监听器（可选）
+	* @return 是否成功导出
+	*/
+	public boolean exportDatabaseToCompressedStream(OutputStream outputStream, CompressedOutputStream.Format format, int level,
+	ExportProgressListener progressListener) {
+		CompressedOutputStream compressed = null;
+		try {
+			compressed = CompressionUtils.compress(outputStream, format, level);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(compressed, StandardCharsets.UTF_8));
+			if (!exportDatabaseToJsonStream(writer, progressListener)) {
+				return false;
+			}
+			writer.flush();
+			compressed.finish();
+			return true;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "压缩导出数据库时发生异常", e);
+			return false;
+		} finally {
+			// 导出失败时停止压缩线程并释放 Deflater（已 finish 时无效果）
+			if (compressed != null) {
+				compressed.abort();
+			}
+		}
+	}
+	
+	/**
+	* 从压缩（GZIP/DEFLATE，按文件头自动识别）或未压缩的JSON流导入整个数据库
+	* @param inputStream 输入流（不会被关闭）
+	* @param options 导入选项，为null时使用默认选项
+	* @param progressListener 进度监听器（可选）
+	* @return 成功导入的表数量，-1表示解析或读取失败
+	*/
+	public int importDatabaseFromCompressedStream(InputStream inputStream, ImportOptions options, ImportProgressListener progressListener) {
+		try {
+			Reader reader = new InputStreamReader(CompressionUtils.decompress(inputStream), StandardCharsets.UTF_8);
+			return importDatabaseFromJsonStream(reader, options, progressListener);
+		} catch (IOException e) {
+			log(DBCipherManager.LogLevel.ERROR, "读取压缩数据头失败", e);
+			return -1;
+		}
+	}
+	
+	// ==================== 二进制导出/导入功能 ====================
+	
+	/**
+	* 以二进制格式导出整个数据库（格式说明见 BinaryDumpWriter）
+	* 值按SQLite存储类型写入，BLOB保存原始字节，不做JSON转义和Base64编码；在一致性读快照中执行
+	* @param outputStream 输出流（不会被关闭）
+	* @param progressListener 进度监听器（可选）
+	* @return 是否成功导出
+	*/
+	public boolean exportDatabaseToBinary(OutputStream outputStream, ExportProgressListener progressListener) {
+		return dbManager.executeInReadSnapshot(db -> {
+			log(DBCipherManager.LogLevel.INFO, "开始二进制导出整个数据库", null);
+			try {
+				BinaryDumpWriter dumpWriter = new BinaryDumpWriter(Channels.newChannel(outputStream));
+				dumpWriter.writeHeader(dbManager.getDatabaseName(), System.currentTimeMillis());
+				
+				List<String> tableNames = getAllTableNames(db);
+				int totalTables = tableNames.size();
+				for (int tableIndex = 0; tableIndex < totalTables; tableIndex++) {
+					String tableName = tableNames.get(tableIndex);
+					if (progressListener != null) {
+						progressListener.onTableStart(tableName, tableIndex, totalTables);
+						checkCancelled(progressListener);
+					}
+					
+					Cursor cursor = null;
+					try {
+						cursor = db.query(tableName, null, null, null, null, null, null);
+						int rowCount = cursor.getCount();
+						if (progressListener != null) {
+							progressListener.onTableSizeDetermined(tableName, rowCount);
+						}
+						
+						dumpWriter.beginTable(tableName, cursor.getColumnNames(), rowCount);
+						int rowIndex = 0;
+						while (cursor.moveToNext()) {
+							dumpWriter.writeRow(cursor);
+							if (progressListener != null) {
+								progressListener.onRowProcessed(tableName, rowIndex, rowCount);
+								checkCancelled(progressListener);
+							}
+							rowIndex++;
+						}
+						dumpWriter.endTable();
+					} finally {
+						if (cursor != null) cursor.close();
+					}
+					
+					if (progressListener != null) {
+						progressListener.onTableComplete(tableName, tableIndex, totalTables);
+					}
+				}
+				dumpWriter.finish();
+				
+				log(DBCipherManager.LogLevel.INFO, "二进制导出完成，共导出 " + totalTables + " 个表", null);
+				return true;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "二进制导出数据库时发生异常", e);
+				return false;
+			}
+		});
+	}
+	
+	/**
+	* 从二进制格式导入整个数据库
+	* @param inputStream 输入流（不会被关闭）
+	* @param options 导入选项，为null时使用默认选项
+	* @param progressListener 进度监听器（可选）
+	* 每个表块在一个事务中写入，读完并通过CRC校验后才提交；校验失败时该表（包括 clearBeforeImport 的清空）整体回滚，
+	* 之前已通过校验的表保持提交。options 中的批次大小对二进制导入不生效
+	* @return 成功导入的表数量，-1表示读取失败或校验和不符
+	*/
+	public int importDatabaseFromBinary(InputStream inputStream, ImportOptions options, ImportProgressListener progressListener) {
+		ImportOptions importOptions = options != null ? options : ImportOptions.defaults();
+		return dbManager.executeWithConnection(db -> {
+			log(DBCipherManager.LogLevel.INFO, "开始二进制导入数据库数据", null);
+			
+			StreamImportState state = new StreamImportState(db, importOptions.getBatchSize());
+			int importedTables = 0;
+			db.beginTransaction();
+			try {
+				BinaryDumpReader dumpReader = new BinaryDumpReader(Channels.newChannel(inputStream));
+				while (dumpReader.nextTable()) {
+					String tableName = dumpReader.getTableName();
+					String[] columns = dumpReader.getColumns();
+					if (isInternalTable(tableName)) {
+						// 下一次 nextTable() 会读取并校验剩余行后跳过
+						log(DBCipherManager.LogLevel.WARN, "跳过内部表: " + tableName, null);
+						continue;
+					}
+					if (progressListener != null) {
+						progressListener.onTableStart(tableName, importedTables);
+						checkCancelled(progressListener);
+					}
+					if (importOptions.isClearBeforeImport()) {
+						db.execSQL("DELETE FROM " + tableName);
+						log(DBCipherManager.LogLevel.DEBUG, "已清空表: " + tableName, null);
+					}
+					
+					int imported = 0;
+					boolean failed = false;
+					TableInserter inserter = new TableInserter(db, mTableManager, tableName);
+					try {
+						Object[] row;
+						while ((row = dumpReader.nextRow()) != null) {
+							inserter.beginRow();
+							for (int i = 0; i < columns.length; i++) {
+								if (columns[i].isEmpty()) {
+									inserter.putScalar(row[i]);
+								} else {
+									inserter.put(columns[i], row[i]);
+								}
+							}
+							if (inserter.endRow()) {
+								imported++;
+							} else {
+								failed = true;
+							}
+							if (progressListener != null) {
+								checkCancelled(progressListener);
+							}
+						}
+					} finally {
+						inserter.close();
+					}
+					// nextRow 返回null时表块已通过校验，此时才提交
+					state.commit();
+					if (progressListener != null) {
+						progressListener.onBatchCommitted(tableName, imported);
+					}
+					
+					if (failed) {
+						log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 部分行导入失败", null);
+					}
+					if (!failed || imported > 0) {
+						importedTables++;
+					}
+					if (progressListener != null) {
+						progressListener.onTableComplete(tableName, importedTables - 1, imported);
+					}
+				}
+				
+				db.setTransactionSuccessful();
+				log(DBCipherManager.LogLevel.INFO, "二进制导入完成，成功导入 " + importedTables + " 个表", null);
+				return importedTables;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "二进制导入数据库时发生异常", e);
+				return -1;
+			} finally {
+				db.endTransaction();
+			}
+		});
+	}
+	
+	/**
+	* 将二进制导出转换为JSON格式（与 exportDatabaseToJsonStream 的输出结构相同，便于调试查看）
+	* BLOB以Base64字符串写出
+	* @param inputStream 二进制导出输入流（不会被关闭）
+	* @param writer JSON输出写入器（不会被关闭）
+	* @return 是否转换成功
+	*/
+	public boolean convertBinaryToJson(InputStream inputStream, Writer writer) {
+		try {
+			BinaryDumpReader dumpReader = new BinaryDumpReader(Channels.newChannel(inputStream));
+			writer.write("{");
+			writer.write("\"database_name\":\"" + escapeJsonString(dumpReader.getDatabaseName()) + "\",");
+			writer.write("\"export_time\":" + dumpReader.getExportTime() + ",");
+			writer.write("\"tables\":{");
+			
+			int tableCount = 0;
+			while (dumpReader.nextTable()) {
+				if (tableCount > 0) writer.write(",");
+				writer.write("\"" + escapeJsonString(dumpReader.getTableName()) + "\":");
+				
+				// 与 exportTableToJsonStream 相同的结构规则
+				String[] columns = dumpReader.getColumns();
+				long rowCount = dumpReader.getRowCount();
+				Object[] row;
+				if (rowCount == 1 && columns.length == 1) {
+					writeJsonValue(writer, dumpReader.nextRow()[0]);
+				} else if (rowCount == 1) {
+					writeJsonRow(writer, columns, dumpReader.nextRow());
+				} else {
+					writer.write("[");
+					int rowIndex = 0;
+					while ((row = dumpReader.nextRow()) != null) {
+						if (rowIndex > 0) writer.write(",");
+						if (columns.length == 1) {
+							writeJsonValue(writer, row[0]);
+						} else {
+							writeJsonRow(writer, columns, row);
+						}
+						rowIndex++;
+					}
+					writer.write("]");
+				}
+				tableCount++;
+			}
+			
+			writer.write("},\"table_count\":" + tableCount + "}");
+			writer.flush();
+			return true;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "二进制导出转换为JSON时发生异常", e);
+			return false;
+		}
+	}
+	
+	/**
+	* 将JSON格式导出（exportDatabaseToJsonStream 的输出）转换为二进制格式
+	* 每个表的行会先缓存在内存中以确定列集合，适合调试和中小规模数据；
+	* 单值行的列名记为空字符串，导入时写入表的第一列；Base64字符串按TEXT写入
+	* @param reader JSON输入读取器（不会被关闭）
+	* @param outputStream 二进制输出流（不会被关闭）
+	* @return 是否转换成功
+	*/
+	public boolean convertJsonToBinary(Reader reader, OutputStream outputStream) {
+		try {
+			JsonReader jsonReader = new JsonReader(reader);
+			BinaryDumpWriter dumpWriter = new BinaryDumpWriter(Channels.newChannel(outputStream));
+			String databaseName = "";
+			long exportTime = 0;
+			boolean headerWritten = false;
+			
+			jsonReader.beginObject();
+			while (jsonReader.hasNext()) {
+				String name = jsonReader.nextName();
+				if ("database_name".equals(name) && jsonReader.peek() == JsonToken.STRING) {
+					databaseName = jsonReader.nextString();
+				} else if ("export_time".equals(name) && jsonReader.peek() == JsonToken.NUMBER) {
+					exportTime = jsonReader.nextLong();
+				} else if ("tables".equals(name) && !headerWritten) {
+					dumpWriter.writeHeader(databaseName, exportTime);
+					headerWritten = true;
+					jsonReader.beginObject();
+					while (jsonReader.hasNext()) {
+						writeJsonTableAsBinary(jsonReader, jsonReader.nextName(), dumpWriter);
+					}
+					jsonReader.endObject();
+				} else {
+					jsonReader.skipValue();
+				}
+			}
+			jsonReader.endObject();
+			
+			if (!headerWritten) {
+				dumpWriter.writeHeader(databaseName, exportTime);
+			}
+			dumpWriter.finish();
+			return true;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "JSON转换为二进制导出时发生异常", e);
+			return false;
+		}
+	}
+	
+	private void writeJsonTableAsBinary(JsonReader jsonReader, String tableName, BinaryDumpWriter dumpWriter) throws IOException {
+		List<String> columns = new ArrayList<>();
+		List<Map<String, Object>> rows = new ArrayList<>();
+		if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+			jsonReader.beginArray();
+			while (jsonReader.hasNext()) {
+				rows.add(readJsonRowForBinary(jsonReader, columns));
+			}
+			jsonReader.endArray();
+		} else {
+			rows.add(readJsonRowForBinary(jsonReader, columns));
+		}
+		
+		dumpWriter.beginTable(tableName, columns.toArray(new String[0]), rows.size());
+		Object[] values = new Object[columns.size()];
+		for (Map<String, Object> row : rows) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = row.get(columns.get(i));
+			}
+			dumpWriter.writeRow(values);
+		}
+		dumpWriter.endTable();
+	}
+	
+	private Map<String, Object> readJsonRowForBinary(JsonReader jsonReader, List<String> columns) throws IOException {
+		Map<String, Object> row = new HashMap<>();
+		if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+			jsonReader.beginObject();
+			while (jsonReader.hasNext()) {
+				String column = jsonReader.nextName();
+				if (!row.containsKey(column) && !columns.contains(column)) {
+					columns.add(column);
+				}
+				row.put(column, readStreamValue(jsonReader));
+			}
+			jsonReader.endObject();
+		} else {
+			if (!columns.contains("")) {
+				columns.add("");
+			}
+			row.put("", readStreamValue(jsonReader));
+		}
+		return row;
+	}
+	
+	private void writeJsonRow(Writer writer, String[] columns, Object[] row) throws IOException {
+		writer.write("{");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) writer.write(",");
+			writer.write("\"" + escapeJsonString(columns[i]) + "\":");
+			writeJsonValue(writer, row[i]);
+		}
+		writer.write("}");
+	}
+	
 	
 	// ==================== 日志辅助方法 ====================
 	
@@ -0,0 +1,147 @@
+package game.core;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* 单表批量插入器 - 供导入流程使用
+* 表的列信息只解析一次（来自 TableManager 的列类型目录），每种行结构（列组合）
+* 只编译一条 INSERT 语句并复用，值直接绑定到语句，不经过 ContentValues
+*
+* 非线程安全，需在持有连接的线程内使用，用完调用 close 释放语句
+*/
+class TableInserter {
+	private static final String TAG = "TableInserter";
+	
+	private final SQLiteDatabase db;
+	private final String tableName;
+	// 列名（小写，SQLite列名不区分大小写）
+	private final Set<String> columns = new HashSet<>();
+	private final String firstColumn;
+	// 行结构（列名列表）-> 预编译语句
+	private final Map<List<String>, SQLiteStatement> statements = new HashMap<>();
+	
+	// 当前行缓冲，逐行复用
+	private final List<String> rowColumns = new ArrayList<>();
+	private final List<Object> rowValues = new ArrayList<>();
+	
+	TableInserter(SQLiteDatabase db, TableManager tableManager, String tableName) {
+		this.db = db;
+		this.tableName = tableName;
+		Set<String> names = tableManager.getColumnTypes(tableName).keySet();
+		for (String name : names) {
+			columns.add(name.toLowerCase(Locale.ROOT));
+		}
+		this.firstColumn = names.isEmpty() ? "column1" : names.iterator().next(); // 与 getFirstColumnName 的默认列名一致
+	}
+	
+	/**
+	* 开始新的一行
+	*/
+	void beginRow() {
+		rowColumns.clear();
+		rowValues.clear();
+	}
+	
+	/**
+	* 设置当前行的列值（支持 null/Long/Integer/Double/Float/Boolean/String/byte[]）
+	*/
+	void put(String column, Object value) {
+		rowColumns.add(column);
+		rowValues.add(value);
+	}
+	
+	/**
+	* 以表的第一列写入单值行
+	*/
+	void putScalar(Object value) {
+		put(firstColumn, value);
+	}
+	
+	/**
+	* 插入当前行
+	* @return true插入成功，false插入失败（如列不存在或违反约束）
+	*/
+	boolean endRow() {
+		if (rowColumns.isEmpty()) {
+			return false;
+		}
+		try {
+			SQLiteStatement statement = statements.get(rowColumns);
+			if (statement == null) {
+				for (String column : rowColumns) {
+					if (!columns.contains(column.toLowerCase(Locale.ROOT))) {
+						log(DBCipherManager.LogLevel.WARN, "表 '" + tableName + "' 中不存在列: " + column, null);
+						return false;
+					}
+				}
+				statement = db.compileStatement(buildInsertSql(rowColumns));
+				statements.put(new ArrayList<>(rowColumns), statement);
+			}
+			
+			statement.clearBindings();
+			for (int i = 0; i < rowValues.size(); i++) {
+				bindValue(statement, i + 1, rowValues.get(i));
+			}
+			return statement.executeInsert() != -1;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.WARN, "插入行失败: " + tableName + ", " + e.getMessage(), null);
+			return false;
+		}
+	}
+	
+	/**
+	* 释放所有预编译语句
+	*/
+	void close() {
+		for (SQLiteStatement statement : statements.values()) {
+			statement.close();
+		}
+		statements.clear();
+	}
+	
+	private String buildInsertSql(List<String> columnNames) {
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(tableName)).append(" (");
+		StringBuilder placeholders = new StringBuilder();
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (i > 0) {
+				sql.append(", ");
+				placeholders.append(", ");
+			}
+			sql.append(quote(columnNames.get(i)));
+			placeholders.append('?');
+		}
+		return sql.append(") VALUES (").append(placeholders).append(')').toString();
+	}
+	
+	private void bindValue(SQLiteStatement statement, int index, Object value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			statement.bindLong(index, ((Number) value).longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof Boolean) {
+			statement.bindLong(index, (Boolean) value ? 1 : 0);
+		} else if (value instanceof byte[]) {
+			statement.bindBlob(index, (byte[]) value);
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+	
+	private static String quote(String identifier) {
+		return "\"" + identifier.replace("\"", "\"\"") + "\"";
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
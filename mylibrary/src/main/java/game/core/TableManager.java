@@ -10,17 +10,88 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 public class TableManager {
 	private static final String TAG = "TableManager";
 	private final DBCipherManager dbManager;
+	// 表结构目录缓存：表名 -> (列名 -> 声明类型，大写)，DDL操作后失效
+	private final Map<String, Map<String, String>> columnTypeCache = new ConcurrentHashMap<>();
 	
 	public TableManager(DBCipherManager dbManager) {
 		this.dbManager = dbManager;
 	}
 	
+	// ==================== 表结构目录 ====================
+	
+	/**
+	* 获取表的列声明类型（带缓存），供数值运算等按列类型分派
+	* @param tableName 表名
+	* @return 列名 -> 声明类型（大写，未声明为空字符串），表不存在时返回空Map
+	*/
+	public Map<String, String> getColumnTypes(String tableName) {
+		Map<String, String> cached = columnTypeCache.get(tableName);
+		if (cached != null) {
+			return cached;
+		}
+		
+		Map<String, String> types = dbManager.executeWithConnection(db -> {
+			Map<String, String> result = new LinkedHashMap<>();
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
+				while (cursor != null && cursor.moveToNext()) {
+					String type = cursor.getString(cursor.getColumnIndexOrThrow("type"));
+					result.put(cursor.getString(cursor.getColumnIndexOrThrow("name")),
+					type == null ? "" : type.toUpperCase(Locale.ROOT));
+				}
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "读取列类型失败: " + tableName, e);
+				return null;
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+			return result;
+		});
+		if (types == null) {
+			return Collections.emptyMap();
+		}
+		
+		Map<String, String> unmodifiable = Collections.unmodifiableMap(types);
+		// 表不存在时不缓存，避免建表后读到空结构
+		if (!types.isEmpty()) {
+			columnTypeCache.put(tableName, unmodifiable);
+		}
+		return unmodifiable;
+	}
+	
+	/**
+	* 获取单列的声明类型
+	* @return 声明类型（大写），列不存在返回null
+	*/
+	public String getColumnType(String tableName, String columnName) {
+		return getColumnTypes(tableName).get(columnName);
+	}
+	
+	/**
+	* 使指定表的结构缓存失效（通过其他途径执行DDL后调用）
+	*/
+	public void invalidateSchemaCache(String tableName) {
+		columnTypeCache.remove(tableName);
+	}
+	
+	/**
+	* 使全部表结构缓存失效
+	*/
+	public void invalidateSchemaCache() {
+		columnTypeCache.clear();
+	}
+	
 	// ==================== 表结构管理方法 ====================
 	
 	/**
@@ -175,6 +246,7 @@ public class TableManager {
 				db.execSQL(renameTableSQL);
 				db.setTransactionSuccessful();
 				success = true;
+				invalidateSchemaCache(tableName);
 				log(DBCipherManager.LogLevel.INFO, "字段类型修改成功", null);
 				
 			} catch (SQLException e) {
@@ -268,6 +340,7 @@ public class TableManager {
 				}
 				
 				db.setTransactionSuccessful();
+				invalidateSchemaCache(tableName);
 				log(DBCipherManager.LogLevel.INFO, "批量添加字段操作成功完成", null);
 				
 			} catch (SQLException e) {
@@ -307,6 +380,7 @@ public class TableManager {
 				String sql = "ALTER TABLE " + tableName + " ADD COLUMN " + columnName + " " + columnType + ";";
 				db.execSQL(sql);
 				success = true;
+				invalidateSchemaCache(tableName);
 				log(DBCipherManager.LogLevel.INFO, "字段 '" + columnName + "' 添加成功", null);
 			} catch (SQLException e) {
 				log(DBCipherManager.LogLevel.ERROR, "添加字段失败: " + columnName, e);
@@ -337,6 +411,7 @@ public class TableManager {
 				String sql = "CREATE TABLE IF NOT EXISTS " + tableName + " (" + tableSchema + ");";
 				db.execSQL(sql);
 				success = true;
+				invalidateSchemaCache(tableName);
 				log(DBCipherManager.LogLevel.INFO, "表 '" + tableName + "' 创建成功", null);
 			} catch (SQLException e) {
 				log(DBCipherManager.LogLevel.ERROR, "创建表失败: " + tableName,e);
@@ -569,6 +644,7 @@ public class TableManager {
 			try {
 				// 执行DROP TABLE语句
 				db.execSQL("DROP TABLE IF EXISTS " + tableName);
+				invalidateSchemaCache(tableName);
 				log(DBCipherManager.LogLevel.INFO, "表删除成功: " + tableName, null);
 				return true;
 			} catch (SQLException e) {
@@ -661,6 +737,7 @@ public class TableManager {
 			try {
 				// 关闭数据库连接
 				db.close();
+				invalidateSchemaCache();
 				
 				// 获取数据库文件路径
 				String dbPath = db.getPath();
@@ -0,0 +1,182 @@
+package game.core;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* 断点续传检查点
+* 导出检查点保存在目标文件旁的 .ckpt 文件中，记录当前表、该表最后导出的 rowid 和已落盘的字节数；
+* 导入检查点保存在数据库的 __transfer_checkpoint 表中，与每批数据在同一事务中提交，因此与已导入的数据总是一致
+*
+* 非线程安全
+*/
+class TransferCheckpoint {
+	static final String SIDECAR_SUFFIX = ".ckpt";
+	static final String CHECKPOINT_TABLE = "__transfer_checkpoint";
+	
+	// 来源标识：导出为数据库名，导入为源文件的长度和修改时间
+	final String fingerprint;
+	// 导出时的表顺序（导入时为空，表顺序由源文件决定）
+	final List<String> tables;
+	int tableIndex = 0;
+	long lastRowid = Long.MIN_VALUE;
+	long rowsDone = 0;
+	long bytes = 0;
+	
+	private TransferCheckpoint(String fingerprint, List<String> tables) {
+		this.fingerprint = fingerprint;
+		this.tables = tables;
+	}
+	
+	static TransferCheckpoint forExport(String databaseName, List<String> tables) {
+		return new TransferCheckpoint(databaseName, new ArrayList<>(tables));
+	}
+	
+	static TransferCheckpoint forImport(String fingerprint) {
+		return new TransferCheckpoint(fingerprint, new ArrayList<>());
+	}
+	
+	/**
+	* 移动到指定表的开头
+	*/
+	void startTable(int index) {
+		tableIndex = index;
+		lastRowid = Long.MIN_VALUE;
+		rowsDone = 0;
+	}
+	
+	boolean matches(String fingerprint) {
+		return this.fingerprint.equals(fingerprint);
+	}
+	
+	// ==================== 导出检查点（旁路文件） ====================
+	
+	static File sidecarFile(File target) {
+		return new File(target.getPath() + SIDECAR_SUFFIX);
+	}
+	
+	/**
+	* 读取导出检查点
+	* @return 检查点，不存在或已损坏返回null
+	*/
+	static TransferCheckpoint readSidecar(File target) {
+		File file = sidecarFile(target);
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			byte[] data = new byte[(int) file.length()];
+			try (InputStream in = new FileInputStream(file)) {
+				int offset = 0;
+				while (offset < data.length) {
+					int read = in.read(data, offset, data.length - offset);
+					if (read < 0) break;
+					offset += read;
+				}
+			}
+			JSONObject json = new JSONObject(new String(data, StandardCharsets.UTF_8));
+			JSONArray tableArray = json.getJSONArray("tables");
+			List<String> tables = new ArrayList<>();
+			for (int i = 0; i < tableArray.length(); i++) {
+				tables.add(tableArray.getString(i));
+			}
+			TransferCheckpoint checkpoint = new TransferCheckpoint(json.getString("fingerprint"), tables);
+			checkpoint.tableIndex = json.getInt("table_index");
+			checkpoint.lastRowid = json.getLong("last_rowid");
+			checkpoint.rowsDone = json.getLong("rows_done");
+			checkpoint.bytes = json.getLong("bytes");
+			return checkpoint;
+		} catch (IOException | JSONException e) {
+			DBCipherManager.log(DBCipherManager.LogLevel.WARN, "SqlUtilManager", "导出检查点文件无法读取，将重新导出", e);
+			return null;
+		}
+	}
+	
+	/**
+	* 写入导出检查点（先写临时文件再重命名，中断时不会留下半个检查点）
+	*/
+	void writeSidecar(File target) throws IOException {
+		JSONObject json = new JSONObject();
+		try {
+			json.put("fingerprint", fingerprint);
+			json.put("tables", new JSONArray(tables));
+			json.put("table_index", tableIndex);
+			json.put("last_rowid", lastRowid);
+			json.put("rows_done", rowsDone);
+			json.put("bytes", bytes);
+		} catch (JSONException e) {
+			throw new IOException("序列化检查点失败", e);
+		}
+		File file = sidecarFile(target);
+		File temp = new File(file.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+			out.getFD().sync();
+		}
+		if (!temp.renameTo(file)) {
+			throw new IOException("写入检查点失败: " + file.getPath());
+		}
+	}
+	
+	static void deleteSidecar(File target) {
+		File file = sidecarFile(target);
+		if (file.exists() && !file.delete()) {
+			DBCipherManager.log(DBCipherManager.LogLevel.WARN, "SqlUtilManager", "删除检查点文件失败: " + file.getPath(), null);
+		}
+	}
+	
+	// ==================== 导入检查点（数据库表） ====================
+	
+	static void ensureTable(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + CHECKPOINT_TABLE + " ("
+		+ "source TEXT PRIMARY KEY, "
+		+ "fingerprint TEXT NOT NULL, "
+		+ "table_index INTEGER NOT NULL, "
+		+ "rows_done INTEGER NOT NULL, "
+		+ "updated_at INTEGER NOT NULL)");
+	}
+	
+	/**
+	* 读取导入检查点
+	* @return 检查点，不存在返回null
+	*/
+	static TransferCheckpoint loadImport(SQLiteDatabase db, String source) {
+		Cursor cursor = db.rawQuery("SELECT fingerprint, table_index, rows_done FROM " + CHECKPOINT_TABLE
+		+ " WHERE source = ?", new String[]{source});
+		try {
+			if (!cursor.moveToFirst()) {
+				return null;
+			}
+			TransferCheckpoint checkpoint = forImport(cursor.getString(0));
+			checkpoint.tableIndex = cursor.getInt(1);
+			checkpoint.rowsDone = cursor.getLong(2);
+			return checkpoint;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	/**
+	* 在当前事务中记录导入位置（随本批数据一起提交）
+	*/
+	void saveImport(SQLiteDatabase db, String source) {
+		db.execSQL("INSERT OR REPLACE INTO " + CHECKPOINT_TABLE
+		+ " (source, fingerprint, table_index, rows_done, updated_at) VALUES (?, ?, ?, ?, ?)",
+		new Object[]{source, fingerprint, tableIndex, rowsDone, System.currentTimeMillis()});
+	}
+	
+	static void clearImport(SQLiteDatabase db, String source) {
+		db.execSQL("DELETE FROM " + CHECKPOINT_TABLE + " WHERE source = ?", new Object[]{source});
+	}
+}
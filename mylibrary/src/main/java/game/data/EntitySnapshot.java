@@ -0,0 +1,502 @@
+package game.data;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import game.core.DBCipherManager;
+
+/**
+* 实体快照 - 会话级的行数据内存镜像
+* 一次加载整行（或条件匹配的多行），读操作直接命中内存，写操作只记录脏字段，
+* 提交时每行只执行一条仅包含变更列的UPDATE，并以加载时的原值做冲突检测
+*
+* 通过 PropertyManager.openSnapshot 创建，非线程间共享时无需额外同步
+*/
+public class EntitySnapshot {
+	private static final String TAG = "EntitySnapshot";
+	// 查询时附加的rowid别名，避免与业务列冲突
+	private static final String ROWID_ALIAS = "_snapshot_rowid";
+	
+	private final DBCipherManager dbManager;
+	private final PropertyManager propertyManager;
+	private final String tableName;
+	private final String whereClause;
+	private final String[] whereArgs;
+	
+	// rowid -> 行状态，保持加载顺序
+	private final Map<Long, RowState> rows = new LinkedHashMap<>();
+	private ConflictPolicy conflictPolicy = ConflictPolicy.FAIL;
+	private ConflictListener conflictListener;
+	private ScheduledExecutorService flushScheduler;
+	
+	/**
+	* 冲突处理策略
+	*/
+	public enum ConflictPolicy {
+		// 保留本地脏字段并通知监听器，由调用方决定后续处理
+		FAIL,
+		// 放弃本地修改，以数据库当前值刷新快照
+		REFRESH,
+		// 忽略并发修改，强制以本地值覆盖
+		OVERWRITE
+	}
+	
+	/**
+	* 冲突监听器，提交时发现记录已被其他写入者修改时回调
+	*/
+	public interface ConflictListener {
+		/**
+		* @param tableName 表名
+		* @param rowId 冲突记录的rowid
+		* @param fields 发生冲突的脏字段
+		*/
+		void onConflict(String tableName, long rowId, Set<String> fields);
+	}
+	
+	/**
+	* 单行状态：当前值、脏字段及其加载时的原值
+	*/
+	private static class RowState {
+		final Map<String, Object> values = new HashMap<>();
+		final Map<String, Object> originals = new HashMap<>();
+		final Set<String> dirty = new LinkedHashSet<>();
+		
+		void markDirty(String field, Object newValue) {
+			if (!dirty.contains(field)) {
+				originals.put(field, values.get(field));
+				dirty.add(field);
+			}
+			values.put(field, newValue);
+		}
+		
+		void clearDirty() {
+			dirty.clear();
+			originals.clear();
+		}
+	}
+	
+	EntitySnapshot(DBCipherManager dbManager, PropertyManager propertyManager,
+	String tableName, String whereClause, String[] whereArgs) {
+		this.dbManager = dbManager;
+		this.propertyManager = propertyManager;
+		this.tableName = tableName;
+		this.whereClause = whereClause;
+		this.whereArgs = whereArgs;
+	}
+	
+	// ==================== 加载 ====================
+	
+	/**
+	* 从数据库加载（或重新加载）快照，未提交的修改会被丢弃
+	* @return 加载的行数，-1表示失败
+	*/
+	public synchronized int load() {
+		if (isDirty()) {
+			log(DBCipherManager.LogLevel.WARN, "重新加载快照，丢弃未提交的修改: " + tableName, null);
+		}
+		
+		Map<Long, RowState> loaded = dbManager.executeWithConnection(db -> queryRows(db, null));
+		if (loaded == null) {
+			return -1;
+		}
+		rows.clear();
+		rows.putAll(loaded);
+		log(DBCipherManager.LogLevel.DEBUG, "快照加载完成: " + tableName + ", 行数: " + rows.size(), null);
+		return rows.size();
+	}
+	
+	/**
+	* 查询快照行
+	* @param rowId 为null时按快照条件查询，否则只查询指定rowid
+	*/
+	private Map<Long, RowState> queryRows(SQLiteDatabase db, Long rowId) {
+		String sql = "SELECT rowid AS " + ROWID_ALIAS + ", * FROM " + tableName;
+		String[] args = whereArgs;
+		if (rowId != null) {
+			sql += " WHERE rowid = ?";
+			args = new String[]{String.valueOf(rowId)};
+		} else if (whereClause != null && !whereClause.trim().isEmpty()) {
+			sql += " WHERE " + whereClause;
+		}
+		
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery(sql, args);
+			Map<Long, RowState> result = new LinkedHashMap<>();
+			while (cursor != null && cursor.moveToNext()) {
+				RowState row = new RowState();
+				int columnCount = cursor.getColumnCount();
+				for (int i = 1; i < columnCount; i++) {
+					row.values.put(cursor.getColumnName(i), readValue(cursor, i));
+				}
+				result.put(cursor.getLong(0), row);
+			}
+			return result;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "加载快照失败: " + tableName, e);
+			return null;
+		} finally {
+			if (cursor != null) cursor.close();
+		}
+	}
+	
+	private Object readValue(Cursor cursor, int index) {
+		switch (cursor.getType(index)) {
+			case Cursor.FIELD_TYPE_NULL:
+			return null;
+			case Cursor.FIELD_TYPE_INTEGER:
+			return cursor.getLong(index);
+			case Cursor.FIELD_TYPE_FLOAT:
+			return cursor.getDouble(index);
+			case Cursor.FIELD_TYPE_BLOB:
+			return cursor.getBlob(index);
+			default:
+			return cursor.getString(index);
+		}
+	}
+	
+	// ==================== 读取 ====================
+	
+	/**
+	* 读取第一行的字段值（内存读取，不访问数据库）
+	*/
+	public synchronized <T> T get(String field, T defaultValue) {
+		RowState row = firstRow();
+		return row == null ? defaultValue : convert(row.values.get(field), defaultValue);
+	}
+	
+	/**
+	* 读取指定行的字段值（内存读取，不访问数据库）
+	*/
+	public synchronized <T> T get(long rowId, String field, T defaultValue) {
+		RowState row = rows.get(rowId);
+		return row == null ? defaultValue : convert(row.values.get(field), defaultValue);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> T convert(Object value, T defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		if (defaultValue == null) {
+			return (T) value;
+		}
+		try {
+			return (T) propertyManager.convertValue(value, defaultValue.getClass());
+		} catch (ClassCastException e) {
+			log(DBCipherManager.LogLevel.WARN, "快照字段类型转换失败: " + e.getMessage(), null);
+			return defaultValue;
+		}
+	}
+	
+	/**
+	* 获取快照中的所有rowid（加载顺序）
+	*/
+	public synchronized List<Long> getRowIds() {
+		return new ArrayList<>(rows.keySet());
+	}
+	
+	public synchronized int size() {
+		return rows.size();
+	}
+	
+	public synchronized boolean isDirty() {
+		for (RowState row : rows.values()) {
+			if (!row.dirty.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// ==================== 修改 ====================
+	
+	/**
+	* 设置第一行字段值，仅标记为脏，提交时写回
+	* @return false表示快照为空
+	*/
+	public synchronized boolean set(String field, Object value) {
+		RowState row = firstRow();
+		if (row == null) {
+			return false;
+		}
+		row.markDirty(field, value);
+		return true;
+	}
+	
+	/**
+	* 设置指定行字段值，仅标记为脏，提交时写回
+	* @return false表示快照中不存在该行
+	*/
+	public synchronized boolean set(long rowId, String field, Object value) {
+		RowState row = rows.get(rowId);
+		if (row == null) {
+			return false;
+		}
+		row.markDirty(field, value);
+		return true;
+	}
+	
+	/**
+	* 在内存中增加第一行的数值字段
+	* @return 更新后的值，-1表示记录或字段不存在，-2表示数值不足，-3表示溢出
+	*/
+	public synchronized long increase(String field, long delta) {
+		RowState row = firstRow();
+		if (row == null) {
+			return -1;
+		}
+		Object current = row.values.get(field);
+		if (current != null && !(current instanceof Number)) {
+			log(DBCipherManager.LogLevel.ERROR, "字段不是数值类型: " + field, null);
+			return -1;
+		}
+		long currentValue = current == null ? 0L : ((Number) current).longValue();
+		if (delta < 0 && currentValue < -delta) {
+			log(DBCipherManager.LogLevel.ERROR, "数值不足: " + field + "=" + currentValue + ", 尝试减少: " + (-delta), null);
+			return -2;
+		}
+		long newValue;
+		try {
+			newValue = Math.addExact(currentValue, delta);
+		} catch (ArithmeticException e) {
+			log(DBCipherManager.LogLevel.ERROR, "数值溢出: " + field, e);
+			return -3;
+		}
+		row.markDirty(field, newValue);
+		return newValue;
+	}
+	
+	/**
+	* 在内存中减少第一行的数值字段（防负值）
+	* @return 更新后的值，-1表示记录或字段不存在，-2表示数值不足
+	*/
+	public synchronized long decrease(String field, long delta) {
+		return increase(field, -delta);
+	}
+	
+	// ==================== 提交 ====================
+	
+	public synchronized void setConflictPolicy(ConflictPolicy policy) {
+		this.conflictPolicy = policy;
+	}
+	
+	public synchronized void setConflictListener(ConflictListener listener) {
+		this.conflictListener = listener;
+	}
+	
+	/**
+	* 将所有脏字段写回数据库
+	* 每行一条UPDATE，仅包含变更列；WHERE中附带脏字段加载时的原值，影响0行即视为冲突
+	* @return 成功写回的行数，-1表示失败
+	*/
+	public synchronized int flush() {
+		final List<Long> dirtyRows = new ArrayList<>();
+		for (Map.Entry<Long, RowState> entry : rows.entrySet()) {
+			if (!entry.getValue().dirty.isEmpty()) {
+				dirtyRows.add(entry.getKey());
+			}
+		}
+		if (dirtyRows.isEmpty()) {
+			return 0;
+		}
+		
+		final List<Long> conflicts = new ArrayList<>();
+		Integer written = dbManager.executeWithConnection(db -> {
+			int count = 0;
+			try {
+				db.beginTransaction();
+				for (Long rowId : dirtyRows) {
+					RowState row = rows.get(rowId);
+					int updated = writeRow(db, rowId, row, conflictPolicy != ConflictPolicy.OVERWRITE);
+					if (updated == 1) {
+						count++;
+					} else {
+						conflicts.add(rowId);
+					}
+				}
+				db.setTransactionSuccessful();
+				return count;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "快照写回失败: " + tableName, e);
+				return -1;
+			} finally {
+				db.endTransaction();
+			}
+		});
+		if (written == null || written < 0) {
+			return -1;
+		}
+		
+		for (Long rowId : dirtyRows) {
+			if (!conflicts.contains(rowId)) {
+				RowState row = rows.get(rowId);
+				row.clearDirty();
+				invalidatePropertyCache(row);
+			}
+		}
+		for (Long rowId : conflicts) {
+			handleConflict(rowId);
+		}
+		
+		log(DBCipherManager.LogLevel.INFO, "快照写回完成: " + tableName + ", 写回: " + written + ", 冲突: " + conflicts.size(), null);
+		return written;
+	}
+	
+	/**
+	* 写回单行
+	* @param checkConflict 是否以原值做冲突检测
+	* @return 影响的行数
+	*/
+	private int writeRow(SQLiteDatabase db, long rowId, RowState row, boolean checkConflict) {
+		StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+		List<Object> args = new ArrayList<>();
+		int index = 0;
+		for (String field : row.dirty) {
+			if (index++ > 0) sql.append(", ");
+			sql.append(field).append(" = ?");
+			args.add(row.values.get(field));
+		}
+		sql.append(" WHERE rowid = ?");
+		args.add(rowId);
+		if (checkConflict) {
+			for (String field : row.dirty) {
+				sql.append(" AND ").append(field).append(" IS ?");
+				args.add(row.originals.get(field));
+			}
+		}
+		
+		SQLiteStatement statement = db.compileStatement(sql.toString());
+		try {
+			for (int i = 0; i < args.size(); i++) {
+				bindValue(statement, i + 1, args.get(i));
+			}
+			return statement.executeUpdateDelete();
+		} finally {
+			statement.close();
+		}
+	}
+	
+	private void bindValue(SQLiteStatement statement, int index, Object value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			statement.bindLong(index, ((Number) value).longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof Boolean) {
+			statement.bindLong(index, (Boolean) value ? 1 : 0);
+		} else if (value instanceof byte[]) {
+			statement.bindBlob(index, (byte[]) value);
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+	
+	private void handleConflict(long rowId) {
+		RowState row = rows.get(rowId);
+		Set<String> fields = Collections.unmodifiableSet(new LinkedHashSet<>(row.dirty));
+		log(DBCipherManager.LogLevel.WARN, "快照写回冲突: " + tableName + ", rowid: " + rowId + ", 字段: " + fields, null);
+		
+		if (conflictPolicy == ConflictPolicy.REFRESH) {
+			Map<Long, RowState> fresh = dbManager.executeWithConnection(db -> queryRows(db, rowId));
+			if (fresh != null && fresh.containsKey(rowId)) {
+				rows.put(rowId, fresh.get(rowId));
+			} else if (fresh != null) {
+				// 记录已被删除
+				rows.remove(rowId);
+			}
+		}
+		if (conflictListener != null) {
+			try {
+				conflictListener.onConflict(tableName, rowId, fields);
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "冲突回调执行失败", e);
+			}
+		}
+	}
+	
+	/**
+	* 写回后失效PropertyManager中该记录的缓存
+	*/
+	private void invalidatePropertyCache(RowState row) {
+		Object id = row.values.get("id");
+		if (id != null) {
+			propertyManager.clearRecordCache(tableName, String.valueOf(id));
+		} else {
+			propertyManager.clearTableCache(tableName);
+		}
+	}
+	
+	// ==================== 定时写回 ====================
+	
+	/**
+	* 启动定时写回
+	* @param intervalMs 写回间隔（毫秒）
+	*/
+	public synchronized void startAutoFlush(long intervalMs) {
+		stopAutoFlush();
+		flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, TAG + "-flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flushScheduler.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.ERROR, "定时写回失败", e);
+			}
+		}, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	* 停止定时写回（不会触发写回）
+	*/
+	public synchronized void stopAutoFlush() {
+		if (flushScheduler != null) {
+			flushScheduler.shutdown();
+			flushScheduler = null;
+		}
+	}
+	
+	/**
+	* 结束会话：停止定时写回并提交剩余修改
+	* @return 成功写回的行数，-1表示失败
+	*/
+	public synchronized int close() {
+		stopAutoFlush();
+		return flush();
+	}
+	
+	// ==================== 辅助方法 ====================
+	
+	private RowState firstRow() {
+		return rows.isEmpty() ? null : rows.values().iterator().next();
+	}
+	
+	public String getTableName() {
+		return tableName;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "EntitySnapshot{" + tableName + (whereClause != null ? " WHERE " + whereClause + " " + Arrays.toString(whereArgs) : "") + ", rows=" + rows.size() + "}";
+	}
+	
+	private void log(DBCipherManager.LogLevel level, String message, Throwable throwable) {
+		DBCipherManager.log(level, TAG, message, throwable);
+	}
+}
@@ -0,0 +1,165 @@
+package game.data;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+* 数值运算引擎 - 按列类型分派的原始类型快速路径
+* INTEGER类列使用long运算（Math.addExact溢出检查），REAL类列使用double运算，
+* 仅声明为DECIMAL/NUMERIC的列才回退到BigDecimal
+*/
+final class NumericEngine {
+	
+	/**
+	* 数值种类
+	*/
+	enum Kind {
+		LONG, DOUBLE, DECIMAL
+	}
+	
+	private NumericEngine() {
+	}
+	
+	/**
+	* 根据列声明类型确定数值种类（参照SQLite类型亲和性规则）
+	* @param declaredType 列声明类型，未知时为null
+	* @param sample 当前值，声明类型无法判断时按值的Java类型判断
+	*/
+	static Kind kindOf(String declaredType, Object sample) {
+		if (declaredType != null && !declaredType.isEmpty()) {
+			String type = declaredType.toUpperCase(Locale.ROOT);
+			if (type.contains("DECIMAL") || type.contains("NUMERIC")) {
+				return Kind.DECIMAL;
+			}
+			if (type.contains("INT")) {
+				return Kind.LONG;
+			}
+			if (type.contains("REAL") || type.contains("FLOA") || type.contains("DOUB")) {
+				return Kind.DOUBLE;
+			}
+		}
+		if (sample instanceof BigDecimal) {
+			return Kind.DECIMAL;
+		}
+		if (sample instanceof Double || sample instanceof Float) {
+			return Kind.DOUBLE;
+		}
+		return Kind.LONG;
+	}
+	
+	/**
+	* 加减运算，结果为负时归零
+	* @return 与当前值相同Java类型的结果
+	* @throws ArithmeticException long运算溢出
+	*/
+	static Object addClamped(Kind kind, Number current, Number operand, boolean isIncrease) {
+		switch (kind) {
+			case LONG: {
+				long delta = operand.longValue();
+				long result = isIncrease
+				? Math.addExact(current.longValue(), delta)
+				: Math.subtractExact(current.longValue(), delta);
+				return box(result < 0 ? 0L : result, current);
+			}
+			case DOUBLE: {
+				double delta = operand.doubleValue();
+				double result = isIncrease ? current.doubleValue() + delta : current.doubleValue() - delta;
+				return box(result < 0 ? 0d : result, current);
+			}
+			default: {
+				BigDecimal delta = toBigDecimal(operand);
+				BigDecimal result = isIncrease ? toBigDecimal(current).add(delta) : toBigDecimal(current).subtract(delta);
+				if (result.signum() < 0) {
+					result = BigDecimal.ZERO;
+				}
+				return box(result, current);
+			}
+		}
+	}
+	
+	/**
+	* 比较当前值是否足够扣除
+	*/
+	static boolean isSufficient(Kind kind, Number current, Number operand) {
+		switch (kind) {
+			case LONG:
+			return current.longValue() >= operand.longValue();
+			case DOUBLE:
+			return current.doubleValue() >= operand.doubleValue();
+			default:
+			return toBigDecimal(current).compareTo(toBigDecimal(operand)) >= 0;
+		}
+	}
+	
+	/**
+	* 将数值直接转换为目标包装类型（不经过字符串解析）
+	* @return 转换结果，目标类型不是数值类型时返回null
+	*/
+	static Object convertNumber(Number value, Class<?> type) {
+		if (type == Long.class || type == long.class) {
+			return value.longValue();
+		} else if (type == Integer.class || type == int.class) {
+			return value.intValue();
+		} else if (type == Double.class || type == double.class) {
+			return value.doubleValue();
+		} else if (type == Float.class || type == float.class) {
+			return value.floatValue();
+		} else if (type == Short.class || type == short.class) {
+			return value.shortValue();
+		} else if (type == Byte.class || type == byte.class) {
+			return value.byteValue();
+		} else if (type == BigDecimal.class) {
+			return toBigDecimal(value);
+		}
+		return null;
+	}
+	
+	private static Object box(long value, Number original) {
+		if (original instanceof Integer) {
+			return (int) value;
+		} else if (original instanceof Short) {
+			return (short) value;
+		} else if (original instanceof Byte) {
+			return (byte) value;
+		} else if (original instanceof Double) {
+			return (double) value;
+		} else if (original instanceof Float) {
+			return (float) value;
+		} else if (original instanceof BigDecimal) {
+			return BigDecimal.valueOf(value);
+		}
+		return value;
+	}
+	
+	private static Object box(double value, Number original) {
+		if (original instanceof Float) {
+			return (float) value;
+		} else if (original instanceof Long) {
+			return (long) value;
+		} else if (original instanceof Integer) {
+			return (int) value;
+		} else if (original instanceof BigDecimal) {
+			return BigDecimal.valueOf(value);
+		}
+		return value;
+	}
+	
+	private static Object box(BigDecimal value, Number original) {
+		if (original instanceof BigDecimal) {
+			return value;
+		}
+		Object converted = convertNumber(value, original.getClass());
+		return converted != null ? converted : value;
+	}
+	
+	private static BigDecimal toBigDecimal(Number value) {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return BigDecimal.valueOf(value.longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			return BigDecimal.valueOf(value.doubleValue());
+		}
+		return new BigDecimal(value.toString());
+	}
+}
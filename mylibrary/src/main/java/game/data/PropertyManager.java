@@ -11,6 +11,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import game.core.DBCipherManager;
 import game.core.NumericFieldUpdater;
+import game.core.IdempotencyStore;
 import game.util.AESUtils;
 import game.core.SqlUtilManager;
 /**
@@ -23,17 +24,28 @@ public class PropertyManager {
 	
 	// 缓存管理，提升频繁访问的性能
 	private final Map<String, CacheEntry> valueCache = new ConcurrentHashMap<>();
+	// 二级索引：表名:记录ID -> 该记录下的缓存键，用于按记录精确失效
+	private final Map<String, Set<String>> recordCacheIndex = new ConcurrentHashMap<>();
+	// 二级索引：表名 -> 已缓存的记录ID，用于整表失效时无需扫描全部缓存
+	private final Map<String, Set<String>> tableRecordIndex = new ConcurrentHashMap<>();
 	private final long CACHE_DURATION = 5 * 60 * 1000; // 5分钟缓存
+	// 匹配 "id = ?" 形式的条件，可直接从参数中得到记录ID
+	private static final java.util.regex.Pattern ID_WHERE_PATTERN =
+	java.util.regex.Pattern.compile("^\\s*id\\s*=\\s*\\?\\s*$", java.util.regex.Pattern.CASE_INSENSITIVE);
+	// 不绑定具体记录的缓存（自定义条件操作）使用的记录标识
+	private static final String CUSTOM_RECORD = "custom";
+	// 解析时该表没有任何缓存记录（未查询数据库），与查询得到的空结果区分
+	private static final List<String> NO_CACHED_RECORDS = Collections.unmodifiableList(new ArrayList<>());
 	private String encryptionKey="xiugansiquanjiaH";
 	
 	public PropertyManager(DBCipherManager dbManager, String encryptionKeys) {
 		this.dbManager = dbManager;
-		this.numericUpdater = new NumericFieldUpdater(dbManager);
+		this.numericUpdater = dbManager.getNumericFieldUpdater();
 		this.encryptionKey = encryptionKeys;
 	}
 	public PropertyManager(DBCipherManager dbManager) {
 		this.dbManager = dbManager;
-		this.numericUpdater = new NumericFieldUpdater(dbManager);
+		this.numericUpdater = dbManager.getNumericFieldUpdater();
 	}
 	
 	// ==================== 缓存管理 ====================
@@ -57,18 +69,29 @@ public class PropertyManager {
 	/**
 	* 将值加密后存入缓存
 	*/
-	private void putToCache(String key, Object value) {
+	private void putToCache(String tableName, String recordId, String fieldName, Object value) {
 		if (value == null) return;
 		
 		try {
+			String key = generateCacheKey(tableName, recordId, fieldName);
 			String valueStr = value.toString();
 			String encrypted = AESUtils.encrypt(valueStr, encryptionKey);
 			valueCache.put(key, new CacheEntry(encrypted));
+			indexCacheKey(tableName, recordId, key);
 		} catch (Exception e) {
 			log(DBCipherManager.LogLevel.ERROR, "缓存加密失败", e);
 		}
 	}
 	
+	/**
+	* 将缓存键登记到记录索引和表索引中
+	*/
+	private void indexCacheKey(String tableName, String recordId, String cacheKey) {
+		recordCacheIndex.computeIfAbsent(generateRecordKey(tableName, recordId),
+		k -> ConcurrentHashMap.newKeySet()).add(cacheKey);
+		tableRecordIndex.computeIfAbsent(tableName, k -> ConcurrentHashMap.newKeySet()).add(recordId);
+	}
+	
 	/**
 	* 从缓存获取值并解密
 	*/
@@ -90,16 +113,140 @@ public class PropertyManager {
 	
 	/**
 	* 清理相关缓存
+	* 无条件写入时整表失效；带条件但无法解析出记录时同样退化为整表失效
 	*/
 	public void clearRelevantCache(String tableName, String whereClause) {
-		// 简化实现：根据表名清理缓存
-		valueCache.keySet().removeIf(key -> key.startsWith(tableName + ":"));
+		clearRelevantCache(tableName, whereClause, null);
+	}
+	
+	/**
+	* 清理相关缓存（按记录精确失效）
+	* "id = ?" 条件直接按参数失效；其他条件先解析出受影响的记录ID再逐条失效
+	* 注意：自定义条件应在写入前调用，避免条件字段被更新后无法匹配
+	* @param tableName 表名
+	* @param whereClause WHERE条件，为空表示无条件写入
+	* @param whereArgs 条件参数
+	*/
+	public void clearRelevantCache(String tableName, String whereClause, String[] whereArgs) {
+		evictRecords(tableName, resolveAffectedRecords(tableName, whereClause, whereArgs));
+	}
+	
+	/**
+	* 写入前解析受影响的记录（条件字段可能被本次写入修改），写入返回后再调用 evictRecords 失效；
+	* 写入完成前失效会让并发读取把旧值重新放入缓存
+	* @return 记录ID列表，null表示整表失效
+	*/
+	private List<String> resolveAffectedRecords(String tableName, String whereClause, String[] whereArgs) {
+		if (whereClause == null || whereClause.trim().isEmpty()) {
+			return null;
+		}
+		return resolveRecordIds(tableName, whereClause, whereArgs);
+	}
+	
+	/**
+	* 失效 resolveAffectedRecords 解析出的记录
+	*/
+	private void evictRecords(String tableName, List<String> recordIds) {
+		if (recordIds == null) {
+			clearTableCache(tableName);
+			return;
+		}
+		if (recordIds == NO_CACHED_RECORDS) {
+			// 解析后才缓存的记录无法判断是否命中条件，整表失效（该表缓存通常很少）
+			Set<String> cachedRecords = tableRecordIndex.get(tableName);
+			if (cachedRecords != null && !cachedRecords.isEmpty()) {
+				clearTableCache(tableName);
+			}
+			return;
+		}
+		
+		for (String recordId : recordIds) {
+			clearRecordCache(tableName, recordId);
+		}
+		// 自定义条件缓存不对应具体记录，任何带条件的写入都需要失效
+		clearRecordCache(tableName, CUSTOM_RECORD);
+	}
+	
+	/**
+	* 清理单条记录的全部缓存，复杂度与该记录的缓存键数量成正比
+	*/
+	public void clearRecordCache(String tableName, String recordId) {
+		Set<String> keys = recordCacheIndex.remove(generateRecordKey(tableName, recordId));
+		if (keys != null) {
+			for (String key : keys) {
+				valueCache.remove(key);
+			}
+		}
+		Set<String> records = tableRecordIndex.get(tableName);
+		if (records != null) {
+			records.remove(recordId);
+		}
+	}
+	
+	/**
+	* 整表缓存失效，仅用于DDL或无条件写入
+	*/
+	public void clearTableCache(String tableName) {
+		Set<String> records = tableRecordIndex.remove(tableName);
+		if (records == null) {
+			return;
+		}
+		for (String recordId : records) {
+			Set<String> keys = recordCacheIndex.remove(generateRecordKey(tableName, recordId));
+			if (keys != null) {
+				for (String key : keys) {
+					valueCache.remove(key);
+				}
+			}
+		}
+	}
+	
+	/**
+	* 解析条件命中的记录ID
+	* @return 记录ID列表，无法解析时返回null
+	*/
+	private List<String> resolveRecordIds(String tableName, String whereClause, String[] whereArgs) {
+		if (ID_WHERE_PATTERN.matcher(whereClause).matches() && whereArgs != null && whereArgs.length == 1) {
+			return Collections.singletonList(whereArgs[0]);
+		}
+		
+		// 参数化条件缺少参数时无法查询命中记录，退化为整表失效
+		if (whereArgs == null && whereClause.indexOf('?') >= 0) {
+			return null;
+		}
+		
+		// 该表没有缓存记录时无需查询
+		Set<String> cachedRecords = tableRecordIndex.get(tableName);
+		if (cachedRecords == null || cachedRecords.isEmpty()) {
+			return NO_CACHED_RECORDS;
+		}
+		
+		return dbManager.executeWithConnection(db -> {
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT id FROM " + tableName + " WHERE " + whereClause, whereArgs);
+				List<String> ids = new ArrayList<>();
+				while (cursor != null && cursor.moveToNext()) {
+					ids.add(cursor.getString(0));
+				}
+				return ids;
+			} catch (Exception e) {
+				log(DBCipherManager.LogLevel.WARN, "解析缓存失效记录失败，退化为整表失效: " + tableName, e);
+				return null;
+			} finally {
+				if (cursor != null) cursor.close();
+			}
+		});
 	}
 	
 	private String generateCacheKey(String tableName, String recordId, String fieldName) {
 		return tableName + ":" + recordId + ":" + fieldName;
 	}
 	
+	private String generateRecordKey(String tableName, String recordId) {
+		return tableName + ":" + recordId;
+	}
+	
 	// ==================== 核心数值操作方法（使用NumericFieldUpdater）====================
 	
 	/**
@@ -110,8 +257,24 @@ public class PropertyManager {
 			long result = numericUpdater.safeIncrement(tableName, recordId, fieldName, increment);
 			if (result >= 0) {
 				// 更新缓存
-				String cacheKey = generateCacheKey(tableName, recordId, fieldName);
-				putToCache(cacheKey, result);
+				putToCache(tableName, recordId, fieldName, result);
+			}
+			return result;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "安全增加数值失败", e);
+			return -1;
+		}
+	}
+	
+	/**
+	* 幂等的安全增加：同一operationId重试只生效一次
+	*/
+	public long safeIncrement(String tableName, String recordId, String fieldName, long increment,
+	String operationId) {
+		try {
+			long result = numericUpdater.safeIncrement(tableName, recordId, fieldName, increment, operationId);
+			if (result >= 0) {
+				putToCache(tableName, recordId, fieldName, result);
 			}
 			return result;
 		} catch (Exception e) {
@@ -128,8 +291,24 @@ public class PropertyManager {
 			long result = numericUpdater.safeDecrement(tableName, recordId, fieldName, decrement);
 			if (result >= 0) {
 				// 更新缓存
-				String cacheKey = generateCacheKey(tableName, recordId, fieldName);
-				putToCache(cacheKey, result);
+				putToCache(tableName, recordId, fieldName, result);
+			}
+			return result;
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "安全减少数值失败", e);
+			return -1;
+		}
+	}
+	
+	/**
+	* 幂等的安全减少：同一operationId重试只生效一次
+	*/
+	public long safeDecrement(String tableName, String recordId, String fieldName, long decrement,
+	String operationId) {
+		try {
+			long result = numericUpdater.safeDecrement(tableName, recordId, fieldName, decrement, operationId);
+			if (result >= 0) {
+				putToCache(tableName, recordId, fieldName, result);
 			}
 			return result;
 		} catch (Exception e) {
@@ -144,9 +323,31 @@ public class PropertyManager {
 	public long safeUpdate(String tableName, String whereClause, String[] whereArgs,
 	String fieldName, long delta) {
 		try {
-			long result = numericUpdater.safeUpdate(tableName, whereClause, whereArgs, fieldName, delta);
-			// 注意：自定义条件更新可能影响多条记录，不更新缓存
-			return result;
+			// 自定义条件更新可能影响多条记录，不写入缓存；更新前解析命中的记录，更新返回后失效
+			List<String> affected = resolveAffectedRecords(tableName, whereClause, whereArgs);
+			try {
+				return numericUpdater.safeUpdate(tableName, whereClause, whereArgs, fieldName, delta);
+			} finally {
+				evictRecords(tableName, affected);
+			}
+		} catch (Exception e) {
+			log(DBCipherManager.LogLevel.ERROR, "安全更新数值失败", e);
+			return -1;
+		}
+	}
+	
+	/**
+	* 幂等的自定义条件安全更新：同一operationId重试只生效一次
+	*/
+	public long safeUpdate(String tableName, String whereClause, String[] whereArgs,
+	String fieldName, long delta, String operationId) {
+		try {
+			List<String> affected = resolveAffectedRecords(tableName, whereClause, whereArgs);
+			try {
+				return numericUpdater.safeUpdate(tableName, whereClause, whereArgs, fieldName, delta, operationId);
+			} finally {
+				evictRecords(tableName, affected);
+			}
 		} catch (Exception e) {
 			log(DBCipherManager.LogLevel.ERROR, "安全更新数值失败", e);
 			return -1;
@@ -159,12 +360,13 @@ public class PropertyManager {
 	public boolean updateMultipleFields(String tableName, String whereClause, String[] whereArgs,
 	Map<String, Long> fieldUpdates) {
 		try {
-			boolean success = numericUpdater.updateMultipleFields(tableName, whereClause, whereArgs, fieldUpdates);
-			if (success) {
-				// 清理相关缓存
-				clearRelevantCache(tableName, whereClause);
+			// 在更新前解析受影响的记录，避免条件字段被更新后无法匹配；更新返回后再失效
+			List<String> affected = resolveAffectedRecords(tableName, whereClause, whereArgs);
+			try {
+				return numericUpdater.updateMultipleFields(tableName, whereClause, whereArgs, fieldUpdates);
+			} finally {
+				evictRecords(tableName, affected);
 			}
-			return success;
 		} catch (Exception e) {
 			log(DBCipherManager.LogLevel.ERROR, "多字段原子更新失败", e);
 			return false;
@@ -187,7 +389,7 @@ public class PropertyManager {
 		
 		// 缓存未命中，查询数据库
 		long value = getNumericValue(tableName, "id = ?", new String[]{recordId}, fieldName, 0L);
-		putToCache(cacheKey, value);
+		putToCache(tableName, recordId, fieldName, value);
 		return value;
 	}
 	
@@ -205,10 +407,32 @@ public class PropertyManager {
 		
 		// 缓存未命中，查询数据库
 		String value = getStringValue(tableName, "id = ?", new String[]{recordId}, fieldName, "");
-		putToCache(cacheKey, value);
+		putToCache(tableName, recordId, fieldName, value);
 		return value;
 	}
 	
+	// ==================== 实体快照 ====================
+	
+	/**
+	* 打开实体快照：一次加载匹配的整行数据，后续读写在内存中完成，
+	* 调用 flush/close 时只写回变更列（见 EntitySnapshot）
+	* @return 快照实例，加载失败返回null
+	*/
+	public EntitySnapshot openSnapshot(String tableName, String whereClause, String[] whereArgs) {
+		EntitySnapshot snapshot = new EntitySnapshot(dbManager, this, tableName, whereClause, whereArgs);
+		if (snapshot.load() < 0) {
+			return null;
+		}
+		return snapshot;
+	}
+	
+	/**
+	* 按记录ID打开实体快照
+	*/
+	public EntitySnapshot openSnapshot(String tableName, String recordId) {
+		return openSnapshot(tableName, "id = ?", new String[]{recordId});
+	}
+	
 	//获取当前值
 	private <T> T queryProperty(String tableName, String property, String whereClause,
 	String[] whereArgs, T defaultValue) {
@@ -296,8 +520,9 @@ public class PropertyManager {
 					boolean hasQuantityField = false;
 					boolean insufficient = false; // 标记是否不足
 					
-					// 1. 获取现有记录
+					// 1. 获取现有记录及列类型
 					ContentValues existingData = dbManager.querySingle(tableName, whereClause, whereArgs);
+					Map<String, String> columnTypes = dbManager.getTableManager().getColumnTypes(tableName);
 					
 					// 2. 遍历所有字段，检查数值字段
 					for (String field : values.keySet()) {
@@ -308,30 +533,19 @@ public class PropertyManager {
 							// 获取现有值
 							Object existingValue = existingData.get(field);
 							if (existingValue instanceof Number) {
-								// 计算新值
-								BigDecimal existing = convertToBigDecimal(existingValue);
-								BigDecimal operationValue = convertToBigDecimal(newValue);
-								BigDecimal result;
-								
-								if ("增加".equals(operation)) {
-									result = existing.add(operationValue);
-								} else { // "减少"
-									// 检查是否足够扣除
-									if (existing.compareTo(operationValue) < 0) {
-										insufficient = true;
-										// 跳过后续字段处理
-										break;
-									}
-									result = existing.subtract(operationValue);
-								}
+								// 按列类型选择运算方式（long/double，DECIMAL列才使用BigDecimal）
+								NumericEngine.Kind kind = NumericEngine.kindOf(columnTypes.get(field), existingValue);
+								boolean isIncrease = "增加".equals(operation);
 								
-								// 防止负值
-								if (result.compareTo(BigDecimal.ZERO) < 0) {
-									result = BigDecimal.ZERO;
+								// 检查是否足够扣除
+								if (!isIncrease && !NumericEngine.isSufficient(kind, (Number) existingValue, (Number) newValue)) {
+									insufficient = true;
+									// 跳过后续字段处理
+									break;
 								}
 								
-								// 添加更新值
-								Object newVal = convertToOriginalType(result, existingValue.getClass());
+								// 计算新值（结果为负时归零）
+								Object newVal = NumericEngine.addClamped(kind, (Number) existingValue, (Number) newValue, isIncrease);
 								putValueToContentValues(updateValues, field, newVal);
 								hasQuantityField = true;
 							}
@@ -439,25 +653,6 @@ public class PropertyManager {
 	}
 	
 	
-	
-	
-	private BigDecimal convertToBigDecimal(Object value) {
-		if (value instanceof Integer) {
-			return BigDecimal.valueOf((Integer) value);
-		} else if (value instanceof Long) {
-			return BigDecimal.valueOf((Long) value);
-		} else if (value instanceof Double) {
-			return BigDecimal.valueOf((Double) value);
-		} else if (value instanceof Float) {
-			return BigDecimal.valueOf((Float) value);
-		} else if (value instanceof BigDecimal) {
-			return (BigDecimal) value;
-		} else {
-			return new BigDecimal(value.toString());
-		}
-	}
-	
-	
 	@SuppressWarnings("unchecked")
 	private <T> T handleIncrease(String tableName, String property, Object increment,
 	T currentValue, T defaultValue, String whereClause, String[] whereArgs) {
@@ -492,7 +687,7 @@ public class PropertyManager {
 		}
 		
 		// 非数值类型保持原有逻辑
-		Object newValue = performArithmeticOperation(currentValue, increment, true);
+		Object newValue = performArithmeticOperation(tableName, property, currentValue, increment, true);
 		return updateProperty(tableName, property, newValue, defaultValue, whereClause, whereArgs);
 	}
 	
@@ -509,7 +704,7 @@ public class PropertyManager {
 		}
 		
 		// 非数值类型保持原有逻辑
-		Object newValue = performArithmeticOperation(currentValue, decrement, false);
+		Object newValue = performArithmeticOperation(tableName, property, currentValue, decrement, false);
 		return updateProperty(tableName, property, newValue, defaultValue, whereClause, whereArgs);
 	}
 	
@@ -525,8 +720,7 @@ public class PropertyManager {
 			
 			if (result >= 0) {
 				// 更新缓存
-				String cacheKey = generateCacheKey(tableName, "custom", property);
-				putToCache(cacheKey, result);
+				putToCache(tableName, CUSTOM_RECORD, property, result);
 				
 				return (T) convertToOriginalType(result, defaultValue);
 			} else {
@@ -550,8 +744,7 @@ public class PropertyManager {
 			
 			if (result >= 0) {
 				// 更新缓存
-				String cacheKey = generateCacheKey(tableName, "custom", property);
-				putToCache(cacheKey, result);
+				putToCache(tableName, CUSTOM_RECORD, property, result);
 				
 				return (T) convertToOriginalType(result, defaultValue);
 			} else {
@@ -595,7 +788,13 @@ public class PropertyManager {
 		ContentValues values = new ContentValues();
 		putValueToContentValues(values, property, newValue);
 		
-		int updated = dbManager.updateData(tableName, values, whereClause, whereArgs);
+		List<String> affected = resolveAffectedRecords(tableName, whereClause, whereArgs);
+		int updated;
+		try {
+			updated = dbManager.updateData(tableName, values, whereClause, whereArgs);
+		} finally {
+			evictRecords(tableName, affected);
+		}
 		return updated > 0 ? (T) newValue : defaultValue;
 	}
 	/**
@@ -622,45 +821,17 @@ public class PropertyManager {
 	}
 	
 	/**
-	* 执行算术运算
+	* 执行算术运算（按列声明类型分派到long/double/BigDecimal）
 	*/
-	private Object performArithmeticOperation(Object currentValue, Object operationValue, boolean isIncrease) {
+	private Object performArithmeticOperation(String tableName, String property,
+	Object currentValue, Object operationValue, boolean isIncrease) {
 		if (!(currentValue instanceof Number) || !(operationValue instanceof Number)) {
 			throw new IllegalArgumentException("算术运算只支持数值类型");
 		}
 		
-		BigDecimal current = convertToBigDecimal(currentValue);
-		BigDecimal operation = convertToBigDecimal(operationValue);
-		BigDecimal result;
-		
-		if (isIncrease) {
-			result = current.add(operation);
-		} else {
-			result = current.subtract(operation);
-			if (result.compareTo(BigDecimal.ZERO) < 0) {
-				result = BigDecimal.ZERO;
-			}
-		}
-		
-		return convertToOriginalType(result, currentValue.getClass());
-	}
-	
-	/**
-	* 类型转换辅助方法
-	*/
-	@SuppressWarnings("unchecked")
-	private <T> T convertToOriginalType(BigDecimal value, Class<?> targetType) {
-		if (targetType == Integer.class || targetType == int.class) {
-			return (T) Integer.valueOf(value.intValue());
-		} else if (targetType == Long.class || targetType == long.class) {
-			return (T) Long.valueOf(value.longValue());
-		} else if (targetType == Double.class || targetType == double.class) {
-			return (T) Double.valueOf(value.doubleValue());
-		} else if (targetType == Float.class || targetType == float.class) {
-			return (T) Float.valueOf(value.floatValue());
-		} else {
-			return (T) value;
-		}
+		NumericEngine.Kind kind = NumericEngine.kindOf(
+		dbManager.getTableManager().getColumnType(tableName, property), currentValue);
+		return NumericEngine.addClamped(kind, (Number) currentValue, (Number) operationValue, isIncrease);
 	}
 	
 	
@@ -677,6 +848,14 @@ public class PropertyManager {
 			return (T) value;
 		}
 		
+		// 数值之间直接转换，避免字符串往返解析
+		if (value instanceof Number) {
+			Object converted = NumericEngine.convertNumber((Number) value, type);
+			if (converted != null) {
+				return (T) converted;
+			}
+		}
+		
 		try {
 			if (type == String.class) {
 				return (T) value.toString();
@@ -761,8 +940,7 @@ public class PropertyManager {
 			
 			if (result >= 0) {
 				// 更新缓存
-				String cacheKey = generateCacheKey(tableName, "custom", property);
-				putToCache(cacheKey, result);
+				putToCache(tableName, CUSTOM_RECORD, property, result);
 				
 				return (T) convertToOriginalType(result, defaultValue);
 			} else {
@@ -871,9 +1049,11 @@ public class PropertyManager {
 	
 	/**
 	* 批量数值操作（支持混合操作类型）
+	* 标记为幂等（setIdempotent）的操作以operationId去重，已执行过的操作直接返回首次结果
 	*/
 	public Map<String, Object> batchNumericOperations(String tableName, List<NumericOperation> operations) {
 		Map<String, Object> results = new HashMap<>();
+		IdempotencyStore idempotencyStore = numericUpdater.getIdempotencyStore();
 		
 		return dbManager.executeWithConnection(db -> {
 			try {
@@ -881,6 +1061,14 @@ public class PropertyManager {
 				
 				for (NumericOperation operation : operations) {
 					try {
+						if (operation.isIdempotent()) {
+							String recorded = idempotencyStore.lookup(db, operation.getOperationId());
+							if (recorded != null) {
+								results.put(operation.getOperationId(),
+								convertRecordedResult(recorded, operation.getReturnType()));
+								continue;
+							}
+						}
 						Object result = executeSingleNumericOperation(db, operation);
 						results.put(operation.getOperationId(), result);
 					} catch (Exception e) {
@@ -904,9 +1092,16 @@ public class PropertyManager {
 	
 	/**
 	* 获取数值字段的统计信息
+	* 无条件查询且该字段已启用物化统计（MaterializedStats）时直接读取统计行，否则全表聚合
 	*/
 	public Map<String, Object> getNumericFieldStats(String tableName, String fieldName,
 	String whereClause, String[] whereArgs) {
+		if (whereClause == null || whereClause.trim().isEmpty()) {
+			Map<String, Object> materialized = dbManager.getMaterializedStats().getStats(tableName, fieldName);
+			if (materialized != null) {
+				return materialized;
+			}
+		}
 		return dbManager.executeWithConnection(db -> {
 			Map<String, Object> stats = new HashMap<>();
 			Cursor cursor = null;
@@ -941,6 +1136,20 @@ public class PropertyManager {
 		});
 	}
 	
+	/**
+	* 获取单个分组的数值统计信息
+	* 已按该分组列启用物化统计时直接读取统计行，否则按 "分组列 = ?" 条件聚合
+	*/
+	public Map<String, Object> getGroupedNumericFieldStats(String tableName, String fieldName,
+	String groupColumn, String groupValue) {
+		Map<String, Object> materialized = dbManager.getMaterializedStats()
+		.getStats(tableName, fieldName, groupColumn, groupValue);
+		if (materialized != null) {
+			return materialized;
+		}
+		return getNumericFieldStats(tableName, fieldName, groupColumn + " = ?", new String[]{groupValue});
+	}
+	
 	/**
 	* 数值范围查询
 	*/
@@ -1085,7 +1294,11 @@ public class PropertyManager {
 			boolean updateSuccess = updateNumericValue(db, operation, result);
 			
 			if (updateSuccess) {
-				// 4. 根据期望的返回类型转换结果
+				// 4. 幂等操作在同一事务中记录结果
+				if (operation.isIdempotent()) {
+					numericUpdater.getIdempotencyStore().record(db, operation.getOperationId(), formatRecordedResult(result));
+				}
+				// 5. 根据期望的返回类型转换结果
 				return convertResultToTargetType(result, operation.getReturnType());
 			} else {
 				throw new RuntimeException("数据库更新失败");
@@ -1162,6 +1375,39 @@ public class PropertyManager {
 		}
 	}
 	
+	/**
+	* 幂等记录的结果文本：整数值按long记录，重放结果与首次返回的值一致
+	* 注意：数值运算本身按double进行，超过2^53的整数在运算时已被舍入，记录的是舍入后的值
+	*/
+	private String formatRecordedResult(double result) {
+		if (result == Math.rint(result) && Math.abs(result) < 0x1p63) {
+			return String.valueOf((long) result);
+		}
+		return String.valueOf(result);
+	}
+	
+	/**
+	* 将幂等记录的结果转换为目标类型
+	* 没有小数部分的结果按long解析，避免整数结果再经过一次double转换
+	*/
+	@SuppressWarnings("unchecked")
+	private <T> T convertRecordedResult(String recorded, Class<T> targetType) {
+		long value;
+		try {
+			value = Long.parseLong(recorded);
+		} catch (NumberFormatException e) {
+			return convertResultToTargetType(Double.parseDouble(recorded), targetType);
+		}
+		if (targetType == Long.class || targetType == long.class) {
+			return (T) Long.valueOf(value);
+		} else if (targetType == Integer.class || targetType == int.class) {
+			return (T) Integer.valueOf((int) value);
+		} else if (targetType == BigDecimal.class) {
+			return (T) BigDecimal.valueOf(value);
+		}
+		return convertResultToTargetType((double) value, targetType);
+	}
+	
 	/**
 	* 创建错误结果
 	*/
@@ -1179,7 +1425,7 @@ public class PropertyManager {
 	/**
 	* 数值操作描述类
 	*/
-	static class NumericOperation {
+	public static class NumericOperation {
 		private String operationId;
 		private String tableName;
 		private String whereClause;
@@ -1191,9 +1437,11 @@ public class PropertyManager {
 		private Object defaultValue;
 		private boolean preventNegative;
 		private boolean throwExceptionOnError;
+		// 为true时operationId作为幂等键持久化去重，需保证其全局唯一
+		private boolean idempotent;
 		private Map<String, Object> customProperties;
 		
-		enum OperationType {
+		public enum OperationType {
 			// 基本算术
 			INCREMENT, DECREMENT, MULTIPLY, DIVIDE,
 			// 数学函数
@@ -1236,12 +1484,14 @@ public class PropertyManager {
 		public Object getDefaultValue() { return defaultValue; }
 		public boolean isPreventNegative() { return preventNegative; }
 		public boolean isThrowExceptionOnError() { return throwExceptionOnError; }
+		public boolean isIdempotent() { return idempotent && operationId != null; }
 		public Map<String, Object> getCustomProperties() { return customProperties; }
 		
 		public void setReturnType(Class<?> returnType) { this.returnType = returnType; }
 		public void setDefaultValue(Object defaultValue) { this.defaultValue = defaultValue; }
 		public void setPreventNegative(boolean preventNegative) { this.preventNegative = preventNegative; }
 		public void setThrowExceptionOnError(boolean throwExceptionOnError) { this.throwExceptionOnError = throwExceptionOnError; }
+		public void setIdempotent(boolean idempotent) { this.idempotent = idempotent; }
 		public void setCustomProperty(String key, Object value) { this.customProperties.put(key, value); }
 	}
 	
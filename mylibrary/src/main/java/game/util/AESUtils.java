@@ -1,5 +1,8 @@
 package game.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.SecureRandom;
 import java.util.Arrays;
@@ -124,6 +127,26 @@ public class AESUtils {
 		return result;
 	}
 	
+	/* 创建分块加密输出流（原始密钥16/24/32字节），以恒定内存加密任意大小的数据，格式见 AesGcmOutputStream */
+	public static AesGcmOutputStream encryptStream(OutputStream out, byte[] key) throws IOException {
+		return new AesGcmOutputStream(out, key);
+	}
+	
+	/* 创建分块加密输出流（口令经PBKDF2派生密钥，随机盐写入文件头） */
+	public static AesGcmOutputStream encryptStream(OutputStream out, char[] password) throws IOException {
+		return new AesGcmOutputStream(out, password);
+	}
+	
+	/* 打开分块加密输入流（原始密钥） */
+	public static AesGcmInputStream decryptStream(InputStream in, byte[] key) throws IOException {
+		return new AesGcmInputStream(in, key);
+	}
+	
+	/* 打开分块加密输入流（口令） */
+	public static AesGcmInputStream decryptStream(InputStream in, char[] password) throws IOException {
+		return new AesGcmInputStream(in, password);
+	}
+	
 	// byte2hex 和 hex2byte 方法保持不变
 	public static String byte2hex(byte[] b) {
 		StringBuffer sb = new StringBuffer(b.length * 2);
@@ -0,0 +1,189 @@
+package game.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+* AES-GCM 分块解密输入流（格式说明见 AesGcmOutputStream）
+* 每块解密时校验认证标签；数据被篡改、块被重排、文件被截断或末尾被追加数据时抛出 IOException，
+* 已读出的数据只来自通过认证的块
+*/
+public class AesGcmInputStream extends FilterInputStream {
+	private static final String CIPHER_MODE = "AES/GCM/NoPadding";
+	
+	private final DataInputStream in;
+	private final Cipher cipher;
+	private final SecretKeySpec key;
+	private final byte[] header;
+	private final byte[] noncePrefix;
+	private final int chunkSize;
+	private final byte[] encrypted;
+	private final byte[] plain;
+	private int plainPosition = 0;
+	private int plainLength = 0;
+	private long counter = 0;
+	private boolean finalChunkRead = false;
+	
+	/**
+	* 使用原始密钥打开加密流
+	*/
+	public AesGcmInputStream(InputStream source, byte[] rawKey) throws IOException {
+		this(source, rawKey, null);
+	}
+	
+	/**
+	* 使用口令打开加密流（盐和迭代次数从文件头读取）
+	*/
+	public AesGcmInputStream(InputStream source, char[] password) throws IOException {
+		this(source, null, password);
+	}
+	
+	private AesGcmInputStream(InputStream source, byte[] rawKey, char[] password) throws IOException {
+		super(new BufferedInputStream(source, AesGcmOutputStream.DEFAULT_CHUNK_SIZE + AesGcmOutputStream.TAG_LENGTH + 4));
+		this.in = new DataInputStream(super.in);
+		
+		header = new byte[AesGcmOutputStream.HEADER_LENGTH];
+		in.readFully(header);
+		DataInputStream headerIn = new DataInputStream(new ByteArrayInputStream(header));
+		byte[] magic = new byte[AesGcmOutputStream.MAGIC.length];
+		headerIn.readFully(magic);
+		if (!Arrays.equals(magic, AesGcmOutputStream.MAGIC)) {
+			throw new IOException("不是有效的加密导出文件");
+		}
+		int version = headerIn.readUnsignedByte();
+		if (version > AesGcmOutputStream.VERSION) {
+			throw new IOException("不支持的加密格式版本: " + version);
+		}
+		chunkSize = headerIn.readInt();
+		if (chunkSize <= 0 || chunkSize > AesGcmOutputStream.MAX_CHUNK_SIZE) {
+			throw new IOException("文件头中的块大小无效: " + chunkSize);
+		}
+		int keyMode = headerIn.readUnsignedByte();
+		int iterations = headerIn.readInt();
+		byte[] salt = new byte[AesGcmOutputStream.SALT_LENGTH];
+		headerIn.readFully(salt);
+		noncePrefix = new byte[AesGcmOutputStream.NONCE_PREFIX_LENGTH];
+		headerIn.readFully(noncePrefix);
+		
+		try {
+			if (keyMode == AesGcmOutputStream.KEY_MODE_PBKDF2) {
+				if (password == null) {
+					throw new IOException("该文件使用口令加密，需要提供口令");
+				}
+				if (iterations <= 0) {
+					throw new IOException("文件头中的迭代次数无效: " + iterations);
+				}
+				key = AesGcmOutputStream.deriveKey(password, salt, iterations);
+			} else if (keyMode == AesGcmOutputStream.KEY_MODE_RAW) {
+				if (rawKey == null) {
+					throw new IOException("该文件使用原始密钥加密，需要提供密钥");
+				}
+				key = new SecretKeySpec(rawKey, "AES");
+			} else {
+				throw new IOException("未知的密钥模式: " + keyMode);
+			}
+			cipher = Cipher.getInstance(CIPHER_MODE);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("初始化解密失败", e);
+		}
+		
+		encrypted = new byte[chunkSize + AesGcmOutputStream.TAG_LENGTH];
+		plain = new byte[chunkSize];
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		int n = read(single, 0, 1);
+		return n == -1 ? -1 : single[0] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (plainPosition == plainLength) {
+			if (finalChunkRead) {
+				return -1;
+			}
+			readChunk();
+		}
+		int count = Math.min(len, plainLength - plainPosition);
+		System.arraycopy(plain, plainPosition, b, off, count);
+		plainPosition += count;
+		return count;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		byte[] buffer = new byte[(int) Math.min(n, 8192)];
+		while (skipped < n) {
+			int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+			if (read == -1) break;
+			skipped += read;
+		}
+		return skipped;
+	}
+	
+	@Override
+	public int available() {
+		return plainLength - plainPosition;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	private void readChunk() throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			throw new IOException("加密数据被截断：缺少结束块", e);
+		}
+		if (length < AesGcmOutputStream.TAG_LENGTH || length > encrypted.length) {
+			throw new IOException("数据块长度无效: " + length);
+		}
+		try {
+			in.readFully(encrypted, 0, length);
+		} catch (EOFException e) {
+			throw new IOException("加密数据被截断", e);
+		}
+		if (counter > 0xFFFFFFFFL) {
+			throw new IOException("数据块数量超出上限");
+		}
+		
+		// 之后没有数据则必须是结束块；截断或追加都会使结束标记与加密时不一致而认证失败
+		in.mark(1);
+		boolean last = in.read() == -1;
+		in.reset();
+		
+		try {
+			cipher.init(Cipher.DECRYPT_MODE, key,
+			new GCMParameterSpec(AesGcmOutputStream.TAG_LENGTH_BITS, AesGcmOutputStream.nonce(noncePrefix, counter, last)));
+			cipher.updateAAD(header);
+			plainLength = cipher.doFinal(encrypted, 0, length, plain, 0);
+			plainPosition = 0;
+		} catch (AEADBadTagException e) {
+			throw new IOException("数据块认证失败（密钥错误、数据被篡改或截断）", e);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("解密数据块失败", e);
+		}
+		counter++;
+		finalChunkRead = last;
+	}
+}
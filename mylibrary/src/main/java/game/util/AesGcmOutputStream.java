@@ -0,0 +1,191 @@
+package game.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+* AES-GCM 分块加密输出流，以恒定内存加密任意大小的数据
+*
+* 格式：
+* <pre>
+* 文件头 : 魔数 "SQGE" | 版本(1) | 块大小(4) | 密钥模式(1) | 迭代次数(4) | 盐(16) | 随机数前缀(7)
+* 数据块 : 密文长度(4) | 密文 + 认证标签(16)
+* </pre>
+* 每块的nonce = 随机数前缀(7) + 块序号(4，大端) + 结束标记(1，最后一块为1)，
+* 整个文件头作为每块的附加认证数据（AAD）。块被重排、篡改、截断或在末尾追加数据都会导致解密失败
+*
+* 必须调用 close() 或 finish() 写出最后一块，否则读取时会被判定为截断
+*/
+public class AesGcmOutputStream extends FilterOutputStream {
+	static final byte[] MAGIC = {'S', 'Q', 'G', 'E'};
+	static final int VERSION = 1;
+	static final int KEY_MODE_RAW = 0;
+	static final int KEY_MODE_PBKDF2 = 1;
+	static final int SALT_LENGTH = 16;
+	static final int NONCE_PREFIX_LENGTH = 7;
+	static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + 1 + 4 + SALT_LENGTH + NONCE_PREFIX_LENGTH;
+	static final int TAG_LENGTH_BITS = 128;
+	static final int TAG_LENGTH = TAG_LENGTH_BITS / 8;
+	static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+	static final int DEFAULT_ITERATIONS = 100000;
+	private static final String CIPHER_MODE = "AES/GCM/NoPadding";
+	
+	private final Cipher cipher;
+	private final SecretKeySpec key;
+	private final byte[] header;
+	private final byte[] noncePrefix;
+	private final byte[] plain;
+	private final byte[] encrypted;
+	private int plainLength = 0;
+	private long counter = 0;
+	private boolean finished = false;
+	
+	/**
+	* 使用原始密钥（16/24/32字节）创建加密流
+	*/
+	public AesGcmOutputStream(OutputStream out, byte[] rawKey) throws IOException {
+		this(out, rawKey, null, 0, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	* 使用口令创建加密流，密钥由 PBKDF2WithHmacSHA256 派生（随机盐和迭代次数写入文件头）
+	*/
+	public AesGcmOutputStream(OutputStream out, char[] password) throws IOException {
+		this(out, null, password, DEFAULT_ITERATIONS, DEFAULT_CHUNK_SIZE);
+	}
+	
+	AesGcmOutputStream(OutputStream out, byte[] rawKey, char[] password, int iterations, int chunkSize) throws IOException {
+		super(out);
+		if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException("块大小无效: " + chunkSize);
+		}
+		SecureRandom random = new SecureRandom();
+		byte[] salt = new byte[SALT_LENGTH];
+		noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+		random.nextBytes(noncePrefix);
+		try {
+			if (password != null) {
+				random.nextBytes(salt);
+				key = deriveKey(password, salt, iterations);
+			} else {
+				key = new SecretKeySpec(rawKey, "AES");
+			}
+			cipher = Cipher.getInstance(CIPHER_MODE);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("初始化加密失败", e);
+		}
+		
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(HEADER_LENGTH);
+		DataOutputStream headerOut = new DataOutputStream(headerBytes);
+		headerOut.write(MAGIC);
+		headerOut.writeByte(VERSION);
+		headerOut.writeInt(chunkSize);
+		headerOut.writeByte(password != null ? KEY_MODE_PBKDF2 : KEY_MODE_RAW);
+		headerOut.writeInt(password != null ? iterations : 0);
+		headerOut.write(salt);
+		headerOut.write(noncePrefix);
+		header = headerBytes.toByteArray();
+		out.write(header);
+		
+		plain = new byte[chunkSize];
+		encrypted = new byte[chunkSize + TAG_LENGTH];
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[]{(byte) b}, 0, 1);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished) {
+			throw new IOException("加密流已结束");
+		}
+		while (len > 0) {
+			// 缓冲区满且还有后续数据时才写出，保证最后一块总能带上结束标记
+			if (plainLength == plain.length) {
+				writeChunk(false);
+			}
+			int count = Math.min(len, plain.length - plainLength);
+			System.arraycopy(b, off, plain, plainLength, count);
+			plainLength += count;
+			off += count;
+			len -= count;
+		}
+	}
+	
+	/**
+	* 写出最后一块（带结束标记），不关闭下层流
+	*/
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		writeChunk(true);
+		finished = true;
+		out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+	
+	private void writeChunk(boolean last) throws IOException {
+		if (counter > 0xFFFFFFFFL) {
+			throw new IOException("数据块数量超出上限");
+		}
+		try {
+			cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, nonce(noncePrefix, counter, last)));
+			cipher.updateAAD(header);
+			int length = cipher.doFinal(plain, 0, plainLength, encrypted, 0);
+			out.write(length >>> 24);
+			out.write(length >>> 16);
+			out.write(length >>> 8);
+			out.write(length);
+			out.write(encrypted, 0, length);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("加密数据块失败", e);
+		}
+		Arrays.fill(plain, 0, plainLength, (byte) 0);
+		plainLength = 0;
+		counter++;
+	}
+	
+	static byte[] nonce(byte[] noncePrefix, long counter, boolean last) {
+		byte[] nonce = new byte[NONCE_PREFIX_LENGTH + 5];
+		System.arraycopy(noncePrefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+		nonce[NONCE_PREFIX_LENGTH] = (byte) (counter >>> 24);
+		nonce[NONCE_PREFIX_LENGTH + 1] = (byte) (counter >>> 16);
+		nonce[NONCE_PREFIX_LENGTH + 2] = (byte) (counter >>> 8);
+		nonce[NONCE_PREFIX_LENGTH + 3] = (byte) counter;
+		nonce[NONCE_PREFIX_LENGTH + 4] = (byte) (last ? 1 : 0);
+		return nonce;
+	}
+	
+	static SecretKeySpec deriveKey(char[] password, byte[] salt, int iterations) throws GeneralSecurityException {
+		PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, 256);
+		try {
+			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+			return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package game.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+* 异步压缩输出流
+* 写入的数据按块交给独立的压缩线程（GZIP 或 zlib/DEFLATE），写入方（如游标读取和JSON序列化）与压缩并行执行；
+* 缓冲块数量固定，压缩跟不上时写入方阻塞等待，内存占用恒定
+*
+* finish() 结束压缩但不关闭目标流，close() 结束压缩并关闭目标流；
+* 写入方出错时调用 abort() 停止压缩线程并释放 Deflater（不写格式尾部），finish() 之后调用 abort() 无效果
+*/
+public class CompressedOutputStream extends OutputStream {
+	/* 压缩格式 */
+	public enum Format {
+		GZIP, DEFLATE
+	}
+	
+	private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	private static final int DEFAULT_CHUNK_COUNT = 4;
+	
+	private final OutputStream target;
+	private final DeflaterOutputStream compressor;
+	private final Deflater deflater;
+	private final BlockingQueue<Chunk> freeChunks;
+	private final BlockingQueue<Chunk> pendingChunks = new LinkedBlockingQueue<>();
+	private final Chunk endMarker = new Chunk(0);
+	private final Thread worker;
+	private volatile IOException failure;
+	private volatile boolean aborted = false;
+	
+	private Chunk current;
+	private boolean finished = false;
+	
+	public CompressedOutputStream(OutputStream target, Format format, int level) throws IOException {
+		this(target, format, level, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_COUNT);
+	}
+	
+	/**
+	* @param target 目标输出流
+	* @param format 压缩格式
+	* @param level 压缩级别（0-9，或 Deflater.DEFAULT_COMPRESSION）
+	* @param chunkSize 每个缓冲块的字节数
+	* @param chunkCount 缓冲块数量（决定写入方最多领先压缩线程多少数据）
+	*/
+	public CompressedOutputStream(OutputStream target, Format format, int level, int chunkSize, int chunkCount) throws IOException {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+			throw new IllegalArgumentException("压缩级别必须在0-9之间: " + level);
+		}
+		this.target = target;
+		// 压缩流结束时会关闭下层流，这里隔离一层使 finish() 不关闭目标流
+		OutputStream shield = new FilterOutputStream(target) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+			
+			@Override
+			public void close() throws IOException {
+				out.flush();
+			}
+		};
+		if (format == Format.GZIP) {
+			LevelGzipOutputStream gzip = new LevelGzipOutputStream(shield, chunkSize, level);
+			this.deflater = gzip.deflater();
+			this.compressor = gzip;
+		} else {
+			this.deflater = new Deflater(level);
+			this.compressor = new DeflaterOutputStream(shield, deflater, chunkSize);
+		}
+		
+		this.freeChunks = new ArrayBlockingQueue<>(Math.max(chunkCount, 2));
+		for (int i = 0; i < Math.max(chunkCount, 2); i++) {
+			freeChunks.add(new Chunk(chunkSize));
+		}
+		
+		worker = new Thread(this::compressLoop, "CompressedOutputStream");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		ensureChunk();
+		current.data[current.length++] = (byte) b;
+		if (current.length == current.data.length) {
+			handOff();
+		}
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensureChunk();
+			int count = Math.min(len, current.data.length - current.length);
+			System.arraycopy(b, off, current.data, current.length, count);
+			current.length += count;
+			off += count;
+			len -= count;
+			if (current.length == current.data.length) {
+				handOff();
+			}
+		}
+	}
+	
+	/**
+	* 把已写入的数据交给压缩线程（不等待压缩完成）
+	*/
+	@Override
+	public void flush() throws IOException {
+		checkFailure();
+		if (current != null && current.length > 0) {
+			handOff();
+		}
+	}
+	
+	/**
+	* 压缩剩余数据并写入格式尾部，等待压缩线程结束；不关闭目标流
+	*/
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		if (current != null && current.length > 0) {
+			handOff();
+		}
+		// 压缩已失败时也要投递结束标记，否则压缩线程一直等待
+		pendingChunks.add(endMarker);
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("等待压缩线程结束时被中断", e);
+		}
+		checkFailure();
+	}
+	
+	/**
+	* 放弃压缩：丢弃未压缩的数据，停止压缩线程并释放 Deflater，不写入格式尾部（已输出的数据不完整）
+	*/
+	public void abort() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		aborted = true;
+		if (current != null) {
+			freeChunks.add(current);
+			current = null;
+		}
+		pendingChunks.add(endMarker);
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			target.close();
+		}
+	}
+	
+	private void ensureChunk() throws IOException {
+		if (finished) {
+			throw new IOException("压缩流已结束");
+		}
+		checkFailure();
+		if (current == null) {
+			try {
+				current = freeChunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("等待压缩缓冲区时被中断", e);
+			}
+			current.length = 0;
+		}
+	}
+	
+	private void handOff() {
+		pendingChunks.add(current);
+		current = null;
+	}
+	
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("压缩失败", failure);
+		}
+	}
+	
+	private void compressLoop() {
+		try {
+			while (true) {
+				Chunk chunk = pendingChunks.take();
+				if (chunk == endMarker) {
+					break;
+				}
+				try {
+					if (failure == null && !aborted) {
+						compressor.write(chunk.data, 0, chunk.length);
+					}
+				} catch (IOException e) {
+					// 记录失败后继续回收缓冲块，避免写入方阻塞
+					failure = e;
+				} finally {
+					freeChunks.add(chunk);
+				}
+			}
+			if (failure == null && !aborted) {
+				// 写入格式尾部，目标流不会被关闭
+				compressor.close();
+			}
+		} catch (InterruptedException e) {
+			failure = new IOException("压缩线程被中断", e);
+		} catch (IOException e) {
+			failure = e;
+		} finally {
+			// 失败或放弃时 compressor 未关闭，需要单独释放；重复调用 end() 无副作用
+			deflater.end();
+		}
+	}
+	
+	/**
+	* GZIPOutputStream 不直接提供级别参数，通过其内部的 Deflater 设置
+	*/
+	private static final class LevelGzipOutputStream extends GZIPOutputStream {
+		LevelGzipOutputStream(OutputStream out, int size, int level) throws IOException {
+			super(out, size);
+			def.setLevel(level);
+		}
+		
+		Deflater deflater() {
+			return def;
+		}
+	}
+	
+	private static final class Chunk {
+		final byte[] data;
+		int length;
+		
+		Chunk(int size) {
+			this.data = new byte[size];
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package game.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+* 压缩流工具：创建异步压缩输出流，按文件头自动识别 GZIP / zlib / 未压缩输入
+*/
+public class CompressionUtils {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private CompressionUtils() {
+	}
+	
+	/* 创建异步压缩输出流，finish() 后目标流保持打开 */
+	public static CompressedOutputStream compress(OutputStream target, CompressedOutputStream.Format format, int level) throws IOException {
+		return new CompressedOutputStream(target, format, level);
+	}
+	
+	/* 根据前两个字节识别压缩格式并返回对应的解压输入流，未压缩的数据原样返回 */
+	public static InputStream decompress(InputStream source) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(source, BUFFER_SIZE);
+		in.mark(2);
+		int b0 = in.read();
+		int b1 = in.read();
+		in.reset();
+		if (b0 < 0 || b1 < 0) {
+			return in;
+		}
+		if (b0 == 0x1f && b1 == 0x8b) {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		// zlib头：CM=8（DEFLATE），且 (CMF*256 + FLG) 能被31整除
+		if ((b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0) {
+			return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE);
+		}
+		return in;
+	}
+}